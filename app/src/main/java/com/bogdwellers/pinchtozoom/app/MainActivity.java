@@ -1,14 +1,11 @@
 package com.bogdwellers.pinchtozoom.app;
 
 import android.app.DialogFragment;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.AssetManager;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewPager;
@@ -24,8 +21,13 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import com.bogdwellers.pinchtozoom.ImageMatrixTouchHandler;
+import com.bogdwellers.pinchtozoom.ImageViewerCorrector;
+import com.bogdwellers.pinchtozoom.bitmap.BitmapBudget;
+import com.bogdwellers.pinchtozoom.bitmap.BitmapLoader;
+import com.bogdwellers.pinchtozoom.bitmap.BitmapPool;
+import com.bogdwellers.pinchtozoom.bitmap.ProgressiveBitmapLoader;
+import com.bogdwellers.pinchtozoom.view.ZoomStateCache;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -42,25 +44,35 @@ public class MainActivity extends AppCompatActivity {
     public static final int PICK_IMAGE = 1;
     public static final String DEFAULT_IMAGES_FOLDER = "default_images";
     public static final String PICKED_IMAGES = "picked_images";
-    private static final BitmapFactory.Options BITMAP_FACTORY_OPTIONS;
-    static {
-        BITMAP_FACTORY_OPTIONS = new BitmapFactory.Options();
-        BITMAP_FACTORY_OPTIONS.inPreferredConfig = Bitmap.Config.RGB_565;
-    }
 
     private ViewPager viewPager;
     private ImageViewPagerAdapter imageViewPagerAdapter;
     private ArrayList<Uri> pickedImageUris;
+    private BitmapBudget bitmapBudget;
+    private BitmapPool bitmapPool;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        List<Drawable> drawables = new ArrayList<>();
-        addDefaultImages(drawables);
+        List<BitmapLoader.Source> sources = new ArrayList<>();
+        addDefaultImages(sources);
+
+        ProgressiveBitmapLoader bitmapLoader = new ProgressiveBitmapLoader();
+        bitmapLoader.setPreferredConfig(Bitmap.Config.RGB_565);
+
+        // Keeps the decoded pages within a quarter of the heap and releases them when memory runs low
+        bitmapBudget = new BitmapBudget();
+        bitmapLoader.setBitmapBudget(bitmapBudget);
+        registerComponentCallbacks(bitmapBudget);
 
-        imageViewPagerAdapter = new ImageViewPagerAdapter(drawables);
+        // Pages decode into the bitmaps of destroyed pages
+        bitmapPool = new BitmapPool();
+        bitmapLoader.setBitmapPool(bitmapPool);
+        registerComponentCallbacks(bitmapPool);
+
+        imageViewPagerAdapter = new ImageViewPagerAdapter(sources, bitmapLoader);
         viewPager = findViewById(R.id.pager);
         viewPager.setOffscreenPageLimit(3);
         viewPager.setAdapter(imageViewPagerAdapter);
@@ -71,17 +83,20 @@ public class MainActivity extends AppCompatActivity {
 
         if(pickedImageUris != null) {
             for(Uri uri: pickedImageUris) {
-                try {
-                    addDrawableByUri(uri);
-                } catch (FileNotFoundException e) {
-                    Log.e(TAG, "File not found", e);
-                }
+                addImageByUri(uri);
             }
         } else {
             pickedImageUris = new ArrayList<>();
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        unregisterComponentCallbacks(bitmapBudget);
+        unregisterComponentCallbacks(bitmapPool);
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
@@ -99,9 +114,10 @@ public class MainActivity extends AppCompatActivity {
             intent.addCategory(Intent.CATEGORY_OPENABLE);
             startActivityForResult(Intent.createChooser(intent, getResources().getString(R.string.add_photo)), PICK_IMAGE);
         } else if(R.id.clear == id) {
-            List<Drawable> drawables = imageViewPagerAdapter.drawables;
-            drawables.clear();
-            addDefaultImages(drawables);
+            List<BitmapLoader.Source> sources = imageViewPagerAdapter.sources;
+            sources.clear();
+            addDefaultImages(sources);
+            imageViewPagerAdapter.zoomStateCache.clear();
             imageViewPagerAdapter.notifyDataSetChanged();
             pickedImageUris.clear();
         } else if(R.id.info == id) {
@@ -118,16 +134,11 @@ public class MainActivity extends AppCompatActivity {
                 Uri uri = data.getData();
                 Log.d(TAG, "Picked image: " + String.valueOf(uri));
                 if (uri != null) {
-                    try {
-                        addDrawableByUri(uri);
-
-                        // Scroll to the end of list
-                        viewPager.setCurrentItem(imageViewPagerAdapter.getCount() - 1);
-                    } catch (FileNotFoundException e) {
-                        Log.e(TAG, "File not found", e);
-                    } finally {
-                        pickedImageUris.add(uri);
-                    }
+                    addImageByUri(uri);
+                    pickedImageUris.add(uri);
+
+                    // Scroll to the end of list
+                    viewPager.setCurrentItem(imageViewPagerAdapter.getCount() - 1);
                 }
             }
         } else {
@@ -143,32 +154,19 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      *
-     * @param drawables
+     * @param sources
      */
-    private void addDefaultImages(List<Drawable> drawables) {
+    private void addDefaultImages(List<BitmapLoader.Source> sources) {
         // Note: Images are stored as assets instead of as resources
         // This because content should be in its raw format as opposed to UI elements
         // and to have more control over the decoding of image files
 
         AssetManager assets = getAssets();
-        Resources resources = getResources();
         try {
             List<String> images = Arrays.asList(assets.list(DEFAULT_IMAGES_FOLDER));
             Collections.sort(images);
             for(String image: images) {
-                InputStream is = null;
-                try {
-                    is = assets.open(DEFAULT_IMAGES_FOLDER + "/" + image);
-                    Bitmap bitmap = BitmapFactory.decodeStream(is, null, BITMAP_FACTORY_OPTIONS);
-                    drawables.add(new BitmapDrawable(resources, bitmap));
-                } finally {
-                    if(is != null) {
-                        try {
-                            is.close();
-                        } catch(IOException ignored) {
-                        }
-                    }
-                }
+                sources.add(new AssetSource(assets, DEFAULT_IMAGES_FOLDER + "/" + image));
             }
         } catch(IOException e) {
             e.printStackTrace();
@@ -179,25 +177,80 @@ public class MainActivity extends AppCompatActivity {
      *
      * @param uri
      */
-    private void addDrawableByUri(Uri uri) throws FileNotFoundException {
-        InputStream is = getContentResolver().openInputStream(uri);
-        Bitmap bitmap = BitmapFactory.decodeStream(is, null, BITMAP_FACTORY_OPTIONS);
-        Drawable drawable = new BitmapDrawable(getResources(), bitmap);
-
-        // Add drawable to end of list
-        imageViewPagerAdapter.drawables.add(drawable);
+    private void addImageByUri(Uri uri) {
+        // Add image to end of list; it is decoded when its page is instantiated
+        imageViewPagerAdapter.sources.add(new UriSource(getContentResolver(), uri));
         imageViewPagerAdapter.notifyDataSetChanged();
     }
 
     /**
      *
      */
-    private static class ImageViewPagerAdapter extends PagerAdapter {
+    private static class AssetSource implements BitmapLoader.Source {
 
-        private List<Drawable> drawables;
+        private AssetManager assets;
+        private String path;
 
-        public ImageViewPagerAdapter(List<Drawable> drawables) {
-            this.drawables = drawables;
+        public AssetSource(AssetManager assets, String path) {
+            this.assets = assets;
+            this.path = path;
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return assets.open(path);
+        }
+    }
+
+    /**
+     *
+     */
+    private static class UriSource implements BitmapLoader.Source {
+
+        private ContentResolver contentResolver;
+        private Uri uri;
+
+        public UriSource(ContentResolver contentResolver, Uri uri) {
+            this.contentResolver = contentResolver;
+            this.uri = uri;
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            InputStream is = contentResolver.openInputStream(uri);
+            if(is == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            return is;
+        }
+    }
+
+    /**
+     *
+     */
+    private static class ImageViewPagerAdapter extends PagerAdapter {
+
+        private List<BitmapLoader.Source> sources;
+        private ProgressiveBitmapLoader bitmapLoader;
+        private ImageViewerCorrector corrector;
+        private ImageMatrixTouchHandler imageMatrixTouchHandler;
+        private ZoomStateCache zoomStateCache;
+
+        public ImageViewPagerAdapter(List<BitmapLoader.Source> sources, ProgressiveBitmapLoader bitmapLoader) {
+            this.sources = sources;
+            this.bitmapLoader = bitmapLoader;
+            this.corrector = new ImageViewerCorrector();
+            // Relative to the fit scale, so large images are decoded at the sample size their pages need
+            this.corrector.setMaxScaleRelative(true);
+            this.zoomStateCache = new ZoomStateCache();
+
+            // Pages that come back show their image as the user left it
+            bitmapLoader.setOnBitmapLoadedListener(new BitmapLoader.OnBitmapLoadedListener() {
+                @Override
+                public void onBitmapLoaded(ImageView imageView, Bitmap bitmap) {
+                    zoomStateCache.restore(imageView);
+                }
+            });
         }
 
         @Override
@@ -208,9 +261,14 @@ public class MainActivity extends AppCompatActivity {
             container.addView(view);
 
             ImageView imageView = view.findViewById(R.id.image);
-            imageView.setImageDrawable(drawables.get(position));
+            zoomStateCache.bind(imageView, position);
+            bitmapLoader.load(imageView, sources.get(position), corrector);
 
-            ImageMatrixTouchHandler imageMatrixTouchHandler = new ImageMatrixTouchHandler(context);
+            // A single handler serves all pages; it binds to whichever page is touched
+            if(imageMatrixTouchHandler == null) {
+                imageMatrixTouchHandler = new ImageMatrixTouchHandler(context, corrector);
+                bitmapLoader.setTouchHandler(imageMatrixTouchHandler);
+            }
             imageView.setOnTouchListener(imageMatrixTouchHandler);
 
             return view;
@@ -221,14 +279,16 @@ public class MainActivity extends AppCompatActivity {
             View view = (View) object;
 
             ImageView imageView = view.findViewById(R.id.image);
-            imageView.setImageResource(0);
+            bitmapLoader.cancel(imageView);
 
+            // Removing the view saves its zoom state, so the image is released afterwards
             container.removeView(view);
+            bitmapLoader.release(imageView);
         }
 
         @Override
         public int getCount() {
-            return drawables.size();
+            return sources.size();
         }
 
         @Override
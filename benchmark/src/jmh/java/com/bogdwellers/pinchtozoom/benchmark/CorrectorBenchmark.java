@@ -0,0 +1,121 @@
+package com.bogdwellers.pinchtozoom.benchmark;
+
+import android.graphics.Matrix;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.ImageViewerCorrector;
+import com.bogdwellers.pinchtozoom.core.CorrectorUtils;
+import com.bogdwellers.pinchtozoom.core.Transform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmarks the <code>ImageViewerCorrector</code> paths that run for every drag, pinch and animation frame, both for an
+ * unrotated and a rotated image.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CorrectorBenchmark {
+
+    private ImageViewerCorrector corrector;
+    private ImageViewerCorrector rotatedCorrector;
+    private Transform start;
+    private Transform rotatedStart;
+    private float translation;
+
+    @Setup
+    public void setUp() {
+        ImageView imageView = new ImageView(1080, 1920);
+        imageView.setImageDrawable(new Drawable(4000, 3000));
+        corrector = new ImageViewerCorrector(imageView, 4f);
+        start = new Transform();
+        start.postScale(0.5f, 0.5f);
+        corrector.getTransform().set(start);
+        corrector.correctTransform();
+        translation = -250f;
+
+        ImageView rotatedImageView = new ImageView(1080, 1920);
+        rotatedImageView.setImageDrawable(new Drawable(4000, 3000));
+        rotatedCorrector = new ImageViewerCorrector(rotatedImageView, 4f);
+        rotatedStart = new Transform();
+        rotatedStart.postScale(0.5f, 0.5f);
+        rotatedStart.postRotate(30f, 540f, 960f);
+        rotatedCorrector.getTransform().set(rotatedStart);
+        rotatedCorrector.correctTransform();
+    }
+
+    @Benchmark
+    public float correctTranslation() {
+        return ImageViewerCorrector.correctTranslation(translation, 1080f, 2000f);
+    }
+
+    @Benchmark
+    public float rotatedBoundsExtent() {
+        Transform transform = rotatedCorrector.getTransform();
+        return CorrectorUtils.boundsExtent(transform.getScaleX(), transform.getSkewX(), 4000f, 3000f)
+                + CorrectorUtils.boundsOffset(transform.getScaleX(), transform.getSkewX(), 4000f, 3000f);
+    }
+
+    @Benchmark
+    public float correctAbsoluteTranslation() {
+        return corrector.correctAbsolute(Matrix.MTRANS_X, translation);
+    }
+
+    @Benchmark
+    public float correctAbsoluteTranslationRotated() {
+        return rotatedCorrector.correctAbsolute(Matrix.MTRANS_X, translation);
+    }
+
+    @Benchmark
+    public float correctAbsoluteScale() {
+        return corrector.correctAbsolute(Matrix.MSCALE_X, 0.4f);
+    }
+
+    @Benchmark
+    public float correctRelativeScale() {
+        return corrector.correctRelative(Matrix.MSCALE_X, 1.01f);
+    }
+
+    @Benchmark
+    public float correctRelativeScaleRotated() {
+        return rotatedCorrector.correctRelative(Matrix.MSCALE_X, 1.01f);
+    }
+
+    @Benchmark
+    public Transform correctTransform() {
+        Transform transform = corrector.getTransform();
+        transform.set(start);
+        transform.postTranslate(translation, translation);
+        corrector.correctTransform();
+        return transform;
+    }
+
+    @Benchmark
+    public Matrix correctTransformAndWriteMatrix() {
+        Transform transform = corrector.getTransform();
+        transform.set(start);
+        transform.postTranslate(translation, translation);
+        corrector.correctTransform();
+        corrector.writeMatrix();
+        return corrector.getMatrix();
+    }
+
+    @Benchmark
+    public Transform correctTransformRotated() {
+        Transform transform = rotatedCorrector.getTransform();
+        transform.set(rotatedStart);
+        transform.postTranslate(translation, translation);
+        rotatedCorrector.correctTransform();
+        return transform;
+    }
+}
@@ -0,0 +1,132 @@
+package com.bogdwellers.pinchtozoom.benchmark;
+
+import android.graphics.PointF;
+import android.view.MotionEvent;
+
+import com.bogdwellers.pinchtozoom.MultiTouchListener;
+import com.bogdwellers.pinchtozoom.core.GestureUtils;
+import com.bogdwellers.pinchtozoom.core.SampleHistory;
+import com.bogdwellers.pinchtozoom.core.TouchGrouper;
+import com.bogdwellers.pinchtozoom.core.TouchPredictor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmarks the static gesture math of <code>MultiTouchListener</code> that runs for every touch event.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GestureMathBenchmark {
+
+    private static final int POINTER_A = 3;
+    private static final int POINTER_B = 7;
+
+    @Param({"0", "4", "16", "64"})
+    public int historySize;
+
+    @Param({"100"})
+    public long timeWindow;
+
+    private MotionEvent event;
+    private PointF mid;
+    private SampleHistory history;
+    private TouchPredictor predictor;
+    private TouchGrouper grouper;
+    private float[] surfaceX;
+    private float[] surfaceY;
+    private int[] hullOrder;
+    private int[] hull;
+
+    @Setup
+    public void setUp() {
+        event = MotionEvents.pinch(historySize);
+        mid = new PointF();
+        history = new SampleHistory();
+        predictor = new TouchPredictor();
+
+        // Four users with both hands on a table, five fingers each
+        grouper = new TouchGrouper(150f);
+        surfaceX = new float[TouchGrouper.INITIAL_CAPACITY];
+        surfaceY = new float[TouchGrouper.INITIAL_CAPACITY];
+        for(int i = 0; i < surfaceX.length; i++) {
+            int hand = i / 5;
+            double angle = (i % 5) * Math.PI / 5d;
+            surfaceX[i] = 300f + (hand % 4) * 500f + 80f * (float) Math.cos(angle);
+            surfaceY[i] = 300f + (hand / 4) * 700f + 80f * (float) Math.sin(angle);
+        }
+        hullOrder = new int[surfaceX.length];
+        hull = new int[surfaceX.length + 1];
+    }
+
+    @Benchmark
+    public float spacing() {
+        return MultiTouchListener.spacing(event, POINTER_A, POINTER_B);
+    }
+
+    @Benchmark
+    public PointF midPoint() {
+        MultiTouchListener.midPoint(mid, event, POINTER_A, POINTER_B);
+        return mid;
+    }
+
+    @Benchmark
+    public float angle() {
+        return MultiTouchListener.angle(event, POINTER_A, POINTER_B, true);
+    }
+
+    @Benchmark
+    public float pinchVelocity() {
+        return MultiTouchListener.pinchVelocity(event, POINTER_A, POINTER_B, timeWindow);
+    }
+
+    @Benchmark
+    public float sampleHistoryVelocity() {
+        recordHistory();
+        history.fit(timeWindow);
+        return history.getVelocityX();
+    }
+
+    @Benchmark
+    public float touchPrediction() {
+        recordHistory();
+        predictor.predict(history);
+        return predictor.getPredictedX();
+    }
+
+    @Benchmark
+    public int touchGrouping() {
+        grouper.clear();
+        for(int i = 0; i < surfaceX.length; i++) {
+            grouper.add(surfaceX[i], surfaceY[i]);
+        }
+        grouper.cluster();
+        return grouper.getGroupCount();
+    }
+
+    @Benchmark
+    public int convexHull() {
+        for(int i = 0; i < hullOrder.length; i++) {
+            hullOrder[i] = i;
+        }
+        return GestureUtils.convexHull(surfaceX, surfaceY, hullOrder, hullOrder.length, hull);
+    }
+
+    private void recordHistory() {
+        int index = event.findPointerIndex(POINTER_A);
+        history.clear();
+        for(int i = 0, n = event.getHistorySize(); i < n; i++) {
+            history.add(event.getHistoricalEventTime(i), event.getHistoricalX(index, i), event.getHistoricalY(index, i));
+        }
+        history.add(event.getEventTime(), event.getX(index), event.getY(index));
+    }
+}
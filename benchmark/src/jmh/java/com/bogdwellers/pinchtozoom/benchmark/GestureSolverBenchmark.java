@@ -0,0 +1,84 @@
+package com.bogdwellers.pinchtozoom.benchmark;
+
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.ImageViewerCorrector;
+import com.bogdwellers.pinchtozoom.core.GestureSolver;
+import com.bogdwellers.pinchtozoom.core.Transform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmarks solving and correcting a whole drag, pinch or morph event, which is what <code>ImageMatrixTouchHandler</code> does
+ * for every <code>ACTION_MOVE</code> before copying the result into the image matrix.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GestureSolverBenchmark {
+
+    @Param({"false", "true"})
+    public boolean rotateEnabled;
+
+    private ImageViewerCorrector corrector;
+    private GestureSolver solver;
+    private float offset;
+    private float[] morphStart;
+
+    @Setup
+    public void setUp() {
+        ImageView imageView = new ImageView(1080, 1920);
+        imageView.setImageDrawable(new Drawable(4000, 3000));
+        imageView.getImageMatrix().postScale(0.5f, 0.5f);
+        corrector = new ImageViewerCorrector(imageView, 4f);
+        solver = new GestureSolver();
+        solver.setRotateEnabled(rotateEnabled);
+        solver.start(corrector.getTransform());
+        solver.startPinch(440f, 860f, 640f, 1060f, true);
+
+        // Five fingers spread around the center
+        morphStart = new float[10];
+        for(int i = 0; i < 5; i++) {
+            double angle = i * 2d * Math.PI / 5d;
+            morphStart[i * 2] = 540f + 200f * (float) Math.cos(angle);
+            morphStart[i * 2 + 1] = 960f + 200f * (float) Math.sin(angle);
+        }
+    }
+
+    @Benchmark
+    public Transform drag() {
+        offset = -offset + 1f;
+        solver.drag(corrector, -120f + offset, 35f);
+        return corrector.getTransform();
+    }
+
+    @Benchmark
+    public Transform pinch() {
+        offset = -offset + 1f;
+        solver.pinch(corrector, 400f - offset, 820f, 680f + offset, 1100f);
+        return corrector.getTransform();
+    }
+
+    @Benchmark
+    public Transform morph() {
+        offset = -offset + 1f;
+        solver.beginMorph();
+        for(int i = 0; i < morphStart.length; i += 2) {
+            float x = morphStart[i];
+            float y = morphStart[i + 1];
+            solver.addMorphPoint(x, y, x + (x - 540f) * 0.1f + offset, y + (y - 960f) * 0.1f);
+        }
+        solver.morph(corrector);
+        return corrector.getTransform();
+    }
+}
@@ -0,0 +1,39 @@
+package com.bogdwellers.pinchtozoom.benchmark;
+
+import android.view.MotionEvent;
+
+/**
+ * <p>Builds synthetic <code>MotionEvent</code> stand-ins for the benchmarks.</p>
+ */
+final class MotionEvents {
+
+    static final long SAMPLE_INTERVAL = 4; // 240 Hz digitizer
+
+    private MotionEvents() {
+    }
+
+    /**
+     * <p>Returns a two pointer move event of pointers that spread apart while rotating, with the given amount of
+     * historical samples.</p>
+     * @param historySize
+     * @return
+     */
+    static MotionEvent pinch(int historySize) {
+        int samples = historySize + 1;
+        long[] eventTimes = new long[samples];
+        float[][] x = new float[2][samples];
+        float[][] y = new float[2][samples];
+        for(int i = 0; i < samples; i++) {
+            eventTimes[i] = 1000 + i * SAMPLE_INTERVAL;
+            double radius = 100 + i * 2;
+            double angle = i * 0.01;
+            float dx = (float) (Math.cos(angle) * radius);
+            float dy = (float) (Math.sin(angle) * radius);
+            x[0][i] = 540 - dx;
+            y[0][i] = 960 - dy;
+            x[1][i] = 540 + dx;
+            y[1][i] = 960 + dy;
+        }
+        return new MotionEvent(MotionEvent.ACTION_MOVE, new int[] {3, 7}, eventTimes, x, y);
+    }
+}
@@ -0,0 +1,64 @@
+package com.bogdwellers.pinchtozoom.benchmark;
+
+import com.bogdwellers.pinchtozoom.core.Transform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmarks the primitive affine operations of the core <code>Transform</code>.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransformBenchmark {
+
+    private Transform start;
+    private Transform transform;
+    private Transform inverse;
+    private float[] rect;
+
+    @Setup
+    public void setUp() {
+        start = new Transform();
+        start.postScale(0.5f, 0.5f);
+        start.postRotate(30f, 540f, 960f);
+        start.postTranslate(-100f, 40f);
+        transform = new Transform();
+        inverse = new Transform();
+        rect = new float[4];
+    }
+
+    @Benchmark
+    public Transform postScale() {
+        transform.set(start);
+        transform.postScale(1.01f, 1.01f, 540f, 960f);
+        return transform;
+    }
+
+    @Benchmark
+    public Transform postRotate() {
+        transform.set(start);
+        transform.postRotate(1.5f, 540f, 960f);
+        return transform;
+    }
+
+    @Benchmark
+    public Transform invert() {
+        start.invert(inverse);
+        return inverse;
+    }
+
+    @Benchmark
+    public float[] mapRect() {
+        start.mapRect(rect, 0f, 0f, 4000f, 3000f);
+        return rect;
+    }
+}
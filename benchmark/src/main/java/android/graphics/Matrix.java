@@ -0,0 +1,93 @@
+package android.graphics;
+
+/**
+ * <p>Plain-Java stand-in for <code>android.graphics.Matrix</code> covering the affine operations the library uses.</p>
+ */
+public class Matrix {
+
+    public static final int MSCALE_X = 0;
+    public static final int MSKEW_X = 1;
+    public static final int MTRANS_X = 2;
+    public static final int MSKEW_Y = 3;
+    public static final int MSCALE_Y = 4;
+    public static final int MTRANS_Y = 5;
+    public static final int MPERSP_0 = 6;
+    public static final int MPERSP_1 = 7;
+    public static final int MPERSP_2 = 8;
+
+    private final float[] values = new float[9];
+
+    public Matrix() {
+        reset();
+    }
+
+    public Matrix(Matrix src) {
+        set(src);
+    }
+
+    public void reset() {
+        for(int i = 0; i < 9; i++) {
+            values[i] = 0f;
+        }
+        values[MSCALE_X] = values[MSCALE_Y] = values[MPERSP_2] = 1f;
+    }
+
+    public boolean isIdentity() {
+        return values[MSCALE_X] == 1f && values[MSKEW_X] == 0f && values[MTRANS_X] == 0f
+                && values[MSKEW_Y] == 0f && values[MSCALE_Y] == 1f && values[MTRANS_Y] == 0f;
+    }
+
+    public void set(Matrix src) {
+        if(src == null) {
+            reset();
+        } else {
+            System.arraycopy(src.values, 0, values, 0, 9);
+        }
+    }
+
+    public void getValues(float[] values) {
+        System.arraycopy(this.values, 0, values, 0, 9);
+    }
+
+    public void setValues(float[] values) {
+        System.arraycopy(values, 0, this.values, 0, 9);
+    }
+
+    public boolean postTranslate(float dx, float dy) {
+        values[MTRANS_X] += dx;
+        values[MTRANS_Y] += dy;
+        return true;
+    }
+
+    public boolean postScale(float sx, float sy) {
+        values[MSCALE_X] *= sx;
+        values[MSKEW_X] *= sx;
+        values[MTRANS_X] *= sx;
+        values[MSKEW_Y] *= sy;
+        values[MSCALE_Y] *= sy;
+        values[MTRANS_Y] *= sy;
+        return true;
+    }
+
+    public boolean postScale(float sx, float sy, float px, float py) {
+        postTranslate(-px, -py);
+        postScale(sx, sy);
+        return postTranslate(px, py);
+    }
+
+    public boolean postRotate(float degrees, float px, float py) {
+        double rad = Math.toRadians(degrees);
+        float cos = (float) Math.cos(rad);
+        float sin = (float) Math.sin(rad);
+        postTranslate(-px, -py);
+        float a = values[MSCALE_X], b = values[MSKEW_X], c = values[MTRANS_X];
+        float d = values[MSKEW_Y], e = values[MSCALE_Y], f = values[MTRANS_Y];
+        values[MSCALE_X] = cos * a - sin * d;
+        values[MSKEW_X] = cos * b - sin * e;
+        values[MTRANS_X] = cos * c - sin * f;
+        values[MSKEW_Y] = sin * a + cos * d;
+        values[MSCALE_Y] = sin * b + cos * e;
+        values[MTRANS_Y] = sin * c + cos * f;
+        return postTranslate(px, py);
+    }
+}
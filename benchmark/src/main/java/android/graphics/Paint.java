@@ -0,0 +1,7 @@
+package android.graphics;
+
+/**
+ * <p>Plain-Java stand-in for <code>android.graphics.Paint</code>, only used as a type.</p>
+ */
+public class Paint {
+}
@@ -0,0 +1,15 @@
+package android.graphics;
+
+/**
+ * <p>Plain-Java stand-in for <code>android.graphics.Point</code>.</p>
+ */
+public class Point {
+
+    public int x;
+    public int y;
+
+    public void set(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+}
@@ -0,0 +1,23 @@
+package android.graphics;
+
+/**
+ * <p>Plain-Java stand-in for <code>android.graphics.PointF</code>.</p>
+ */
+public class PointF {
+
+    public float x;
+    public float y;
+
+    public PointF() {
+    }
+
+    public PointF(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public final void set(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+}
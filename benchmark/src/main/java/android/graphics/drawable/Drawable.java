@@ -0,0 +1,23 @@
+package android.graphics.drawable;
+
+/**
+ * <p>Plain-Java stand-in for <code>android.graphics.drawable.Drawable</code> with fixed intrinsic dimensions.</p>
+ */
+public class Drawable {
+
+    private int intrinsicWidth;
+    private int intrinsicHeight;
+
+    public Drawable(int intrinsicWidth, int intrinsicHeight) {
+        this.intrinsicWidth = intrinsicWidth;
+        this.intrinsicHeight = intrinsicHeight;
+    }
+
+    public int getIntrinsicWidth() {
+        return intrinsicWidth;
+    }
+
+    public int getIntrinsicHeight() {
+        return intrinsicHeight;
+    }
+}
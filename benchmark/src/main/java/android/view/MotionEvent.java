@@ -0,0 +1,104 @@
+package android.view;
+
+/**
+ * <p>Plain-Java stand-in for <code>android.view.MotionEvent</code>.</p>
+ * <p>Samples are stored per pointer index; sample <code>0</code> is the oldest historical sample and the last sample is the
+ * current one.</p>
+ */
+public final class MotionEvent {
+
+    public static final int ACTION_MASK = 0xff;
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+    public static final int ACTION_POINTER_DOWN = 5;
+    public static final int ACTION_POINTER_UP = 6;
+    public static final int ACTION_POINTER_INDEX_SHIFT = 8;
+
+    private int action;
+    private int[] pointerIds;
+    private long[] eventTimes;
+    private float[][] x;
+    private float[][] y;
+
+    /**
+     * @param action
+     * @param pointerIds
+     * @param eventTimes time of every sample, oldest first
+     * @param x x-coordinates per pointer index and sample
+     * @param y y-coordinates per pointer index and sample
+     */
+    public MotionEvent(int action, int[] pointerIds, long[] eventTimes, float[][] x, float[][] y) {
+        this.action = action;
+        this.pointerIds = pointerIds;
+        this.eventTimes = eventTimes;
+        this.x = x;
+        this.y = y;
+    }
+
+    public final int getAction() {
+        return action;
+    }
+
+    public final int getActionMasked() {
+        return action & ACTION_MASK;
+    }
+
+    public final int getActionIndex() {
+        return action >> ACTION_POINTER_INDEX_SHIFT;
+    }
+
+    public final int getPointerCount() {
+        return pointerIds.length;
+    }
+
+    public final int getPointerId(int pointerIndex) {
+        return pointerIds[pointerIndex];
+    }
+
+    public final int findPointerIndex(int pointerId) {
+        for(int i = 0; i < pointerIds.length; i++) {
+            if(pointerIds[i] == pointerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public final float getX() {
+        return getX(0);
+    }
+
+    public final float getY() {
+        return getY(0);
+    }
+
+    public final float getX(int pointerIndex) {
+        return x[pointerIndex][eventTimes.length - 1];
+    }
+
+    public final float getY(int pointerIndex) {
+        return y[pointerIndex][eventTimes.length - 1];
+    }
+
+    public final long getEventTime() {
+        return eventTimes[eventTimes.length - 1];
+    }
+
+    public final int getHistorySize() {
+        return eventTimes.length - 1;
+    }
+
+    public final float getHistoricalX(int pointerIndex, int pos) {
+        return x[pointerIndex][pos];
+    }
+
+    public final float getHistoricalY(int pointerIndex, int pos) {
+        return y[pointerIndex][pos];
+    }
+
+    public final long getHistoricalEventTime(int pos) {
+        return eventTimes[pos];
+    }
+}
@@ -0,0 +1,96 @@
+package android.view;
+
+import android.graphics.Paint;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Plain-Java stand-in for <code>android.view.View</code> with fixed dimensions.</p>
+ */
+public class View {
+
+    public static final int LAYER_TYPE_NONE = 0;
+    public static final int LAYER_TYPE_SOFTWARE = 1;
+    public static final int LAYER_TYPE_HARDWARE = 2;
+
+    private int width;
+    private int height;
+    private Map<Integer, Object> tags = new HashMap<>();
+    private int layerType;
+
+    public View(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public final int getWidth() {
+        return width;
+    }
+
+    public final int getHeight() {
+        return height;
+    }
+
+    public void invalidate() {
+    }
+
+    public int getPaddingLeft() {
+        return 0;
+    }
+
+    public int getPaddingTop() {
+        return 0;
+    }
+
+    public int getLayerType() {
+        return layerType;
+    }
+
+    public void setLayerType(int layerType, Paint paint) {
+        this.layerType = layerType;
+    }
+
+    public void setPivotX(float pivotX) {
+    }
+
+    public void setPivotY(float pivotY) {
+    }
+
+    public void setScaleX(float scaleX) {
+    }
+
+    public void setScaleY(float scaleY) {
+    }
+
+    public void setRotation(float rotation) {
+    }
+
+    public void setTranslationX(float translationX) {
+    }
+
+    public void setTranslationY(float translationY) {
+    }
+
+    public Object getTag(int key) {
+        return tags.get(key);
+    }
+
+    public void setTag(int key, Object tag) {
+        tags.put(key, tag);
+    }
+
+    public void addOnLayoutChangeListener(OnLayoutChangeListener listener) {
+    }
+
+    public void removeOnLayoutChangeListener(OnLayoutChangeListener listener) {
+    }
+
+    public interface OnTouchListener {
+        boolean onTouch(View v, MotionEvent event);
+    }
+
+    public interface OnLayoutChangeListener {
+        void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom);
+    }
+}
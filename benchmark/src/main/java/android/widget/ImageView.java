@@ -0,0 +1,31 @@
+package android.widget;
+
+import android.graphics.Matrix;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+/**
+ * <p>Plain-Java stand-in for <code>android.widget.ImageView</code>.</p>
+ */
+public class ImageView extends View {
+
+    private Drawable drawable;
+    private Matrix matrix;
+
+    public ImageView(int width, int height) {
+        super(width, height);
+        this.matrix = new Matrix();
+    }
+
+    public Drawable getDrawable() {
+        return drawable;
+    }
+
+    public void setImageDrawable(Drawable drawable) {
+        this.drawable = drawable;
+    }
+
+    public Matrix getImageMatrix() {
+        return matrix;
+    }
+}
@@ -0,0 +1,12 @@
+package com.bogdwellers.pinchtozoom;
+
+/**
+ * <p>Plain-Java stand-in for the library's generated resource ids.</p>
+ */
+public final class R {
+
+    public static final class id {
+        public static final int pinchtozoom_corrector = 0x7f0a0000;
+        public static final int pinchtozoom_edge_state = 0x7f0a0001;
+    }
+}
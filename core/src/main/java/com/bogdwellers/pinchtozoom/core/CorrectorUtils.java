@@ -0,0 +1,108 @@
+package com.bogdwellers.pinchtozoom.core;
+
+/**
+ * <p>Static helpers for the bounds corrections of an image viewer.</p>
+ */
+public class CorrectorUtils {
+
+    /**
+     * <p>Corrects the translation so that it does not exceed the allowed bounds.</p>
+     * @param translation
+     * @param viewDim
+     * @param imgDim
+     * @return
+     */
+    public static final float correctTranslation(float translation, float viewDim, float imgDim) {
+        if(imgDim < viewDim) {
+            // Must center
+            translation = (viewDim / 2) - (imgDim / 2);
+        } else {
+            float diff = imgDim - viewDim;
+            translation = Math.max(Math.min(0, translation), -diff);
+        }
+        return translation;
+    }
+
+    /**
+     * <p>Returns the scale at which an image of the given dimensions entirely fits within a view of the given dimensions.</p>
+     * @param viewWidth
+     * @param viewHeight
+     * @param imageWidth
+     * @param imageHeight
+     * @return
+     */
+    public static final float innerFitScale(float viewWidth, float viewHeight, float imageWidth, float imageHeight) {
+        float widthRatio = imageWidth / viewWidth;
+        float heightRatio = imageHeight / viewHeight;
+        if(widthRatio > heightRatio) {
+            return 1f / widthRatio;
+        } else {
+            return 1f / heightRatio;
+        }
+    }
+
+    /**
+     * <p>Limits the scale to the given range.</p>
+     * @param scale
+     * @param minScale
+     * @param maxScale
+     * @return
+     */
+    public static final float clampScale(float scale, float minScale, float maxScale) {
+        return Math.max(Math.min(scale, maxScale), minScale);
+    }
+
+    /**
+     * <p>Determines whether a translation makes the view exceed the boundary of an image.</p>
+     * @param translation
+     * @param viewDim
+     * @param imgDim
+     * @return
+     */
+    public static final boolean translationExceedsBoundary(float translation, float viewDim, float imgDim) {
+        return imgDim >= viewDim && (translation > 0 || translation < viewDim - imgDim);
+    }
+
+    /**
+     * <p>Returns the extent along one axis of the bounding box of an image transformed by a matrix row <code>(a, b)</code>;
+     * e.g. <code>(scaleX, skewX)</code> for the width and <code>(skewY, scaleY)</code> for the height.</p>
+     * @param a
+     * @param b
+     * @param imageWidth
+     * @param imageHeight
+     * @return
+     */
+    public static final float boundsExtent(float a, float b, float imageWidth, float imageHeight) {
+        return Math.abs(a) * imageWidth + Math.abs(b) * imageHeight;
+    }
+
+    /**
+     * <p>Returns the offset along one axis from the translation to the near side of the bounding box of an image transformed by a
+     * matrix row <code>(a, b)</code>. This is <code>0</code> when there is no rotation.</p>
+     * @param a
+     * @param b
+     * @param imageWidth
+     * @param imageHeight
+     * @return
+     */
+    public static final float boundsOffset(float a, float b, float imageWidth, float imageHeight) {
+        return Math.min(0f, a * imageWidth) + Math.min(0f, b * imageHeight);
+    }
+
+    /**
+     * <p>Returns the scale at which an image of the given dimensions, rotated by an angle with the given cosine and sine, entirely
+     * fits within a view of the given dimensions.</p>
+     * @param viewWidth
+     * @param viewHeight
+     * @param imageWidth
+     * @param imageHeight
+     * @param cos
+     * @param sin
+     * @return
+     */
+    public static final float innerFitScale(float viewWidth, float viewHeight, float imageWidth, float imageHeight, float cos, float sin) {
+        cos = Math.abs(cos);
+        sin = Math.abs(sin);
+        return innerFitScale(viewWidth, viewHeight, imageWidth * cos + imageHeight * sin, imageWidth * sin + imageHeight * cos);
+    }
+}
@@ -0,0 +1,205 @@
+package com.bogdwellers.pinchtozoom.core;
+
+/**
+ * <p>A two dimensional fling whose velocity decays exponentially due to friction.</p>
+ * <p>With friction <code>k</code> the velocity is <code>v(t) = v0 * e^(-kt)</code> and the position
+ * <code>x(t) = x0 + v0 / k * (1 - e^(-kt))</code>. The fling ends when the velocity drops below the minimum velocity or,
+ * if that happens earlier, exactly when a bound is reached. End positions and durations are computed in closed form when
+ * the fling starts, so nothing needs to be clamped while it runs.</p>
+ */
+public class Fling {
+
+    public static final float DEFAULT_FRICTION = 4f;
+    public static final float DEFAULT_MIN_VELOCITY = 50f;
+
+    /*
+     * Attributes
+     */
+
+    private float friction;
+    private float minVelocity;
+    private Axis x;
+    private Axis y;
+
+    /*
+     * Constructor(s)
+     */
+
+    public Fling() {
+        this.friction = DEFAULT_FRICTION;
+        this.minVelocity = DEFAULT_MIN_VELOCITY;
+        this.x = new Axis();
+        this.y = new Axis();
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Returns the friction; the rate at which the velocity decays per second.</p>
+     * @return
+     */
+    public float getFriction() {
+        return friction;
+    }
+
+    /**
+     * <p>Sets the friction; the rate at which the velocity decays per second. Higher values make shorter flings.</p>
+     * @param friction
+     */
+    public void setFriction(float friction) {
+        if(friction <= 0f) {
+            throw new IllegalArgumentException("Friction must be positive");
+        }
+        this.friction = friction;
+    }
+
+    /**
+     * <p>Returns the velocity in pixels per second below which the fling stops.</p>
+     * @return
+     */
+    public float getMinVelocity() {
+        return minVelocity;
+    }
+
+    /**
+     * <p>Sets the velocity in pixels per second below which the fling stops.</p>
+     * @param minVelocity
+     */
+    public void setMinVelocity(float minVelocity) {
+        if(minVelocity <= 0f) {
+            throw new IllegalArgumentException("Minimum velocity must be positive");
+        }
+        this.minVelocity = minVelocity;
+    }
+
+    /**
+     * <p>Starts a fling.</p>
+     * @param startX
+     * @param startY
+     * @param velocityX in pixels per second
+     * @param velocityY in pixels per second
+     * @param minX
+     * @param maxX
+     * @param minY
+     * @param maxY
+     */
+    public void start(float startX, float startY, float velocityX, float velocityY, float minX, float maxX, float minY, float maxY) {
+        x.start(startX, velocityX, minX, maxX, friction, minVelocity);
+        y.start(startY, velocityY, minY, maxY, friction, minVelocity);
+    }
+
+    /**
+     * <p>Returns the duration of the fling in milliseconds.</p>
+     * @return
+     */
+    public long getDuration() {
+        return (long) Math.ceil(Math.max(x.duration, y.duration) * 1000f);
+    }
+
+    /**
+     * <p>Indicates whether the fling has ended after the given time.</p>
+     * @param elapsed milliseconds since the start
+     * @return
+     */
+    public boolean isFinished(long elapsed) {
+        return elapsed >= getDuration();
+    }
+
+    public float getX(long elapsed) {
+        return x.position(elapsed / 1000f);
+    }
+
+    public float getY(long elapsed) {
+        return y.position(elapsed / 1000f);
+    }
+
+    public float getVelocityX(long elapsed) {
+        return x.velocity(elapsed / 1000f);
+    }
+
+    public float getVelocityY(long elapsed) {
+        return y.velocity(elapsed / 1000f);
+    }
+
+    public float getFinalX() {
+        return x.end;
+    }
+
+    public float getFinalY() {
+        return y.end;
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * <p>Returns the velocity to fling with when a running fling with velocity <code>currentVelocity</code> is flung again with
+     * <code>velocity</code>; flings in the same direction accumulate.</p>
+     * @param velocity
+     * @param currentVelocity
+     * @return
+     */
+    public static final float accumulate(float velocity, float currentVelocity) {
+        return Math.signum(velocity) == Math.signum(currentVelocity) ? velocity + currentVelocity : velocity;
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>The fling along a single axis.</p>
+     */
+    private static class Axis {
+
+        private float start;
+        private float velocity;
+        private float friction;
+        private float end;
+        private float duration;
+
+        private void start(float start, float velocity, float min, float max, float friction, float minVelocity) {
+            start = Math.max(Math.min(start, max), min);
+            this.start = start;
+            this.velocity = velocity;
+            this.friction = friction;
+            float speed = Math.abs(velocity);
+            if(speed <= minVelocity) {
+                this.end = start;
+                this.duration = 0f;
+                return;
+            }
+
+            // The fling ends when the velocity has decayed to the minimum velocity
+            float reach = velocity / friction;
+            float end = start + reach * (1f - minVelocity / speed);
+            float duration = (float) Math.log(speed / minVelocity) / friction;
+
+            // Unless a bound is reached before that
+            float bound = end > max ? max : end < min ? min : end;
+            if(bound != end) {
+                duration = (float) -Math.log(1f - (bound - start) / reach) / friction;
+                end = bound;
+            }
+            this.end = end;
+            this.duration = duration;
+        }
+
+        private float position(float t) {
+            if(t >= duration) {
+                return end;
+            }
+            return start + velocity / friction * (1f - (float) Math.exp(-friction * t));
+        }
+
+        private float velocity(float t) {
+            if(t >= duration) {
+                return 0f;
+            }
+            return velocity * (float) Math.exp(-friction * t);
+        }
+    }
+}
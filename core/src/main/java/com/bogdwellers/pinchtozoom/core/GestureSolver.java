@@ -0,0 +1,267 @@
+package com.bogdwellers.pinchtozoom.core;
+
+/**
+ * <p>Solves the transformation of drag and pinch gestures relative to the transformation at the start of the gesture.</p>
+ * <p>Results are written into the corrector's {@link Transform}, so a whole touch event is solved and corrected without touching
+ * any platform matrix.</p>
+ * <p>Gestures of three or more pointers are solved as a morph: the similarity transform (scale, rotation and translation) that
+ * best maps the pointers' start positions onto their current positions in the least-squares sense. It is computed from running
+ * sums over the pointers, so a morph costs O(n) for n pointers and does not allocate.</p>
+ */
+public class GestureSolver {
+
+    public static final float MIN_PINCH_DIST_PIXELS = 10f;
+
+    /*
+     * Attributes
+     */
+
+    private Transform startTransform;
+    private float startMidX;
+    private float startMidY;
+    private float startSpacing;
+    private float startAngle;
+    private boolean pointAPivot;
+    private float midX;
+    private float midY;
+
+    // Running sums of a morph, over start points p and current points q
+    private int morphCount;
+    private double sumPx;
+    private double sumPy;
+    private double sumQx;
+    private double sumQy;
+    private double sumPP;
+    private double sumPQDot;
+    private double sumPQCross;
+    private boolean rotateEnabled;
+    private boolean scaleEnabled;
+    private boolean translateEnabled;
+    private boolean dragOnPinchEnabled;
+
+    /*
+     * Constructor(s)
+     */
+
+    public GestureSolver() {
+        this.startTransform = new Transform();
+        this.startSpacing = 1f;
+        this.rotateEnabled = false;
+        this.scaleEnabled = true;
+        this.translateEnabled = true;
+        this.dragOnPinchEnabled = true;
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Saves the transform at the start of a gesture (or when the touch state changes).</p>
+     * @param transform
+     */
+    public void start(Transform transform) {
+        startTransform.set(transform);
+    }
+
+    /**
+     * <p>Saves the start configuration of a pinch between points A and B.</p>
+     * @param xA
+     * @param yA
+     * @param xB
+     * @param yB
+     * @param isPointAPivot see {@link GestureUtils#angle(float, float, float, float, boolean)}
+     */
+    public void startPinch(float xA, float yA, float xB, float yB, boolean isPointAPivot) {
+        startSpacing = GestureUtils.spacing(xA, yA, xB, yB);
+        pointAPivot = isPointAPivot;
+        if(startSpacing > MIN_PINCH_DIST_PIXELS) {
+            startMidX = (xA + xB) / 2f;
+            startMidY = (yA + yB) / 2f;
+            startAngle = GestureUtils.angle(xA, yA, xB, yB, isPointAPivot);
+        }
+    }
+
+    /**
+     * <p>Solves a drag by the given displacement since the start of the gesture.</p>
+     * @param corrector
+     * @param dx
+     * @param dy
+     */
+    public void drag(TransformCorrector corrector, float dx, float dy) {
+        Transform transform = corrector.getTransform();
+        transform.set(startTransform);
+        if(translateEnabled) {
+            dx = corrector.correctRelative(Transform.MTRANS_X, dx);
+            dy = corrector.correctRelative(Transform.MTRANS_Y, dy);
+            transform.postTranslate(dx, dy);
+        }
+    }
+
+    /**
+     * <p>Solves a pinch for the current positions of points A and B and performs the absolute corrections.</p>
+     * @param corrector
+     * @param xA
+     * @param yA
+     * @param xB
+     * @param yB
+     */
+    public void pinch(TransformCorrector corrector, float xA, float yA, float xB, float yB) {
+        Transform transform = corrector.getTransform();
+        transform.set(startTransform);
+
+        // Get the new midpoint
+        midX = (xA + xB) / 2f;
+        midY = (yA + yB) / 2f;
+
+        // Rotate
+        if(rotateEnabled) {
+            float deg = startAngle - GestureUtils.angle(xA, yA, xB, yB, pointAPivot);
+            transform.postRotate(deg, midX, midY);
+        }
+        if(scaleEnabled) {
+            // Scale
+            float spacing = GestureUtils.spacing(xA, yA, xB, yB);
+            float sx = spacing / startSpacing;
+            sx = corrector.correctRelative(Transform.MSCALE_X, sx);
+            transform.postScale(sx, sx, midX, midY);
+        }
+        if(dragOnPinchEnabled && translateEnabled) {
+            // Translate
+            transform.postTranslate(midX - startMidX, midY - startMidY);
+        }
+        corrector.correctTransform();
+    }
+
+    /**
+     * <p>Starts solving a morph for the current event. Add every pointer using {@link #addMorphPoint(float, float, float, float)}
+     * and then call {@link #morph(TransformCorrector)}.</p>
+     */
+    public void beginMorph() {
+        morphCount = 0;
+        sumPx = sumPy = sumQx = sumQy = 0d;
+        sumPP = sumPQDot = sumPQCross = 0d;
+    }
+
+    /**
+     * <p>Adds a pointer to the morph.</p>
+     * @param startX x-coordinate at the start of the gesture
+     * @param startY y-coordinate at the start of the gesture
+     * @param x current x-coordinate
+     * @param y current y-coordinate
+     */
+    public void addMorphPoint(float startX, float startY, float x, float y) {
+        morphCount++;
+        sumPx += startX;
+        sumPy += startY;
+        sumQx += x;
+        sumQy += y;
+        // Widened before multiplying; float products of large coordinates would swamp the centered sums
+        double px = startX;
+        double py = startY;
+        sumPP += px * px + py * py;
+        sumPQDot += px * x + py * y;
+        sumPQCross += px * y - py * x;
+    }
+
+    /**
+     * <p>Solves the morph of the added pointers and performs the absolute corrections.</p>
+     * <p>Because the fit is relative to the start positions, restarting the gesture with the current positions whenever a pointer
+     * is added or lifted continues the transform without a discontinuity.</p>
+     * @param corrector
+     */
+    public void morph(TransformCorrector corrector) {
+        Transform transform = corrector.getTransform();
+        transform.set(startTransform);
+        if(morphCount == 0) {
+            return;
+        }
+        int n = morphCount;
+        float startCentroidX = (float) (sumPx / n);
+        float startCentroidY = (float) (sumPy / n);
+        midX = (float) (sumQx / n);
+        midY = (float) (sumQy / n);
+
+        // Centered sums; the optimal similarity is [a -b; b a] / pp
+        double pp = sumPP - (sumPx * sumPx + sumPy * sumPy) / n;
+        double a = sumPQDot - (sumPx * sumQx + sumPy * sumQy) / n;
+        double b = sumPQCross - (sumPx * sumQy - sumPy * sumQx) / n;
+
+        transform.postTranslate(-startCentroidX, -startCentroidY);
+        if(pp > MIN_PINCH_DIST_PIXELS * MIN_PINCH_DIST_PIXELS) {
+            if(rotateEnabled) {
+                transform.postRotate((float) Math.toDegrees(Math.atan2(b, a)));
+            }
+            if(scaleEnabled) {
+                // Without rotation the scale is the projection onto the unrotated fit
+                double scale = (rotateEnabled ? Math.sqrt(a * a + b * b) : a) / pp;
+                if(scale > 0d) {
+                    float sx = corrector.correctRelative(Transform.MSCALE_X, (float) scale);
+                    transform.postScale(sx, sx);
+                }
+            }
+        }
+        if(dragOnPinchEnabled && translateEnabled) {
+            transform.postTranslate(midX, midY);
+        } else {
+            transform.postTranslate(startCentroidX, startCentroidY);
+        }
+        corrector.correctTransform();
+    }
+
+    /**
+     * <p>Returns the transform at the start of the gesture.</p>
+     * @return
+     */
+    public Transform getStartTransform() {
+        return startTransform;
+    }
+
+    /**
+     * <p>Returns the x-coordinate of the midpoint of the last solved pinch, or the centroid of the last solved morph.</p>
+     * @return
+     */
+    public float getMidX() {
+        return midX;
+    }
+
+    /**
+     * <p>Returns the y-coordinate of the midpoint of the last solved pinch, or the centroid of the last solved morph.</p>
+     * @return
+     */
+    public float getMidY() {
+        return midY;
+    }
+
+    public boolean isRotateEnabled() {
+        return rotateEnabled;
+    }
+
+    public void setRotateEnabled(boolean rotateEnabled) {
+        this.rotateEnabled = rotateEnabled;
+    }
+
+    public boolean isScaleEnabled() {
+        return scaleEnabled;
+    }
+
+    public void setScaleEnabled(boolean scaleEnabled) {
+        this.scaleEnabled = scaleEnabled;
+    }
+
+    public boolean isTranslateEnabled() {
+        return translateEnabled;
+    }
+
+    public void setTranslateEnabled(boolean translateEnabled) {
+        this.translateEnabled = translateEnabled;
+    }
+
+    public boolean isDragOnPinchEnabled() {
+        return dragOnPinchEnabled;
+    }
+
+    public void setDragOnPinchEnabled(boolean dragOnPinchEnabled) {
+        this.dragOnPinchEnabled = dragOnPinchEnabled;
+    }
+}
@@ -0,0 +1,102 @@
+package com.bogdwellers.pinchtozoom.core;
+
+/**
+ * <p>Static helpers for the geometry of multitouch gestures.</p>
+ */
+public class GestureUtils {
+
+    /**
+     * <p>Calculates the space between two points.</p>
+     * @param xA
+     * @param yA
+     * @param xB
+     * @param yB
+     * @return
+     */
+    public static final float spacing(float xA, float yA, float xB, float yB) {
+        float x = xA - xB;
+        float y = yA - yB;
+        return (float) Math.sqrt(x * x + y * y); // Pythagoras
+    }
+
+    /**
+     * <p>Calculates the angle between two points.</p>
+     * @param xA
+     * @param yA
+     * @param xB
+     * @param yB
+     * @param isPointAPivot indicates if point A is considered to be the pivot, else point B is
+     * @return angle in degrees
+     */
+    public static final float angle(float xA, float yA, float xB, float yB, boolean isPointAPivot) {
+        // Get the x-y displacement
+        float x = xA - xB;
+        float y = yA - yB;
+
+        // Calculate the arc tangent
+        double atan = Math.atan(x / y);
+
+        // Always consider the same point the pivot
+        if((y < 0f && isPointAPivot) || (y > 0f && !isPointAPivot)) {
+            atan += Math.PI;
+        }
+
+        // Convert to float in degrees
+        double deg = Math.toDegrees(atan);
+        return (float) deg;
+    }
+
+    /**
+     * <p>Computes the convex hull of a set of points using Andrew's monotone chain algorithm.</p>
+     * <p>Does not allocate: the points are referred to by index and the given index array is sorted in place.</p>
+     * @param xs x-coordinates of the points
+     * @param ys y-coordinates of the points
+     * @param indices the indices of the <code>n</code> points to compute the hull of; sorted in place
+     * @param n
+     * @param hull receives the indices of the hull's vertices in order; must have room for <code>n + 1</code> indices
+     * @return the number of vertices of the hull
+     */
+    public static final int convexHull(float[] xs, float[] ys, int[] indices, int n, int[] hull) {
+        // Insertion sort by x, then y; there are only as many points as fingers
+        for(int i = 1; i < n; i++) {
+            int index = indices[i];
+            int j = i - 1;
+            while(j >= 0 && (xs[indices[j]] > xs[index] || (xs[indices[j]] == xs[index] && ys[indices[j]] > ys[index]))) {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = index;
+        }
+        if(n < 3) {
+            System.arraycopy(indices, 0, hull, 0, n);
+            return n;
+        }
+
+        // Lower hull
+        int k = 0;
+        for(int i = 0; i < n; i++) {
+            while(k >= 2 && cross(xs, ys, hull[k - 2], hull[k - 1], indices[i]) <= 0f) {
+                k--;
+            }
+            hull[k++] = indices[i];
+        }
+
+        // Upper hull
+        for(int i = n - 2, lower = k + 1; i >= 0; i--) {
+            while(k >= lower && cross(xs, ys, hull[k - 2], hull[k - 1], indices[i]) <= 0f) {
+                k--;
+            }
+            hull[k++] = indices[i];
+        }
+
+        // The last vertex equals the first
+        return k - 1;
+    }
+
+    /**
+     * <p>Returns the z-component of the cross product of OA and OB.</p>
+     */
+    private static float cross(float[] xs, float[] ys, int o, int a, int b) {
+        return (xs[a] - xs[o]) * (ys[b] - ys[o]) - (ys[a] - ys[o]) * (xs[b] - xs[o]);
+    }
+}
@@ -0,0 +1,207 @@
+package com.bogdwellers.pinchtozoom.core;
+
+/**
+ * <p>A bounded history of timestamped two dimensional samples, such as the positions of a pointer.</p>
+ * <p>Velocities and smoothed values are estimated with a least-squares line fit over the samples within a time window, which
+ * uses every sample of high-rate input instead of just the first and the last one. Samples are kept in a ring buffer, so
+ * adding and estimating do not allocate.</p>
+ */
+public class SampleHistory {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /*
+     * Attributes
+     */
+
+    private long[] times;
+    private float[] xs;
+    private float[] ys;
+    private int head;
+    private int size;
+
+    // Fit results
+    private float slopeX;
+    private float slopeY;
+    private float fitX;
+    private float fitY;
+
+    /*
+     * Constructor(s)
+     */
+
+    public SampleHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SampleHistory(int capacity) {
+        this.times = new long[capacity];
+        this.xs = new float[capacity];
+        this.ys = new float[capacity];
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Removes all samples.</p>
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * <p>Returns the number of samples.</p>
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * <p>Adds a sample. Samples must be added in chronological order; a sample with the same time as the newest one replaces it.</p>
+     * @param time in milliseconds
+     * @param x
+     * @param y
+     */
+    public void add(long time, float x, float y) {
+        int capacity = times.length;
+        if(size > 0 && times[(head + capacity - 1) % capacity] == time) {
+            head = (head + capacity - 1) % capacity;
+            size--;
+        }
+        times[head] = time;
+        xs[head] = x;
+        ys[head] = y;
+        head = (head + 1) % capacity;
+        if(size < capacity) {
+            size++;
+        }
+    }
+
+    /**
+     * <p>Returns the time of the newest sample.</p>
+     * @return
+     */
+    public long getTime() {
+        return getTime(0);
+    }
+
+    public float getX() {
+        return getX(0);
+    }
+
+    public float getY() {
+        return getY(0);
+    }
+
+    /**
+     * <p>Returns the time of the <code>i</code>-th newest sample, where <code>0</code> is the newest.</p>
+     * @param i
+     * @return
+     */
+    public long getTime(int i) {
+        return times[indexOf(i)];
+    }
+
+    public float getX(int i) {
+        return xs[indexOf(i)];
+    }
+
+    public float getY(int i) {
+        return ys[indexOf(i)];
+    }
+
+    private int indexOf(int i) {
+        if(i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Sample " + i + " of " + size);
+        }
+        int capacity = times.length;
+        return (head + capacity - 1 - i) % capacity;
+    }
+
+    /**
+     * <p>Fits a line through the samples no older than <code>window</code> milliseconds before the newest sample. The results are
+     * available through {@link #getVelocityX()}, {@link #getVelocityY()}, {@link #getFittedX()} and {@link #getFittedY()}.</p>
+     * <p>With fewer than two samples in the window the velocity is zero and the fitted values are those of the newest sample.</p>
+     * @param window in milliseconds
+     */
+    public void fit(long window) {
+        slopeX = slopeY = 0f;
+        if(size == 0) {
+            fitX = fitY = 0f;
+            return;
+        }
+        int capacity = times.length;
+        int newest = (head + capacity - 1) % capacity;
+        long newestTime = times[newest];
+
+        // Sums relative to the newest sample, with time in seconds
+        int n = 0;
+        double st = 0d, stt = 0d, sx = 0d, sy = 0d, stx = 0d, sty = 0d;
+        for(int i = 0, index = newest; i < size; i++, index = index == 0 ? capacity - 1 : index - 1) {
+            long age = newestTime - times[index];
+            if(age > window) {
+                break;
+            }
+            double t = -age / 1000d;
+            float x = xs[index];
+            float y = ys[index];
+            n++;
+            st += t;
+            stt += t * t;
+            sx += x;
+            sy += y;
+            stx += t * x;
+            sty += t * y;
+        }
+        double denominator = n * stt - st * st;
+        if(n < 2 || denominator <= 0d) {
+            fitX = xs[newest];
+            fitY = ys[newest];
+            return;
+        }
+        double bx = (n * stx - st * sx) / denominator;
+        double by = (n * sty - st * sy) / denominator;
+        slopeX = (float) bx;
+        slopeY = (float) by;
+
+        // Evaluated at the newest sample, where t = 0
+        fitX = (float) ((sx - bx * st) / n);
+        fitY = (float) ((sy - by * st) / n);
+    }
+
+    /**
+     * <p>Returns the x velocity per second of the last fit.</p>
+     * @return
+     */
+    public float getVelocityX() {
+        return slopeX;
+    }
+
+    /**
+     * <p>Returns the y velocity per second of the last fit.</p>
+     * @return
+     */
+    public float getVelocityY() {
+        return slopeY;
+    }
+
+    /**
+     * <p>Returns the x value of the last fit at the time of the newest sample.</p>
+     * @return
+     */
+    public float getFittedX() {
+        return fitX;
+    }
+
+    /**
+     * <p>Returns the y value of the last fit at the time of the newest sample.</p>
+     * @return
+     */
+    public float getFittedY() {
+        return fitY;
+    }
+}
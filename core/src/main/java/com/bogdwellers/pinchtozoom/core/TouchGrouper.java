@@ -0,0 +1,229 @@
+package com.bogdwellers.pinchtozoom.core;
+
+import java.util.Arrays;
+
+/**
+ * <p>Clusters points, such as the pointers on a large multi-user surface, into groups of points that are within a radius of
+ * each other, directly or through other points of the same group.</p>
+ * <p>Points are put in a uniform grid with cells the size of the radius, so each point only has to be compared with the points
+ * in its own and the eight neighbouring cells, and are joined with a union-find. This keeps clustering close to linear in the
+ * number of points. Nothing is allocated unless more points are added than the grouper has room for.</p>
+ */
+public class TouchGrouper {
+
+    public static final int INITIAL_CAPACITY = 40; // 4 persons with both hands compatible
+
+    /*
+     * Attributes
+     */
+
+    private float radius;
+    private int count;
+    private float[] xs;
+    private float[] ys;
+    private int[] parents;
+    private int[] groups;
+    private int groupCount;
+
+    // Grid: an open addressing table of cells, each holding a linked list of points
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int[] nextInCell;
+
+    /*
+     * Constructor(s)
+     */
+
+    public TouchGrouper(float radius) {
+        setRadius(radius);
+        ensureCapacity(INITIAL_CAPACITY);
+    }
+
+    /*
+     * Class methods
+     */
+
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * <p>Sets the distance within which two points belong to the same group.</p>
+     * @param radius
+     */
+    public void setRadius(float radius) {
+        if(radius <= 0f) {
+            throw new IllegalArgumentException("Radius must be positive");
+        }
+        this.radius = radius;
+    }
+
+    /**
+     * <p>Removes all points.</p>
+     */
+    public void clear() {
+        count = 0;
+        groupCount = 0;
+    }
+
+    /**
+     * <p>Adds a point.</p>
+     * @param x
+     * @param y
+     * @return the index of the point
+     */
+    public int add(float x, float y) {
+        if(count == xs.length) {
+            ensureCapacity(count * 2);
+        }
+        xs[count] = x;
+        ys[count] = y;
+        return count++;
+    }
+
+    /**
+     * <p>Returns the number of points.</p>
+     * @return
+     */
+    public int size() {
+        return count;
+    }
+
+    public float getX(int index) {
+        return xs[index];
+    }
+
+    public float getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * <p>Clusters the points added since the last {@link #clear()}. The result is available through {@link #getGroupCount()} and
+     * {@link #getGroup(int)}.</p>
+     */
+    public void cluster() {
+        int mask = cellKeys.length - 1;
+        Arrays.fill(cellHeads, -1);
+        for(int i = 0; i < count; i++) {
+            parents[i] = i;
+        }
+
+        for(int i = 0; i < count; i++) {
+            int cellX = cell(xs[i]);
+            int cellY = cell(ys[i]);
+
+            // Compare with the points already in the surrounding cells
+            for(int dy = -1; dy <= 1; dy++) {
+                for(int dx = -1; dx <= 1; dx++) {
+                    int slot = findSlot(key(cellX + dx, cellY + dy), mask);
+                    for(int j = cellHeads[slot]; j != -1; j = nextInCell[j]) {
+                        if(isNear(i, j)) {
+                            union(i, j);
+                        }
+                    }
+                }
+            }
+
+            // Put the point in its own cell
+            int slot = findSlot(key(cellX, cellY), mask);
+            if(cellHeads[slot] == -1) {
+                cellKeys[slot] = key(cellX, cellY);
+            }
+            nextInCell[i] = cellHeads[slot];
+            cellHeads[slot] = i;
+        }
+
+        // Number the groups in order of their first point
+        groupCount = 0;
+        for(int i = 0; i < count; i++) {
+            int root = find(i);
+            if(root == i) {
+                groups[i] = groupCount++;
+            } else {
+                groups[i] = groups[root];
+            }
+        }
+    }
+
+    /**
+     * <p>Returns the number of groups found by the last {@link #cluster()}.</p>
+     * @return
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * <p>Returns the group of the point at the given index, between <code>0</code> and {@link #getGroupCount()}. Groups are numbered
+     * in order of their first point.</p>
+     * @param index
+     * @return
+     */
+    public int getGroup(int index) {
+        return groups[index];
+    }
+
+    /**
+     * <p>Ensures there's room for the given number of points.</p>
+     * @param capacity
+     */
+    public void ensureCapacity(int capacity) {
+        if(xs != null && capacity <= xs.length) {
+            return;
+        }
+        xs = xs == null ? new float[capacity] : Arrays.copyOf(xs, capacity);
+        ys = ys == null ? new float[capacity] : Arrays.copyOf(ys, capacity);
+        parents = new int[capacity];
+        groups = new int[capacity];
+        nextInCell = new int[capacity];
+
+        // At most half full, so probing stays short
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        cellKeys = new long[tableSize];
+        cellHeads = new int[tableSize];
+    }
+
+    private boolean isNear(int i, int j) {
+        float dx = xs[i] - xs[j];
+        float dy = ys[i] - ys[j];
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+    private int cell(float value) {
+        return (int) Math.floor(value / radius);
+    }
+
+    private int findSlot(long key, int mask) {
+        int slot = (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+        while(cellHeads[slot] != -1 && cellKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int find(int i) {
+        while(parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private void union(int i, int j) {
+        int rootI = find(i);
+        int rootJ = find(j);
+        if(rootI < rootJ) {
+            parents[rootJ] = rootI;
+        } else if(rootJ < rootI) {
+            parents[rootI] = rootJ;
+        }
+    }
+
+    /*
+     * Static methods
+     */
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,121 @@
+package com.bogdwellers.pinchtozoom.core;
+
+/**
+ * <p>Predicts where a pointer will be a short time after its newest sample, to compensate for the latency between a touch event
+ * and the frame that shows its result.</p>
+ * <p>The trajectory is estimated with a least-squares line fit over the recent samples of a {@link SampleHistory} and extrapolated
+ * by the horizon. No prediction is made when the pointer suddenly changes direction; when it slows down the prediction is damped
+ * accordingly, so it does not overshoot when the pointer stops.</p>
+ */
+public class TouchPredictor {
+
+    public static final long DEFAULT_HORIZON = 16;
+    public static final long DEFAULT_WINDOW = 50;
+    public static final float DEFAULT_MAX_ANGLE = 45f;
+
+    /*
+     * Attributes
+     */
+
+    private long horizon;
+    private long window;
+    private float minCos;
+    private float predictedX;
+    private float predictedY;
+
+    /*
+     * Constructor(s)
+     */
+
+    public TouchPredictor() {
+        this.horizon = DEFAULT_HORIZON;
+        this.window = DEFAULT_WINDOW;
+        setMaxAngle(DEFAULT_MAX_ANGLE);
+    }
+
+    /*
+     * Class methods
+     */
+
+    public long getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * <p>Sets how far ahead of the newest sample to predict, in milliseconds.</p>
+     * @param horizon
+     */
+    public void setHorizon(long horizon) {
+        if(horizon < 0) {
+            throw new IllegalArgumentException("Horizon must not be negative");
+        }
+        this.horizon = horizon;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * <p>Sets the window in milliseconds of samples used to estimate the trajectory.</p>
+     * @param window
+     */
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    /**
+     * <p>Sets the maximum angle in degrees between the newest movement and the estimated trajectory; beyond it the pointer is
+     * considered to have changed direction and no prediction is made.</p>
+     * @param maxAngle
+     */
+    public void setMaxAngle(float maxAngle) {
+        this.minCos = (float) Math.cos(Math.toRadians(maxAngle));
+    }
+
+    /**
+     * <p>Predicts the position of the pointer whose samples are in the given history.</p>
+     * @param history
+     * @return <code>false</code> if no prediction could be made, in which case the newest sample should be used
+     */
+    public boolean predict(SampleHistory history) {
+        if(history.size() < 2 || horizon == 0) {
+            return false;
+        }
+
+        // Estimate the trajectory
+        history.fit(window);
+        float vx = history.getVelocityX();
+        float vy = history.getVelocityY();
+        float speed = (float) Math.sqrt(vx * vx + vy * vy);
+        if(speed == 0f) {
+            return false;
+        }
+
+        // Compare it with the newest movement
+        long dt = history.getTime(0) - history.getTime(1);
+        if(dt <= 0) {
+            return false;
+        }
+        float rx = (history.getX(0) - history.getX(1)) * 1000f / dt;
+        float ry = (history.getY(0) - history.getY(1)) * 1000f / dt;
+        float recentSpeed = (float) Math.sqrt(rx * rx + ry * ry);
+        if(recentSpeed == 0f || vx * rx + vy * ry < minCos * speed * recentSpeed) {
+            return false; // Changed direction or stopped
+        }
+
+        // Damp when slowing down
+        float seconds = horizon / 1000f * Math.min(1f, recentSpeed / speed);
+        predictedX = history.getFittedX() + vx * seconds;
+        predictedY = history.getFittedY() + vy * seconds;
+        return true;
+    }
+
+    public float getPredictedX() {
+        return predictedX;
+    }
+
+    public float getPredictedY() {
+        return predictedY;
+    }
+}
@@ -0,0 +1,405 @@
+package com.bogdwellers.pinchtozoom.core;
+
+/**
+ * <p>A 3x3 affine transformation stored in primitive fields.</p>
+ * <p>Value indices and the semantics of the <code>post</code> operations match those of <code>android.graphics.Matrix</code>,
+ * so values can be copied to and from a native matrix with a single <code>getValues</code>/<code>setValues</code> call.
+ * The perspective row is always <code>[0, 0, 1]</code>.</p>
+ */
+public class Transform {
+
+    public static final int MSCALE_X = 0;
+    public static final int MSKEW_X = 1;
+    public static final int MTRANS_X = 2;
+    public static final int MSKEW_Y = 3;
+    public static final int MSCALE_Y = 4;
+    public static final int MTRANS_Y = 5;
+    public static final int MPERSP_0 = 6;
+    public static final int MPERSP_1 = 7;
+    public static final int MPERSP_2 = 8;
+
+    /*
+     * Attributes
+     */
+
+    private float scaleX;
+    private float skewX;
+    private float transX;
+    private float skewY;
+    private float scaleY;
+    private float transY;
+
+    /*
+     * Constructor(s)
+     */
+
+    public Transform() {
+        reset();
+    }
+
+    public Transform(Transform src) {
+        set(src);
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Sets this transform to identity.</p>
+     */
+    public void reset() {
+        scaleX = scaleY = 1f;
+        skewX = skewY = transX = transY = 0f;
+    }
+
+    /**
+     * <p>Indicates whether this transform is the identity.</p>
+     * @return
+     */
+    public boolean isIdentity() {
+        return scaleX == 1f && scaleY == 1f && skewX == 0f && skewY == 0f && transX == 0f && transY == 0f;
+    }
+
+    /**
+     * <p>Copies the given transform into this one.</p>
+     * @param src
+     */
+    public void set(Transform src) {
+        scaleX = src.scaleX;
+        skewX = src.skewX;
+        transX = src.transX;
+        skewY = src.skewY;
+        scaleY = src.scaleY;
+        transY = src.transY;
+    }
+
+    /**
+     * <p>Sets all affine values.</p>
+     * @param scaleX
+     * @param skewX
+     * @param transX
+     * @param skewY
+     * @param scaleY
+     * @param transY
+     */
+    public void set(float scaleX, float skewX, float transX, float skewY, float scaleY, float transY) {
+        this.scaleX = scaleX;
+        this.skewX = skewX;
+        this.transX = transX;
+        this.skewY = skewY;
+        this.scaleY = scaleY;
+        this.transY = transY;
+    }
+
+    /**
+     * <p>Copies the first six of the given nine matrix values into this transform.</p>
+     * @param values
+     */
+    public void setValues(float[] values) {
+        scaleX = values[MSCALE_X];
+        skewX = values[MSKEW_X];
+        transX = values[MTRANS_X];
+        skewY = values[MSKEW_Y];
+        scaleY = values[MSCALE_Y];
+        transY = values[MTRANS_Y];
+    }
+
+    /**
+     * <p>Copies the nine matrix values of this transform into the given array.</p>
+     * @param values
+     */
+    public void getValues(float[] values) {
+        values[MSCALE_X] = scaleX;
+        values[MSKEW_X] = skewX;
+        values[MTRANS_X] = transX;
+        values[MSKEW_Y] = skewY;
+        values[MSCALE_Y] = scaleY;
+        values[MTRANS_Y] = transY;
+        values[MPERSP_0] = 0f;
+        values[MPERSP_1] = 0f;
+        values[MPERSP_2] = 1f;
+    }
+
+    /**
+     * <p>Returns the value at the given matrix index.</p>
+     * @param index
+     * @return
+     */
+    public float getValue(int index) {
+        switch(index) {
+            case MSCALE_X:
+                return scaleX;
+            case MSKEW_X:
+                return skewX;
+            case MTRANS_X:
+                return transX;
+            case MSKEW_Y:
+                return skewY;
+            case MSCALE_Y:
+                return scaleY;
+            case MTRANS_Y:
+                return transY;
+            case MPERSP_0:
+            case MPERSP_1:
+                return 0f;
+            case MPERSP_2:
+                return 1f;
+            default:
+                throw new IllegalArgumentException("Invalid index " + index);
+        }
+    }
+
+    /**
+     * <p>Sets the value at the given affine matrix index.</p>
+     * @param index
+     * @param value
+     */
+    public void setValue(int index, float value) {
+        switch(index) {
+            case MSCALE_X:
+                scaleX = value;
+                break;
+            case MSKEW_X:
+                skewX = value;
+                break;
+            case MTRANS_X:
+                transX = value;
+                break;
+            case MSKEW_Y:
+                skewY = value;
+                break;
+            case MSCALE_Y:
+                scaleY = value;
+                break;
+            case MTRANS_Y:
+                transY = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Index " + index + " is not an affine value");
+        }
+    }
+
+    public float getScaleX() {
+        return scaleX;
+    }
+
+    public float getSkewX() {
+        return skewX;
+    }
+
+    public float getTranslateX() {
+        return transX;
+    }
+
+    public float getSkewY() {
+        return skewY;
+    }
+
+    public float getScaleY() {
+        return scaleY;
+    }
+
+    public float getTranslateY() {
+        return transY;
+    }
+
+    /**
+     * <p>Sets the translation.</p>
+     * @param transX
+     * @param transY
+     */
+    public void setTranslate(float transX, float transY) {
+        this.transX = transX;
+        this.transY = transY;
+    }
+
+    /**
+     * <p>Returns the uniform scale factor, regardless of rotation.</p>
+     * @return
+     */
+    public float getScale() {
+        return (float) Math.sqrt(scaleX * scaleX + skewY * skewY);
+    }
+
+    /**
+     * <p>Returns the rotation in degrees.</p>
+     * @return
+     */
+    public float getRotation() {
+        return (float) Math.toDegrees(Math.atan2(skewY, scaleX));
+    }
+
+    /**
+     * <p>Post-concatenates a translation.</p>
+     * @param dx
+     * @param dy
+     */
+    public void postTranslate(float dx, float dy) {
+        transX += dx;
+        transY += dy;
+    }
+
+    /**
+     * <p>Post-concatenates a scale around the origin.</p>
+     * @param sx
+     * @param sy
+     */
+    public void postScale(float sx, float sy) {
+        scaleX *= sx;
+        skewX *= sx;
+        transX *= sx;
+        skewY *= sy;
+        scaleY *= sy;
+        transY *= sy;
+    }
+
+    /**
+     * <p>Post-concatenates a scale around the given pivot point.</p>
+     * @param sx
+     * @param sy
+     * @param px
+     * @param py
+     */
+    public void postScale(float sx, float sy, float px, float py) {
+        scaleX *= sx;
+        skewX *= sx;
+        transX = (transX - px) * sx + px;
+        skewY *= sy;
+        scaleY *= sy;
+        transY = (transY - py) * sy + py;
+    }
+
+    /**
+     * <p>Post-concatenates a rotation around the origin.</p>
+     * @param degrees
+     */
+    public void postRotate(float degrees) {
+        postRotate(degrees, 0f, 0f);
+    }
+
+    /**
+     * <p>Post-concatenates a rotation around the given pivot point.</p>
+     * @param degrees
+     * @param px
+     * @param py
+     */
+    public void postRotate(float degrees, float px, float py) {
+        double radians = Math.toRadians(degrees);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        float tx = transX - px;
+        float ty = transY - py;
+        float sx = scaleX;
+        float kx = skewX;
+        scaleX = cos * sx - sin * skewY;
+        skewX = cos * kx - sin * scaleY;
+        transX = cos * tx - sin * ty + px;
+        skewY = sin * sx + cos * skewY;
+        scaleY = sin * kx + cos * scaleY;
+        transY = sin * tx + cos * ty + py;
+    }
+
+    /**
+     * <p>Post-concatenates the given transform; this becomes <code>other * this</code>.</p>
+     * @param other
+     */
+    public void postConcat(Transform other) {
+        float sx = scaleX, kx = skewX, tx = transX, ky = skewY, sy = scaleY, ty = transY;
+        scaleX = other.scaleX * sx + other.skewX * ky;
+        skewX = other.scaleX * kx + other.skewX * sy;
+        transX = other.scaleX * tx + other.skewX * ty + other.transX;
+        skewY = other.skewY * sx + other.scaleY * ky;
+        scaleY = other.skewY * kx + other.scaleY * sy;
+        transY = other.skewY * tx + other.scaleY * ty + other.transY;
+    }
+
+    /**
+     * <p>Sets <code>inverse</code> to the inverse of this transform.</p>
+     * @param inverse may be this transform
+     * @return <code>false</code> if this transform can not be inverted, in which case <code>inverse</code> is left untouched
+     */
+    public boolean invert(Transform inverse) {
+        float det = scaleX * scaleY - skewX * skewY;
+        if(det == 0f) {
+            return false;
+        }
+        float invDet = 1f / det;
+        float sx = scaleY * invDet;
+        float kx = -skewX * invDet;
+        float ky = -skewY * invDet;
+        float sy = scaleX * invDet;
+        float tx = -(sx * transX + kx * transY);
+        float ty = -(ky * transX + sy * transY);
+        inverse.set(sx, kx, tx, ky, sy, ty);
+        return true;
+    }
+
+    /**
+     * <p>Maps the points stored as <code>x, y</code> pairs in the given array in place.</p>
+     * @param pts
+     */
+    public void mapPoints(float[] pts) {
+        for(int i = 0; i + 1 < pts.length; i += 2) {
+            float x = pts[i];
+            float y = pts[i + 1];
+            pts[i] = scaleX * x + skewX * y + transX;
+            pts[i + 1] = skewY * x + scaleY * y + transY;
+        }
+    }
+
+    /**
+     * <p>Maps the given rectangle and stores the bounding box of the result as <code>left, top, right, bottom</code>.</p>
+     * @param dst array of at least four values
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     */
+    public void mapRect(float[] dst, float left, float top, float right, float bottom) {
+        float x = scaleX * left + skewX * top + transX;
+        float y = skewY * left + scaleY * top + transY;
+        // Spans of the mapped width and height along both axes
+        float wx = scaleX * (right - left);
+        float wy = skewY * (right - left);
+        float hx = skewX * (bottom - top);
+        float hy = scaleY * (bottom - top);
+        dst[0] = x + Math.min(0f, wx) + Math.min(0f, hx);
+        dst[1] = y + Math.min(0f, wy) + Math.min(0f, hy);
+        dst[2] = x + Math.max(0f, wx) + Math.max(0f, hx);
+        dst[3] = y + Math.max(0f, wy) + Math.max(0f, hy);
+    }
+
+    /*
+     * Overrides
+     */
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof Transform)) {
+            return false;
+        }
+        Transform t = (Transform) o;
+        return scaleX == t.scaleX && skewX == t.skewX && transX == t.transX
+                && skewY == t.skewY && scaleY == t.scaleY && transY == t.transY;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(scaleX);
+        result = 31 * result + Float.floatToIntBits(skewX);
+        result = 31 * result + Float.floatToIntBits(transX);
+        result = 31 * result + Float.floatToIntBits(skewY);
+        result = 31 * result + Float.floatToIntBits(scaleY);
+        result = 31 * result + Float.floatToIntBits(transY);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Transform[" + scaleX + ", " + skewX + ", " + transX + "][" + skewY + ", " + scaleY + ", " + transY + "]";
+    }
+}
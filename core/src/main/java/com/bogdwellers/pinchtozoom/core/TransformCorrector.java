@@ -0,0 +1,92 @@
+package com.bogdwellers.pinchtozoom.core;
+
+/**
+ * <p>The <code>TransformCorrector</code> enforces boundaries in the transformation of a {@link Transform}.</p>
+ * <p>It contains no platform code, so corrections can run, be tested and be benchmarked on a plain JVM.</p>
+ */
+public abstract class TransformCorrector {
+
+    /*
+     * Attributes
+     */
+
+    private Transform transform;
+
+    /*
+     * Constructor(s)
+     */
+
+    public TransformCorrector() {
+        this(new Transform());
+    }
+
+    public TransformCorrector(Transform transform) {
+        this.transform = transform;
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Does corrections AFTER transform operations have been applied.</p>
+     * <p>This implementation does nothing.</p>
+     */
+    public void correctTransform() {
+
+    }
+
+    /**
+     * <p>Does corrections AFTER operations have been applied.</p>
+     * <p>This implementation calls {@link #correctTransform()}; correctors of a platform matrix correct the matrix instead.</p>
+     */
+    public void performAbsoluteCorrections() {
+        correctTransform();
+    }
+
+    /**
+     * <p>Returns the corrected value of the given relative vector.</p>
+     * @param vector
+     * @param x
+     * @return
+     */
+    public float correctRelative(int vector, float x) {
+        float v = transform.getValue(vector);
+        switch(vector) {
+            case Transform.MTRANS_X:
+            case Transform.MTRANS_Y:
+                return correctAbsolute(vector, v + x) - v;
+            case Transform.MSCALE_X:
+            case Transform.MSCALE_Y:
+                return correctAbsolute(vector, v * x) / v;
+            default:
+                throw new IllegalArgumentException("Vector not supported");
+        }
+    }
+
+    /**
+     * <p>Returns the corrected value of the given absolute vector.</p>
+     * @param vector
+     * @param x
+     * @return
+     */
+    public float correctAbsolute(int vector, float x) {
+        return x;
+    }
+
+    /**
+     * <p>Returns the transform that is being corrected.</p>
+     * @return
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * <p>Sets the transform that is being corrected.</p>
+     * @param transform
+     */
+    public void setTransform(Transform transform) {
+        this.transform = transform;
+    }
+}
@@ -0,0 +1,76 @@
+package com.bogdwellers.pinchtozoom.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bounds and fit scale helpers.
+ */
+public class CorrectorUtilsTest {
+
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void correctTranslation_centersSmallerImage() {
+        assertEquals(100f, CorrectorUtils.correctTranslation(-300f, 1000f, 800f), EPSILON);
+        assertEquals(100f, CorrectorUtils.correctTranslation(400f, 1000f, 800f), EPSILON);
+    }
+
+    @Test
+    public void correctTranslation_clampsLargerImage() {
+        assertEquals(0f, CorrectorUtils.correctTranslation(50f, 1000f, 1500f), EPSILON);
+        assertEquals(-500f, CorrectorUtils.correctTranslation(-700f, 1000f, 1500f), EPSILON);
+        assertEquals(-200f, CorrectorUtils.correctTranslation(-200f, 1000f, 1500f), EPSILON);
+    }
+
+    @Test
+    public void translationExceedsBoundary() {
+        assertTrue(CorrectorUtils.translationExceedsBoundary(1f, 1000f, 1500f));
+        assertTrue(CorrectorUtils.translationExceedsBoundary(-501f, 1000f, 1500f));
+        assertFalse(CorrectorUtils.translationExceedsBoundary(-500f, 1000f, 1500f));
+        assertFalse(CorrectorUtils.translationExceedsBoundary(300f, 1000f, 800f));
+    }
+
+    @Test
+    public void innerFitScale_fitsLimitingDimension() {
+        assertEquals(0.54f, CorrectorUtils.innerFitScale(1080f, 1920f, 2000f, 1500f), EPSILON);
+        assertEquals(1.28f, CorrectorUtils.innerFitScale(1080f, 1920f, 500f, 1500f), EPSILON);
+    }
+
+    @Test
+    public void innerFitScale_rotated() {
+        // A quarter turn swaps the dimensions
+        assertEquals(CorrectorUtils.innerFitScale(1080f, 1920f, 1500f, 2000f),
+                CorrectorUtils.innerFitScale(1080f, 1920f, 2000f, 1500f, 0f, 1f), EPSILON);
+
+        // An eighth turn fits the bounding box of the rotated image
+        float c = (float) Math.sqrt(0.5d);
+        assertEquals(1000f / (1000f * c + 1000f * c),
+                CorrectorUtils.innerFitScale(1000f, 1000f, 1000f, 1000f, c, -c), EPSILON);
+    }
+
+    @Test
+    public void clampScale() {
+        assertEquals(1f, CorrectorUtils.clampScale(0.5f, 1f, 4f), EPSILON);
+        assertEquals(4f, CorrectorUtils.clampScale(5f, 1f, 4f), EPSILON);
+        assertEquals(2f, CorrectorUtils.clampScale(2f, 1f, 4f), EPSILON);
+    }
+
+    @Test
+    public void bounds_ofQuarterTurn() {
+        // Rotated a quarter turn clockwise at scale 2: x' = -2y + tx, y' = 2x + ty
+        float width = 300f;
+        float height = 200f;
+        assertEquals(400f, CorrectorUtils.boundsExtent(0f, -2f, width, height), EPSILON);
+        assertEquals(600f, CorrectorUtils.boundsExtent(2f, 0f, width, height), EPSILON);
+        assertEquals(-400f, CorrectorUtils.boundsOffset(0f, -2f, width, height), EPSILON);
+        assertEquals(0f, CorrectorUtils.boundsOffset(2f, 0f, width, height), EPSILON);
+    }
+
+    @Test
+    public void bounds_unrotated() {
+        assertEquals(600f, CorrectorUtils.boundsExtent(2f, 0f, 300f, 200f), EPSILON);
+        assertEquals(0f, CorrectorUtils.boundsOffset(2f, 0f, 300f, 200f), EPSILON);
+    }
+}
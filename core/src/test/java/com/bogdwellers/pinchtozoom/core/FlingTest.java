@@ -0,0 +1,110 @@
+package com.bogdwellers.pinchtozoom.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the friction fling against its closed form.
+ */
+public class FlingTest {
+
+    private static final float FRICTION = 4f;
+    private static final float MIN_VELOCITY = 50f;
+    private static final float UNBOUNDED = 1e6f;
+
+    @Test
+    public void velocity_decaysExponentially() {
+        Fling fling = newFling();
+        fling.start(0f, 0f, 2000f, -1000f, -UNBOUNDED, UNBOUNDED, -UNBOUNDED, UNBOUNDED);
+
+        for(long elapsed = 0L; elapsed < 500L; elapsed += 50L) {
+            double decay = Math.exp(-FRICTION * elapsed / 1000d);
+            assertEquals(2000d * decay, fling.getVelocityX(elapsed), 0.01d);
+            assertEquals(-1000d * decay, fling.getVelocityY(elapsed), 0.01d);
+            assertEquals(2000d / FRICTION * (1d - decay), fling.getX(elapsed), 0.01d);
+            assertEquals(-1000d / FRICTION * (1d - decay), fling.getY(elapsed), 0.01d);
+        }
+    }
+
+    @Test
+    public void stopsAtMinVelocity() {
+        Fling fling = newFling();
+        fling.start(0f, 0f, 2000f, 0f, -UNBOUNDED, UNBOUNDED, -UNBOUNDED, UNBOUNDED);
+
+        // v0 * e^(-kt) = minVelocity
+        long duration = (long) Math.ceil(Math.log(2000d / MIN_VELOCITY) / FRICTION * 1000d);
+        assertEquals(duration, fling.getDuration());
+        assertFalse(fling.isFinished(duration - 1L));
+        assertTrue(fling.isFinished(duration));
+        assertEquals(MIN_VELOCITY, fling.getVelocityX(duration - 1L), 1f);
+        assertEquals(0f, fling.getVelocityX(duration), 0f);
+        assertEquals(fling.getFinalX(), fling.getX(duration), 0f);
+        assertEquals(fling.getFinalX(), fling.getX(duration * 2L), 0f);
+    }
+
+    @Test
+    public void slowFling_doesNotMove() {
+        Fling fling = newFling();
+        fling.start(10f, 20f, MIN_VELOCITY, -MIN_VELOCITY / 2f, -UNBOUNDED, UNBOUNDED, -UNBOUNDED, UNBOUNDED);
+
+        assertEquals(0L, fling.getDuration());
+        assertTrue(fling.isFinished(0L));
+        assertEquals(10f, fling.getFinalX(), 0f);
+        assertEquals(20f, fling.getFinalY(), 0f);
+    }
+
+    @Test
+    public void totalDistance_matchesClosedForm() {
+        float[] velocities = { 300f, -800f, 2500f, 8000f };
+        for(float velocity: velocities) {
+            Fling fling = newFling();
+            fling.start(100f, 0f, velocity, 0f, -UNBOUNDED, UNBOUNDED, -UNBOUNDED, UNBOUNDED);
+
+            // x(T) - x0 = v0 / k * (1 - minVelocity / |v0|)
+            double distance = velocity / FRICTION * (1d - MIN_VELOCITY / Math.abs(velocity));
+            assertEquals(distance, fling.getFinalX() - 100f, 0.01d);
+        }
+    }
+
+    @Test
+    public void bound_endsFlingWhenReached() {
+        Fling fling = newFling();
+        fling.start(0f, 0f, 2000f, 0f, -100f, 100f, 0f, 0f);
+
+        assertEquals(100f, fling.getFinalX(), 0f);
+
+        // Reached exactly at the end, while still moving
+        long duration = fling.getDuration();
+        assertEquals(100f, fling.getX(duration - 1L), 2f);
+        assertTrue(fling.getVelocityX(duration - 1L) > MIN_VELOCITY);
+        long unbounded = (long) Math.ceil(Math.log(2000d / MIN_VELOCITY) / FRICTION * 1000d);
+        assertTrue(duration < unbounded);
+    }
+
+    @Test
+    public void startOutsideBounds_isClamped() {
+        Fling fling = newFling();
+        fling.start(150f, 0f, 0f, 0f, -100f, 100f, 0f, 0f);
+
+        assertEquals(100f, fling.getFinalX(), 0f);
+    }
+
+    @Test
+    public void accumulate() {
+        assertEquals(3000f, Fling.accumulate(1000f, 2000f), 0f);
+        assertEquals(-1000f, Fling.accumulate(-1000f, 2000f), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setFriction_rejectsZero() {
+        new Fling().setFriction(0f);
+    }
+
+    private static Fling newFling() {
+        Fling fling = new Fling();
+        fling.setFriction(FRICTION);
+        fling.setMinVelocity(MIN_VELOCITY);
+        return fling;
+    }
+}
@@ -0,0 +1,240 @@
+package com.bogdwellers.pinchtozoom.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Solves drags, pinches and morphs without any platform code.
+ */
+public class GestureSolverTest {
+
+    private static final float EPSILON = 1e-3f;
+
+    private GestureSolver solver;
+    private TransformCorrector corrector;
+
+    @Before
+    public void setUp() {
+        solver = new GestureSolver();
+        corrector = new TransformCorrector() {};
+    }
+
+    @Test
+    public void drag_translatesFromStart() {
+        corrector.getTransform().set(2f, 0f, 10f, 0f, 2f, 20f);
+        solver.start(corrector.getTransform());
+
+        solver.drag(corrector, 30f, -5f);
+        solver.drag(corrector, 40f, -10f);
+
+        assertTransform(corrector.getTransform(), 2f, 0f, 50f, 0f, 2f, 10f);
+    }
+
+    @Test
+    public void drag_isCorrected() {
+        TransformCorrector bounded = new TransformCorrector() {
+            @Override
+            public float correctAbsolute(int vector, float x) {
+                return vector == Transform.MTRANS_X ? Math.min(x, 0f) : x;
+            }
+        };
+        bounded.getTransform().setTranslate(-20f, 0f);
+        solver.start(bounded.getTransform());
+
+        solver.drag(bounded, 50f, 15f);
+
+        assertEquals(0f, bounded.getTransform().getTranslateX(), EPSILON);
+        assertEquals(15f, bounded.getTransform().getTranslateY(), EPSILON);
+    }
+
+    @Test
+    public void drag_ignoredWhenTranslateDisabled() {
+        solver.setTranslateEnabled(false);
+        solver.start(corrector.getTransform());
+
+        solver.drag(corrector, 50f, 15f);
+
+        assertTrue(corrector.getTransform().isIdentity());
+    }
+
+    @Test
+    public void pinch_keepsPointsUnderFingers() {
+        solver.start(corrector.getTransform());
+        solver.startPinch(100f, 100f, 200f, 100f, true);
+
+        // Spread symmetrically around the midpoint
+        solver.pinch(corrector, 50f, 100f, 250f, 100f);
+
+        Transform transform = corrector.getTransform();
+        assertEquals(2f, transform.getScale(), EPSILON);
+        assertMapsTo(transform, 100f, 100f, 50f, 100f);
+        assertMapsTo(transform, 200f, 100f, 250f, 100f);
+        assertEquals(150f, solver.getMidX(), EPSILON);
+        assertEquals(100f, solver.getMidY(), EPSILON);
+    }
+
+    @Test
+    public void pinch_rotatesWhenEnabled() {
+        solver.setRotateEnabled(true);
+        solver.start(corrector.getTransform());
+        solver.startPinch(100f, 100f, 200f, 100f, true);
+
+        // A quarter turn around the midpoint
+        solver.pinch(corrector, 150f, 50f, 150f, 150f);
+
+        Transform transform = corrector.getTransform();
+        assertEquals(1f, transform.getScale(), EPSILON);
+        assertMapsTo(transform, 100f, 100f, 150f, 50f);
+        assertMapsTo(transform, 200f, 100f, 150f, 150f);
+    }
+
+    @Test
+    public void pinch_scaleIsCorrected() {
+        TransformCorrector bounded = new TransformCorrector() {
+            @Override
+            public float correctAbsolute(int vector, float x) {
+                return vector == Transform.MSCALE_X ? Math.min(x, 1.5f) : x;
+            }
+        };
+        solver.start(bounded.getTransform());
+        solver.startPinch(100f, 100f, 200f, 100f, true);
+
+        solver.pinch(bounded, 0f, 100f, 300f, 100f);
+
+        assertEquals(1.5f, bounded.getTransform().getScale(), EPSILON);
+    }
+
+    @Test
+    public void morph_translatesWithPointers() {
+        corrector.getTransform().set(0.5f, 0f, 0f, 0f, 0.5f, 0f);
+        solver.start(corrector.getTransform());
+
+        solver.beginMorph();
+        solver.addMorphPoint(100f, 100f, 110f, 80f);
+        solver.addMorphPoint(300f, 120f, 310f, 100f);
+        solver.addMorphPoint(180f, 400f, 190f, 380f);
+        solver.morph(corrector);
+
+        assertTransform(corrector.getTransform(), 0.5f, 0f, 10f, 0f, 0.5f, -20f);
+        assertEquals((110f + 310f + 190f) / 3f, solver.getMidX(), EPSILON);
+        assertEquals((80f + 100f + 380f) / 3f, solver.getMidY(), EPSILON);
+    }
+
+    @Test
+    public void morph_withoutPointersKeepsStart() {
+        corrector.getTransform().setTranslate(5f, 5f);
+        solver.start(corrector.getTransform());
+        corrector.getTransform().setTranslate(50f, 50f);
+
+        solver.beginMorph();
+        solver.morph(corrector);
+
+        assertTransform(corrector.getTransform(), 1f, 0f, 5f, 0f, 1f, 5f);
+    }
+
+    @Test
+    public void morph_fitsSimilarity_twoPointers() {
+        assertFitsSimilarity(new float[] { 200f, 300f, 500f, 700f }, 1.5f, 30f, 40f, -25f);
+    }
+
+    @Test
+    public void morph_fitsSimilarity_threePointers() {
+        assertFitsSimilarity(new float[] { 200f, 300f, 500f, 700f, 650f, 250f }, 0.8f, -20f, -15f, 60f);
+    }
+
+    @Test
+    public void morph_fitsSimilarity_manyPointers() {
+        assertFitsSimilarity(new float[] { 100f, 100f, 400f, 120f, 380f, 500f, 90f, 480f, 250f, 300f }, 2.25f, 135f, 10f, 10f);
+    }
+
+    @Test
+    public void morph_fitsSimilarity_largeCoordinates() {
+        // Fingers close together on a large zoomed image; the sums must not lose precision
+        assertFitsSimilarity(new float[] { 3800f, 2100f, 3830f, 2095f, 3815f, 2130f }, 1.05f, 0.5f, 3f, -2f);
+    }
+
+    @Test
+    public void morph_projectsScaleWithoutRotation() {
+        float[] start = { 200f, 300f, 500f, 700f, 650f, 250f };
+        float[] current = similarity(start, 2f, 60f, 0f, 0f);
+        solver.start(corrector.getTransform());
+
+        morph(start, current);
+
+        // The best unrotated fit of a rotated similarity is its projection
+        Transform transform = corrector.getTransform();
+        assertEquals(0f, transform.getRotation(), EPSILON);
+        assertEquals(1f, transform.getScale(), 1e-5f);
+    }
+
+    /*
+     * Helpers
+     */
+
+    private void assertFitsSimilarity(float[] start, float scale, float degrees, float dx, float dy) {
+        float[] current = similarity(start, scale, degrees, dx, dy);
+        solver.setRotateEnabled(true);
+        solver.start(corrector.getTransform());
+
+        morph(start, current);
+
+        Transform transform = corrector.getTransform();
+        assertEquals(scale, transform.getScale(), 1e-5f);
+        assertEquals(degrees, transform.getRotation(), 1e-3f);
+        for(int i = 0; i < start.length; i += 2) {
+            assertMapsTo(transform, start[i], start[i + 1], current[i], current[i + 1]);
+        }
+    }
+
+    private void morph(float[] start, float[] current) {
+        solver.beginMorph();
+        for(int i = 0; i < start.length; i += 2) {
+            solver.addMorphPoint(start[i], start[i + 1], current[i], current[i + 1]);
+        }
+        solver.morph(corrector);
+    }
+
+    /**
+     * Scales and rotates the points around their centroid and then translates them.
+     */
+    private static float[] similarity(float[] points, float scale, float degrees, float dx, float dy) {
+        double cx = 0d;
+        double cy = 0d;
+        int n = points.length / 2;
+        for(int i = 0; i < points.length; i += 2) {
+            cx += points[i];
+            cy += points[i + 1];
+        }
+        cx /= n;
+        cy /= n;
+        double radians = Math.toRadians(degrees);
+        double cos = Math.cos(radians) * scale;
+        double sin = Math.sin(radians) * scale;
+        float[] result = new float[points.length];
+        for(int i = 0; i < points.length; i += 2) {
+            double x = points[i] - cx;
+            double y = points[i + 1] - cy;
+            result[i] = (float) (cos * x - sin * y + cx + dx);
+            result[i + 1] = (float) (sin * x + cos * y + cy + dy);
+        }
+        return result;
+    }
+
+    private static void assertTransform(Transform transform, float scaleX, float skewX, float transX, float skewY, float scaleY, float transY) {
+        assertEquals(scaleX, transform.getScaleX(), EPSILON);
+        assertEquals(skewX, transform.getSkewX(), EPSILON);
+        assertEquals(transX, transform.getTranslateX(), EPSILON);
+        assertEquals(skewY, transform.getSkewY(), EPSILON);
+        assertEquals(scaleY, transform.getScaleY(), EPSILON);
+        assertEquals(transY, transform.getTranslateY(), EPSILON);
+    }
+
+    private static void assertMapsTo(Transform transform, float x, float y, float expectedX, float expectedY) {
+        float[] pts = { x, y };
+        transform.mapPoints(pts);
+        assertEquals(expectedX, pts[0], EPSILON);
+        assertEquals(expectedY, pts[1], EPSILON);
+    }
+}
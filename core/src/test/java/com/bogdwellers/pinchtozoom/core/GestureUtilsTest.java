@@ -0,0 +1,155 @@
+package com.bogdwellers.pinchtozoom.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the gesture geometry helpers, in particular the convex hull.
+ */
+public class GestureUtilsTest {
+
+    @Test
+    public void spacing() {
+        assertEquals(5f, GestureUtils.spacing(1f, 1f, 4f, 5f), 1e-6f);
+    }
+
+    @Test
+    public void convexHull_dropsInteriorPoints() {
+        float[] xs = { 0f, 10f, 5f, 10f, 0f, 3f };
+        float[] ys = { 0f, 0f, 5f, 10f, 10f, 7f };
+
+        int[] hull = hull(xs, ys);
+
+        assertArrayEquals(new int[] { 0, 1, 3, 4 }, sorted(hull));
+        assertConvex(xs, ys, hull);
+    }
+
+    @Test
+    public void convexHull_dropsCollinearPoints() {
+        // A square with the midpoints of its edges
+        float[] xs = { 0f, 5f, 10f, 10f, 10f, 5f, 0f, 0f };
+        float[] ys = { 0f, 0f, 0f, 5f, 10f, 10f, 10f, 5f };
+
+        int[] hull = hull(xs, ys);
+
+        assertArrayEquals(new int[] { 0, 2, 4, 6 }, sorted(hull));
+        assertConvex(xs, ys, hull);
+    }
+
+    @Test
+    public void convexHull_ofCollinearPointsIsTheirEnds() {
+        float[] xs = { 4f, 0f, 8f, 2f, 6f };
+        float[] ys = { 2f, 0f, 4f, 1f, 3f };
+
+        int[] hull = hull(xs, ys);
+
+        assertArrayEquals(new int[] { 1, 2 }, sorted(hull));
+    }
+
+    @Test
+    public void convexHull_dropsDuplicatePoints() {
+        float[] xs = { 0f, 10f, 0f, 10f, 0f, 10f, 5f };
+        float[] ys = { 0f, 0f, 0f, 10f, 10f, 10f, 5f };
+
+        int[] hull = hull(xs, ys);
+
+        assertEquals(4, hull.length);
+        assertConvex(xs, ys, hull);
+        float[] corners = new float[8];
+        for(int i = 0; i < hull.length; i++) {
+            corners[i * 2] = xs[hull[i]];
+            corners[i * 2 + 1] = ys[hull[i]];
+        }
+        assertEquals(4, distinctPoints(corners));
+    }
+
+    @Test
+    public void convexHull_ofFewPoints() {
+        assertArrayEquals(new int[0], hull(new float[0], new float[0]));
+        assertArrayEquals(new int[] { 0 }, hull(new float[] { 3f }, new float[] { 4f }));
+        assertArrayEquals(new int[] { 0, 1 }, sorted(hull(new float[] { 3f, 1f }, new float[] { 4f, 2f })));
+    }
+
+    @Test
+    public void convexHull_containsAllPoints() {
+        Random random = new Random(7L);
+        for(int round = 0; round < 200; round++) {
+            int n = 3 + random.nextInt(20);
+            float[] xs = new float[n];
+            float[] ys = new float[n];
+            for(int i = 0; i < n; i++) {
+                // A coarse grid, so collinear and duplicate points are common
+                xs[i] = random.nextInt(8) * 10f;
+                ys[i] = random.nextInt(8) * 10f;
+            }
+
+            int[] hull = hull(xs, ys);
+
+            if(hull.length >= 3) {
+                assertConvex(xs, ys, hull);
+                for(int i = 0; i < n; i++) {
+                    for(int v = 0; v < hull.length; v++) {
+                        int a = hull[v];
+                        int b = hull[(v + 1) % hull.length];
+                        assertTrue("round " + round, cross(xs, ys, a, b, i) >= 0f);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Helpers
+     */
+
+    private static int[] hull(float[] xs, float[] ys) {
+        int n = xs.length;
+        int[] indices = new int[n];
+        for(int i = 0; i < n; i++) {
+            indices[i] = i;
+        }
+        int[] hull = new int[n + 1];
+        int count = GestureUtils.convexHull(xs, ys, indices, n, hull);
+        return Arrays.copyOf(hull, count);
+    }
+
+    /**
+     * Asserts the hull turns left at every vertex, so it has no collinear or duplicate vertices.
+     */
+    private static void assertConvex(float[] xs, float[] ys, int[] hull) {
+        for(int v = 0; v < hull.length; v++) {
+            int a = hull[v];
+            int b = hull[(v + 1) % hull.length];
+            int c = hull[(v + 2) % hull.length];
+            assertTrue(cross(xs, ys, a, b, c) > 0f);
+        }
+    }
+
+    private static float cross(float[] xs, float[] ys, int o, int a, int b) {
+        return (xs[a] - xs[o]) * (ys[b] - ys[o]) - (ys[a] - ys[o]) * (xs[b] - xs[o]);
+    }
+
+    private static int[] sorted(int[] values) {
+        int[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static int distinctPoints(float[] xy) {
+        int count = 0;
+        for(int i = 0; i < xy.length; i += 2) {
+            boolean seen = false;
+            for(int j = 0; j < i; j += 2) {
+                seen |= xy[i] == xy[j] && xy[i + 1] == xy[j + 1];
+            }
+            if(!seen) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,135 @@
+package com.bogdwellers.pinchtozoom.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the ring buffer and the least-squares fit of the sample history.
+ */
+public class SampleHistoryTest {
+
+    private static final float EPSILON = 1e-3f;
+
+    @Test
+    public void fit_linearMotion() {
+        SampleHistory history = new SampleHistory();
+        for(long t = 1000L; t <= 1080L; t += 8L) {
+            // 500 px/s to the right, 250 px/s up
+            history.add(t, 100f + (t - 1000L) * 0.5f, 300f - (t - 1000L) * 0.25f);
+        }
+
+        history.fit(100L);
+
+        assertEquals(500f, history.getVelocityX(), 0.01f);
+        assertEquals(-250f, history.getVelocityY(), 0.01f);
+        assertEquals(140f, history.getFittedX(), EPSILON);
+        assertEquals(280f, history.getFittedY(), EPSILON);
+    }
+
+    @Test
+    public void fit_usesAllSamplesAgainstNoise() {
+        SampleHistory history = new SampleHistory();
+        for(int i = 0; i <= 8; i++) {
+            // 1000 px/s with alternating jitter of a pixel
+            float jitter = i % 2 == 0 ? 1f : -1f;
+            history.add(i * 4L, i * 4f + jitter, 0f);
+        }
+
+        history.fit(100L);
+
+        // The last two samples alone would give 1500 px/s
+        float twoPoint = (history.getX(0) - history.getX(1)) * 1000f / (history.getTime(0) - history.getTime(1));
+        assertEquals(1500f, twoPoint, EPSILON);
+        assertEquals(1000f, history.getVelocityX(), 100f);
+    }
+
+    @Test
+    public void fit_onlyUsesWindow() {
+        SampleHistory history = new SampleHistory();
+        history.add(0L, 0f, 0f);
+        history.add(10L, 500f, 0f);
+        for(long t = 100L; t <= 140L; t += 10L) {
+            history.add(t, 1000f + (t - 100L), 0f);
+        }
+
+        history.fit(40L);
+
+        assertEquals(1000f, history.getVelocityX(), 0.01f);
+    }
+
+    @Test
+    public void ring_wrapsAround() {
+        SampleHistory history = new SampleHistory(4);
+        for(int i = 0; i < 10; i++) {
+            history.add(i * 10L, i < 6 ? 0f : (i - 6) * 20f, i);
+        }
+
+        assertEquals(4, history.size());
+        assertEquals(90L, history.getTime());
+        assertEquals(9f, history.getY(), 0f);
+        assertEquals(60L, history.getTime(3));
+        assertEquals(6f, history.getY(3), 0f);
+
+        // Only the samples that are left are fitted
+        history.fit(1000L);
+        assertEquals(2000f, history.getVelocityX(), 0.01f);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void ring_rejectsIndexBeyondSize() {
+        SampleHistory history = new SampleHistory(4);
+        for(int i = 0; i < 10; i++) {
+            history.add(i, i, i);
+        }
+        history.getTime(4);
+    }
+
+    @Test
+    public void add_sameTimeReplacesNewest() {
+        SampleHistory history = new SampleHistory();
+        history.add(0L, 0f, 0f);
+        history.add(10L, 10f, 0f);
+        history.add(10L, 20f, 0f);
+
+        assertEquals(2, history.size());
+        assertEquals(20f, history.getX(), 0f);
+        history.fit(100L);
+        assertEquals(2000f, history.getVelocityX(), 0.01f);
+    }
+
+    @Test
+    public void fit_degenerateTimeSpan() {
+        SampleHistory history = new SampleHistory();
+        history.fit(100L);
+        assertEquals(0f, history.getVelocityX(), 0f);
+        assertEquals(0f, history.getFittedX(), 0f);
+
+        // A single sample, or all samples at one time
+        history.add(50L, 10f, 20f);
+        history.add(50L, 30f, 40f);
+        history.fit(100L);
+        assertEquals(0f, history.getVelocityX(), 0f);
+        assertEquals(0f, history.getVelocityY(), 0f);
+        assertEquals(30f, history.getFittedX(), 0f);
+        assertEquals(40f, history.getFittedY(), 0f);
+
+        // A window that only holds the newest sample
+        history.add(60L, 50f, 60f);
+        history.fit(0L);
+        assertEquals(0f, history.getVelocityX(), 0f);
+        assertEquals(50f, history.getFittedX(), 0f);
+    }
+
+    @Test
+    public void clear_removesSamples() {
+        SampleHistory history = new SampleHistory();
+        history.add(0L, 0f, 0f);
+        history.add(10L, 10f, 0f);
+        history.clear();
+
+        assertEquals(0, history.size());
+        history.fit(100L);
+        assertEquals(0f, history.getVelocityX(), 0f);
+    }
+}
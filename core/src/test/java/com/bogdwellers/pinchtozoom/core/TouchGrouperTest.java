@@ -0,0 +1,159 @@
+package com.bogdwellers.pinchtozoom.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the clustering of the touch grouper against a brute force clustering.
+ */
+public class TouchGrouperTest {
+
+    private static final float RADIUS = 100f;
+
+    @Test
+    public void cluster_separatesDistantPoints() {
+        TouchGrouper grouper = new TouchGrouper(RADIUS);
+        grouper.add(0f, 0f);
+        grouper.add(1000f, 0f);
+        grouper.add(50f, 50f);
+        grouper.add(1000f, 90f);
+        grouper.add(-500f, -500f);
+
+        grouper.cluster();
+
+        // Numbered in order of their first point
+        assertEquals(3, grouper.getGroupCount());
+        assertArrayEquals(new int[] { 0, 1, 0, 1, 2 }, groups(grouper));
+    }
+
+    @Test
+    public void cluster_joinsTransitiveChain() {
+        TouchGrouper grouper = new TouchGrouper(RADIUS);
+        // A chain whose ends are far apart, added from both ends towards the middle
+        int[] order = { 0, 7, 1, 6, 2, 5, 3, 4 };
+        for(int i: order) {
+            grouper.add(i * 90f, i * 10f);
+        }
+        grouper.add(3000f, 0f);
+
+        grouper.cluster();
+
+        assertEquals(2, grouper.getGroupCount());
+        for(int i = 0; i < order.length; i++) {
+            assertEquals(0, grouper.getGroup(i));
+        }
+        assertEquals(1, grouper.getGroup(order.length));
+    }
+
+    @Test
+    public void cluster_radiusIsInclusive() {
+        TouchGrouper grouper = new TouchGrouper(RADIUS);
+        grouper.add(0f, 0f);
+        grouper.add(60f, 80f);
+        grouper.add(60f, 181f);
+
+        grouper.cluster();
+
+        assertArrayEquals(new int[] { 0, 0, 1 }, groups(grouper));
+    }
+
+    @Test
+    public void cluster_acrossCellsAndNegativeCoordinates() {
+        TouchGrouper grouper = new TouchGrouper(RADIUS);
+        grouper.add(-1f, -1f);
+        grouper.add(1f, 1f);
+        grouper.add(-199f, 99f);
+        grouper.add(-101f, 99f);
+
+        grouper.cluster();
+
+        assertArrayEquals(new int[] { 0, 0, 1, 1 }, groups(grouper));
+    }
+
+    @Test
+    public void cluster_matchesBruteForce() {
+        Random random = new Random(42L);
+        TouchGrouper grouper = new TouchGrouper(RADIUS);
+        for(int round = 0; round < 50; round++) {
+            grouper.clear();
+            int n = 1 + random.nextInt(3 * TouchGrouper.INITIAL_CAPACITY);
+            for(int i = 0; i < n; i++) {
+                grouper.add(random.nextFloat() * 1500f - 500f, random.nextFloat() * 1000f - 200f);
+            }
+
+            grouper.cluster();
+
+            assertArrayEquals("round " + round, bruteForce(grouper), groups(grouper));
+        }
+    }
+
+    @Test
+    public void clear_removesPoints() {
+        TouchGrouper grouper = new TouchGrouper(RADIUS);
+        grouper.add(0f, 0f);
+        grouper.add(500f, 0f);
+        grouper.cluster();
+        grouper.clear();
+
+        assertEquals(0, grouper.size());
+        assertEquals(0, grouper.getGroupCount());
+        grouper.add(500f, 0f);
+        grouper.cluster();
+        assertEquals(1, grouper.getGroupCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setRadius_rejectsZero() {
+        new TouchGrouper(0f);
+    }
+
+    /*
+     * Helpers
+     */
+
+    private static int[] groups(TouchGrouper grouper) {
+        int[] groups = new int[grouper.size()];
+        for(int i = 0; i < groups.length; i++) {
+            groups[i] = grouper.getGroup(i);
+        }
+        return groups;
+    }
+
+    /**
+     * Floods groups by comparing every pair of points, numbering them in order of their first point.
+     */
+    private static int[] bruteForce(TouchGrouper grouper) {
+        int n = grouper.size();
+        int[] groups = new int[n];
+        Arrays.fill(groups, -1);
+        int[] stack = new int[n];
+        int groupCount = 0;
+        for(int i = 0; i < n; i++) {
+            if(groups[i] != -1) {
+                continue;
+            }
+            int size = 0;
+            groups[i] = groupCount;
+            stack[size++] = i;
+            while(size > 0) {
+                int p = stack[--size];
+                for(int q = 0; q < n; q++) {
+                    if(groups[q] == -1) {
+                        float dx = grouper.getX(p) - grouper.getX(q);
+                        float dy = grouper.getY(p) - grouper.getY(q);
+                        if(dx * dx + dy * dy <= RADIUS * RADIUS) {
+                            groups[q] = groupCount;
+                            stack[size++] = q;
+                        }
+                    }
+                }
+            }
+            groupCount++;
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,111 @@
+package com.bogdwellers.pinchtozoom.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks when the touch predictor predicts, and how far ahead.
+ */
+public class TouchPredictorTest {
+
+    private static final float EPSILON = 1e-2f;
+
+    @Test
+    public void predict_needsTwoSamples() {
+        TouchPredictor predictor = new TouchPredictor();
+        SampleHistory history = new SampleHistory();
+        assertFalse(predictor.predict(history));
+
+        history.add(0L, 10f, 10f);
+        assertFalse(predictor.predict(history));
+
+        history.add(8L, 14f, 10f);
+        assertTrue(predictor.predict(history));
+    }
+
+    @Test
+    public void predict_zeroHorizon() {
+        TouchPredictor predictor = new TouchPredictor();
+        predictor.setHorizon(0L);
+
+        assertFalse(predictor.predict(linear(500f, 0f)));
+    }
+
+    @Test
+    public void predict_extrapolatesByHorizon() {
+        TouchPredictor predictor = new TouchPredictor();
+        predictor.setHorizon(20L);
+        SampleHistory history = linear(500f, -250f);
+
+        assertTrue(predictor.predict(history));
+        assertEquals(history.getX() + 500f * 0.02f, predictor.getPredictedX(), EPSILON);
+        assertEquals(history.getY() - 250f * 0.02f, predictor.getPredictedY(), EPSILON);
+    }
+
+    @Test
+    public void predict_clampsHorizonWhenAccelerating() {
+        TouchPredictor predictor = new TouchPredictor();
+        SampleHistory history = new SampleHistory();
+        for(long t = 0L; t <= 40L; t += 8L) {
+            history.add(t, t * 0.5f, 0f);
+        }
+        // The newest movement is twice as fast as the trajectory
+        history.add(48L, 20f + 8f, 0f);
+
+        assertTrue(predictor.predict(history));
+        float extrapolation = predictor.getPredictedX() - history.getFittedX();
+        assertEquals(history.getVelocityX() * TouchPredictor.DEFAULT_HORIZON / 1000f, extrapolation, EPSILON);
+    }
+
+    @Test
+    public void predict_dampsWhenSlowingDown() {
+        TouchPredictor predictor = new TouchPredictor();
+        SampleHistory history = new SampleHistory();
+        for(long t = 0L; t <= 40L; t += 8L) {
+            history.add(t, t * 0.5f, 0f);
+        }
+        // The newest movement is a quarter as fast as the trajectory
+        history.add(48L, 20f + 1f, 0f);
+
+        assertTrue(predictor.predict(history));
+        float extrapolation = predictor.getPredictedX() - history.getFittedX();
+        float full = history.getVelocityX() * TouchPredictor.DEFAULT_HORIZON / 1000f;
+        assertTrue(extrapolation > 0f);
+        assertTrue(extrapolation < full / 2f);
+    }
+
+    @Test
+    public void predict_notWhenChangingDirection() {
+        TouchPredictor predictor = new TouchPredictor();
+        SampleHistory history = linear(500f, 0f);
+        history.add(history.getTime() + 8L, history.getX(), history.getY() + 4f);
+
+        assertFalse(predictor.predict(history));
+    }
+
+    @Test
+    public void predict_notWhenStopped() {
+        TouchPredictor predictor = new TouchPredictor();
+        SampleHistory history = linear(500f, 0f);
+        history.add(history.getTime() + 8L, history.getX(), history.getY());
+
+        assertFalse(predictor.predict(history));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setHorizon_rejectsNegative() {
+        new TouchPredictor().setHorizon(-1L);
+    }
+
+    /**
+     * Samples every 8 ms over 40 ms at the given velocity in pixels per second.
+     */
+    private static SampleHistory linear(float velocityX, float velocityY) {
+        SampleHistory history = new SampleHistory();
+        for(long t = 0L; t <= 40L; t += 8L) {
+            history.add(t, 100f + velocityX * t / 1000f, 100f + velocityY * t / 1000f);
+        }
+        return history;
+    }
+}
@@ -0,0 +1,126 @@
+package com.bogdwellers.pinchtozoom;
+
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+/**
+ * <p>The edge state of a zoomable view: whether its image is at the left or right edge, how far it is zoomed and which gesture
+ * is in progress.</p>
+ * <p>An <code>ImageMatrixCorrector</code> publishes it on its view whenever it reads or writes the transform, and the
+ * <code>ImageMatrixTouchHandler</code> adds the gesture mode. Parents that arbitrate touches, such as a pager, can then decide
+ * with a few field reads through {@link #getEdgeState(View)} instead of reading and interpreting the matrix.</p>
+ *
+ * @author Martin
+ *
+ */
+public class EdgeState {
+
+	/*
+	 * Attributes
+	 */
+
+	private boolean atLeftEdge;
+	private boolean atRightEdge;
+	private float zoom;
+	private int mode;
+	private Drawable drawable;
+
+	/*
+	 * Constructor(s)
+	 */
+
+	EdgeState() {
+		this.atLeftEdge = true;
+		this.atRightEdge = true;
+		this.zoom = 1f;
+	}
+
+	/*
+	 * Class methods
+	 */
+
+	void set(Drawable drawable, boolean atLeftEdge, boolean atRightEdge, float zoom) {
+		this.drawable = drawable;
+		this.atLeftEdge = atLeftEdge;
+		this.atRightEdge = atRightEdge;
+		this.zoom = zoom;
+	}
+
+	void setMode(int mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * <p>Returns the drawable the state was published for. When the view has another drawable by now, the state is outdated.</p>
+	 * @return
+	 */
+	public Drawable getDrawable() {
+		return drawable;
+	}
+
+	/**
+	 * <p>Indicates whether the left side of the image is within the view, so it can not be dragged any further to the right.</p>
+	 * @return
+	 */
+	public boolean isAtLeftEdge() {
+		return atLeftEdge;
+	}
+
+	/**
+	 * <p>Indicates whether the right side of the image is within the view, so it can not be dragged any further to the left.</p>
+	 * @return
+	 */
+	public boolean isAtRightEdge() {
+		return atRightEdge;
+	}
+
+	/**
+	 * <p>Returns the scale relative to the scale at which the image fits within the view.</p>
+	 * @return
+	 */
+	public float getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * <p>Returns the mode of the gesture in progress, one of {@link ImageMatrixTouchHandler#NONE},
+	 * {@link ImageMatrixTouchHandler#DRAG}, {@link ImageMatrixTouchHandler#PINCH} or {@link ImageMatrixTouchHandler#MORPH}.</p>
+	 * @return
+	 */
+	public int getMode() {
+		return mode;
+	}
+
+	@Override
+	public String toString() {
+		return "EdgeState{left=" + atLeftEdge + ", right=" + atRightEdge + ", zoom=" + zoom + ", mode=" + mode + "}";
+	}
+
+	/*
+	 * Static methods
+	 */
+
+	/**
+	 * <p>Returns the edge state published on the given view, or <code>null</code> if there is none.</p>
+	 * @param view
+	 * @return
+	 */
+	public static EdgeState getEdgeState(View view) {
+		Object edgeState = view.getTag(R.id.pinchtozoom_edge_state);
+		return edgeState instanceof EdgeState ? (EdgeState) edgeState : null;
+	}
+
+	/**
+	 * <p>Returns the edge state of the given view, publishing a new one if there is none.</p>
+	 * @param view
+	 * @return
+	 */
+	static EdgeState obtainEdgeState(View view) {
+		EdgeState edgeState = getEdgeState(view);
+		if(edgeState == null) {
+			edgeState = new EdgeState();
+			view.setTag(R.id.pinchtozoom_edge_state, edgeState);
+		}
+		return edgeState;
+	}
+}
@@ -0,0 +1,284 @@
+package com.bogdwellers.pinchtozoom;
+
+import java.util.Arrays;
+
+/**
+ * <p>Statistics of a single gesture, collected by an <code>ImageMatrixTouchHandler</code> that has an
+ * {@link ImageMatrixTouchHandler.OnGestureMetricsListener} registered.</p>
+ * <p>A gesture lasts from the first pointer going down until the last pointer goes up, including any animation it starts. The
+ * instance is reused for every gesture, so its values are only valid during the listener callback.</p>
+ *
+ * @author Martin
+ *
+ */
+public class GestureMetrics {
+
+	public static final long DEFAULT_FRAME_BUDGET = 8000000L;
+
+	/*
+	 * Attributes
+	 */
+
+	private Timing touchTiming;
+	private Timing correctorTiming;
+	private Timing animationTiming;
+	private long frameBudget;
+	private int eventCount;
+	private int overBudgetCount;
+	private int pointerDownCount;
+	private int maxPointerCount;
+
+	/*
+	 * Constructor(s)
+	 */
+
+	public GestureMetrics() {
+		this.touchTiming = new Timing();
+		this.correctorTiming = new Timing();
+		this.animationTiming = new Timing();
+		this.frameBudget = DEFAULT_FRAME_BUDGET;
+	}
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * <p>Returns the time spent in <code>onTouch</code> per event.</p>
+	 * @return
+	 */
+	public Timing getTouchTiming() {
+		return touchTiming;
+	}
+
+	/**
+	 * <p>Returns the time spent reading, correcting and writing the matrix per event.</p>
+	 * @return
+	 */
+	public Timing getCorrectorTiming() {
+		return correctorTiming;
+	}
+
+	/**
+	 * <p>Returns the time spent per animation frame.</p>
+	 * @return
+	 */
+	public Timing getAnimationTiming() {
+		return animationTiming;
+	}
+
+	/**
+	 * <p>Returns the frame budget in nanoseconds.</p>
+	 * @return
+	 */
+	public long getFrameBudget() {
+		return frameBudget;
+	}
+
+	/**
+	 * <p>Sets the frame budget in nanoseconds. Touch events and animation frames that take longer are counted as over budget.</p>
+	 * @param frameBudget
+	 */
+	public void setFrameBudget(long frameBudget) {
+		this.frameBudget = frameBudget;
+	}
+
+	/**
+	 * <p>Returns the number of touch events processed.</p>
+	 * @return
+	 */
+	public int getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * <p>Returns the number of touch events and animation frames that went over the frame budget.</p>
+	 * @return
+	 */
+	public int getOverBudgetCount() {
+		return overBudgetCount;
+	}
+
+	/**
+	 * <p>Returns the number of pointers that went down.</p>
+	 * @return
+	 */
+	public int getPointerDownCount() {
+		return pointerDownCount;
+	}
+
+	/**
+	 * <p>Returns the maximum number of simultaneous pointers.</p>
+	 * @return
+	 */
+	public int getMaxPointerCount() {
+		return maxPointerCount;
+	}
+
+	/**
+	 * <p>Records a processed touch event.</p>
+	 * @param nanos
+	 * @param pointerCount
+	 * @param pointerDown whether a pointer went down
+	 */
+	public void recordTouch(long nanos, int pointerCount, boolean pointerDown) {
+		eventCount++;
+		if(pointerDown) {
+			pointerDownCount++;
+		}
+		if(pointerCount > maxPointerCount) {
+			maxPointerCount = pointerCount;
+		}
+		if(nanos > frameBudget) {
+			overBudgetCount++;
+		}
+		touchTiming.record(nanos);
+	}
+
+	/**
+	 * <p>Records time spent in the corrector.</p>
+	 * @param nanos
+	 */
+	public void recordCorrector(long nanos) {
+		correctorTiming.record(nanos);
+	}
+
+	/**
+	 * <p>Records an animation frame.</p>
+	 * @param nanos
+	 */
+	public void recordAnimation(long nanos) {
+		if(nanos > frameBudget) {
+			overBudgetCount++;
+		}
+		animationTiming.record(nanos);
+	}
+
+	/**
+	 * <p>Indicates whether anything has been recorded since the last reset.</p>
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return eventCount == 0 && animationTiming.getCount() == 0;
+	}
+
+	/**
+	 * <p>Clears all recorded values.</p>
+	 */
+	public void reset() {
+		touchTiming.reset();
+		correctorTiming.reset();
+		animationTiming.reset();
+		eventCount = 0;
+		overBudgetCount = 0;
+		pointerDownCount = 0;
+		maxPointerCount = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "GestureMetrics{events=" + eventCount + ", overBudget=" + overBudgetCount + ", pointersDown=" + pointerDownCount
+				+ ", maxPointers=" + maxPointerCount + ", touch=" + touchTiming + ", corrector=" + correctorTiming
+				+ ", animation=" + animationTiming + "}";
+	}
+
+	/*
+	 * Inner classes
+	 */
+
+	/**
+	 * <p>Durations in nanoseconds of a recurring piece of work.</p>
+	 * <p>The minimum, maximum and average cover all samples; the percentile covers the most recent {@link #CAPACITY} samples.</p>
+	 */
+	public static class Timing {
+
+		public static final int CAPACITY = 512;
+
+		private long[] samples;
+		private long[] sorted;
+		private int count;
+		private long min;
+		private long max;
+		private long total;
+		private boolean sortedValid;
+
+		private Timing() {
+			this.samples = new long[CAPACITY];
+			this.sorted = new long[CAPACITY];
+			reset();
+		}
+
+		private void record(long nanos) {
+			samples[count % CAPACITY] = nanos;
+			count++;
+			total += nanos;
+			if(nanos < min) {
+				min = nanos;
+			}
+			if(nanos > max) {
+				max = nanos;
+			}
+			sortedValid = false;
+		}
+
+		private void reset() {
+			count = 0;
+			min = Long.MAX_VALUE;
+			max = 0L;
+			total = 0L;
+			sortedValid = false;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public long getMin() {
+			return count > 0 ? min : 0L;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		public long getTotal() {
+			return total;
+		}
+
+		public long getAverage() {
+			return count > 0 ? total / count : 0L;
+		}
+
+		/**
+		 * <p>Returns the 99th percentile.</p>
+		 * @return
+		 */
+		public long getP99() {
+			return getPercentile(0.99f);
+		}
+
+		/**
+		 * <p>Returns the given percentile using the nearest-rank method.</p>
+		 * @param percentile between <code>0</code> and <code>1</code>
+		 * @return
+		 */
+		public long getPercentile(float percentile) {
+			int size = Math.min(count, CAPACITY);
+			if(size == 0) {
+				return 0L;
+			}
+			if(!sortedValid) {
+				System.arraycopy(samples, 0, sorted, 0, size);
+				Arrays.sort(sorted, 0, size);
+				sortedValid = true;
+			}
+			int rank = (int) Math.ceil(percentile * size) - 1;
+			return sorted[Math.max(0, Math.min(rank, size - 1))];
+		}
+
+		@Override
+		public String toString() {
+			return "{n=" + count + ", min=" + getMin() + ", avg=" + getAverage() + ", p99=" + getP99() + ", max=" + max + "}";
+		}
+	}
+}
@@ -0,0 +1,426 @@
+package com.bogdwellers.pinchtozoom;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.bogdwellers.pinchtozoom.core.TouchGrouper;
+
+/**
+ * <p>Groups the pointers on a large multi-user surface by proximity, so that every user's fingers can drive their own
+ * handler.</p>
+ * <p>When a pointer goes down, all pointers are clustered with a {@link TouchGrouper}; the new pointer joins the group of the
+ * nearest pointer in its cluster, or starts a new group if there is none. Pointers stay in their group until they go up, so
+ * groups are stable while users move their hands past each other. For every event the affected groups are updated and reported
+ * to the {@link OnTouchGroupListener}.</p>
+ * <p>The listener receives an event of its own for every group, which holds only the pointers of that group and whose action is
+ * that of the group: the pointer that starts a group goes <code>ACTION_DOWN</code>, the last one to leave it goes
+ * <code>ACTION_UP</code>, and a group that is ended by a new gesture or a cancellation gets <code>ACTION_CANCEL</code>. These
+ * events can be passed to a handler per group, such as an <code>ImageMatrixTouchHandler</code>, as if every group touched its
+ * own view.</p>
+ * <p>Groups are reused once they have ended, so after the first few gestures grouping does not allocate, apart from the group
+ * events, which are recycled after every callback.</p>
+ *
+ * @author Martin
+ *
+ */
+public class GroupingTouchListener extends MultiTouchListener {
+
+	private static final int INITIAL_CAPACITY = 10;
+
+	/*
+	 * Attributes
+	 */
+
+	private TouchGrouper grouper;
+	private TouchGroup[] groups;
+	private int groupCount;
+	private TouchGroup[] recycledGroups;
+	private int recycledCount;
+	private TouchGroup[] pointerGroups;
+	private int nextGroupId;
+	private MotionEvent.PointerProperties[] groupProperties;
+	private MotionEvent.PointerCoords[] groupCoords;
+	private OnTouchGroupListener onTouchGroupListener;
+
+	/*
+	 * Constructor(s)
+	 */
+
+	/**
+	 *
+	 * @param radius the distance in pixels within which a new pointer joins the group of another pointer
+	 */
+	public GroupingTouchListener(float radius) {
+		this.grouper = new TouchGrouper(radius);
+		this.groups = new TouchGroup[INITIAL_CAPACITY];
+		this.recycledGroups = new TouchGroup[INITIAL_CAPACITY];
+		this.pointerGroups = new TouchGroup[TouchGrouper.INITIAL_CAPACITY];
+		this.groupProperties = new MotionEvent.PointerProperties[0];
+		this.groupCoords = new MotionEvent.PointerCoords[0];
+	}
+
+	/*
+	 * Interface implementations
+	 */
+
+	@Override
+	public boolean onTouch(View view, MotionEvent event) {
+		super.onTouch(view, event);
+
+		int actionMasked = event.getActionMasked();
+		int actionIndex = event.getActionIndex();
+		
+		// A new gesture starts; end any groups left over from an incomplete one
+		if(actionMasked == MotionEvent.ACTION_DOWN) {
+			endGroups(event);
+		}
+		
+		switch (actionMasked) {
+		case MotionEvent.ACTION_DOWN:
+		case MotionEvent.ACTION_POINTER_DOWN:
+			pointerDown(event, actionIndex);
+			break;
+		case MotionEvent.ACTION_MOVE:
+			for(int i = 0; i < groupCount; i++) {
+				TouchGroup group = groups[i];
+				group.update(event);
+				if(onTouchGroupListener != null) {
+					MotionEvent groupEvent = obtainGroupEvent(group, event, MotionEvent.ACTION_MOVE);
+					onTouchGroupListener.onGroupMove(group, groupEvent);
+					groupEvent.recycle();
+				}
+			}
+			break;
+		case MotionEvent.ACTION_UP:
+		case MotionEvent.ACTION_POINTER_UP:
+			pointerUp(event, event.getPointerId(actionIndex));
+			break;
+		case MotionEvent.ACTION_CANCEL:
+			endGroups(event);
+			break;
+		}
+		return true;
+	}
+
+	/*
+	 * Class methods
+	 */
+
+	public void setOnTouchGroupListener(OnTouchGroupListener onTouchGroupListener) {
+		this.onTouchGroupListener = onTouchGroupListener;
+	}
+
+	public float getRadius() {
+		return grouper.getRadius();
+	}
+
+	/**
+	 * <p>Sets the distance in pixels within which a new pointer joins the group of another pointer.</p>
+	 * @param radius
+	 */
+	public void setRadius(float radius) {
+		grouper.setRadius(radius);
+	}
+
+	/**
+	 * <p>Returns the number of groups currently in progress.</p>
+	 * @return
+	 */
+	public int getGroupCount() {
+		return groupCount;
+	}
+
+	/**
+	 * <p>Returns the given group in progress, in the order the groups started.</p>
+	 * @param i
+	 * @return
+	 */
+	public TouchGroup getGroup(int i) {
+		if(i < 0 || i >= groupCount) {
+			throw new IndexOutOfBoundsException("Invalid group " + i + ", group count is " + groupCount);
+		}
+		return groups[i];
+	}
+
+	/**
+	 * <p>Returns the group that the given pointer belongs to, or <code>null</code> if the pointer is not down.</p>
+	 * @param pointerId
+	 * @return
+	 */
+	public TouchGroup getGroupOfPointer(int pointerId) {
+		return pointerId >= 0 && pointerId < pointerGroups.length ? pointerGroups[pointerId] : null;
+	}
+
+	/**
+	 * <p>Assigns a pointer that went down to a group.</p>
+	 * @param event
+	 * @param actionIndex
+	 */
+	private void pointerDown(MotionEvent event, int actionIndex) {
+		int pointerId = event.getPointerId(actionIndex);
+		if(pointerId >= pointerGroups.length) {
+			TouchGroup[] newPointerGroups = new TouchGroup[Math.max(pointerId + 1, pointerGroups.length * 2)];
+			System.arraycopy(pointerGroups, 0, newPointerGroups, 0, pointerGroups.length);
+			pointerGroups = newPointerGroups;
+		}
+
+		// Cluster all pointers and find the nearest grouped pointer in the new pointer's cluster
+		int pointerCount = event.getPointerCount();
+		grouper.clear();
+		for(int i = 0; i < pointerCount; i++) {
+			grouper.add(event.getX(i), event.getY(i));
+		}
+		grouper.cluster();
+		int cluster = grouper.getGroup(actionIndex);
+		float x = event.getX(actionIndex);
+		float y = event.getY(actionIndex);
+		TouchGroup group = null;
+		float nearest = Float.MAX_VALUE;
+		for(int i = 0; i < pointerCount; i++) {
+			if(i == actionIndex || grouper.getGroup(i) != cluster) {
+				continue;
+			}
+			TouchGroup candidate = getGroupOfPointer(event.getPointerId(i));
+			float dx = event.getX(i) - x;
+			float dy = event.getY(i) - y;
+			float distance = dx * dx + dy * dy;
+			if(candidate != null && distance < nearest) {
+				group = candidate;
+				nearest = distance;
+			}
+		}
+
+		boolean started = group == null;
+		if(started) {
+			group = obtainGroup();
+		}
+		group.addPointer(pointerId);
+		pointerGroups[pointerId] = group;
+		group.update(event);
+		if(onTouchGroupListener != null) {
+			if(started) {
+				MotionEvent groupEvent = obtainGroupEvent(group, event, MotionEvent.ACTION_DOWN);
+				onTouchGroupListener.onGroupStart(group, groupEvent);
+				groupEvent.recycle();
+			} else {
+				// The new pointer is the last in the group
+				int action = MotionEvent.ACTION_POINTER_DOWN | ((group.getPointerCount() - 1) << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+				MotionEvent groupEvent = obtainGroupEvent(group, event, action);
+				onTouchGroupListener.onGroupChanged(group, groupEvent);
+				groupEvent.recycle();
+			}
+		}
+	}
+
+	/**
+	 * <p>Removes a pointer that went up from its group, and ends the group if it was the last.</p>
+	 * @param event
+	 * @param pointerId
+	 */
+	private void pointerUp(MotionEvent event, int pointerId) {
+		TouchGroup group = getGroupOfPointer(pointerId);
+		if(group == null) {
+			return;
+		}
+		pointerGroups[pointerId] = null;
+
+		// The group's event still holds the pointer that went up
+		MotionEvent groupEvent = null;
+		if(onTouchGroupListener != null) {
+			int index = 0;
+			while(group.getPointerId(index) != pointerId) {
+				index++;
+			}
+			int action = group.getPointerCount() == 1 ? MotionEvent.ACTION_UP
+					: MotionEvent.ACTION_POINTER_UP | (index << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+			groupEvent = obtainGroupEvent(group, event, action);
+		}
+		group.removePointer(pointerId);
+		if(group.getPointerCount() == 0) {
+			endGroup(group, groupEvent);
+		} else {
+			group.update(event);
+			if(onTouchGroupListener != null) {
+				onTouchGroupListener.onGroupChanged(group, groupEvent);
+			}
+		}
+		if(groupEvent != null) {
+			groupEvent.recycle();
+		}
+	}
+
+	/**
+	 * <p>Cancels all groups in progress.</p>
+	 * @param event
+	 */
+	private void endGroups(MotionEvent event) {
+		while(groupCount > 0) {
+			TouchGroup group = groups[groupCount - 1];
+			for(int i = 0, n = group.getPointerCount(); i < n; i++) {
+				pointerGroups[group.getPointerId(i)] = null;
+			}
+			MotionEvent groupEvent = null;
+			if(onTouchGroupListener != null && group.getPointerCount() > 0) {
+				groupEvent = obtainGroupEvent(group, event, MotionEvent.ACTION_CANCEL);
+			}
+			endGroup(group, groupEvent);
+			if(groupEvent != null) {
+				groupEvent.recycle();
+			}
+		}
+	}
+
+	/**
+	 * <p>Removes a group that has ended.</p>
+	 * @param group
+	 * @param groupEvent the group's last event
+	 */
+	private void endGroup(TouchGroup group, MotionEvent groupEvent) {
+		if(onTouchGroupListener != null) {
+			onTouchGroupListener.onGroupEnd(group, groupEvent);
+		}
+		group.setTag(null);
+
+		// Remove it while keeping the remaining groups in order
+		for(int i = 0; i < groupCount; i++) {
+			if(groups[i] == group) {
+				groupCount--;
+				System.arraycopy(groups, i + 1, groups, i, groupCount - i);
+				groups[groupCount] = null;
+				break;
+			}
+		}
+		if(recycledCount == recycledGroups.length) {
+			TouchGroup[] newRecycledGroups = new TouchGroup[recycledCount * 2];
+			System.arraycopy(recycledGroups, 0, newRecycledGroups, 0, recycledCount);
+			recycledGroups = newRecycledGroups;
+		}
+		recycledGroups[recycledCount++] = group;
+	}
+
+	/**
+	 * <p>Returns a new event with only the pointers of the given group, in the order they joined it, including their historical
+	 * samples. The caller must recycle it.</p>
+	 * @param group
+	 * @param event
+	 * @param action the action of the group, including its pointer index
+	 * @return
+	 */
+	private MotionEvent obtainGroupEvent(TouchGroup group, MotionEvent event, int action) {
+		int pointerCount = group.getPointerCount();
+		if(pointerCount > groupProperties.length) {
+			groupProperties = new MotionEvent.PointerProperties[pointerCount];
+			groupCoords = new MotionEvent.PointerCoords[pointerCount];
+			for(int i = 0; i < pointerCount; i++) {
+				groupProperties[i] = new MotionEvent.PointerProperties();
+				groupCoords[i] = new MotionEvent.PointerCoords();
+			}
+		}
+		for(int i = 0; i < pointerCount; i++) {
+			int index = event.findPointerIndex(group.getPointerId(i));
+			if(index >= 0) {
+				event.getPointerProperties(index, groupProperties[i]);
+			} else {
+				groupProperties[i].clear();
+				groupProperties[i].id = group.getPointerId(i);
+			}
+		}
+
+		// The oldest sample is the initial one and every later sample is added as a batch, which turns the ones before into history
+		int historySize = action == MotionEvent.ACTION_MOVE ? event.getHistorySize() : 0;
+		long eventTime = getGroupCoords(group, event, 0, historySize);
+		MotionEvent groupEvent = MotionEvent.obtain(event.getDownTime(), eventTime, action, pointerCount, groupProperties,
+				groupCoords, event.getMetaState(), event.getButtonState(), event.getXPrecision(), event.getYPrecision(),
+				event.getDeviceId(), event.getEdgeFlags(), event.getSource(), event.getFlags());
+		for(int h = 1; h <= historySize; h++) {
+			eventTime = getGroupCoords(group, event, h, historySize);
+			groupEvent.addBatch(eventTime, groupCoords, event.getMetaState());
+		}
+		return groupEvent;
+	}
+
+	/**
+	 * <p>Copies the coordinates of the group's pointers at the given sample into the group coordinates.</p>
+	 * @param group
+	 * @param event
+	 * @param sample the index of the historical sample, or the history size for the current one
+	 * @param historySize
+	 * @return the time of the sample
+	 */
+	private long getGroupCoords(TouchGroup group, MotionEvent event, int sample, int historySize) {
+		for(int i = 0, n = group.getPointerCount(); i < n; i++) {
+			int index = event.findPointerIndex(group.getPointerId(i));
+			if(index < 0) {
+				// A pointer of a group that is cancelled by a new gesture; it is where it was last seen
+				groupCoords[i].clear();
+				groupCoords[i].x = group.getX(i);
+				groupCoords[i].y = group.getY(i);
+			} else if(sample < historySize) {
+				event.getHistoricalPointerCoords(index, sample, groupCoords[i]);
+			} else {
+				event.getPointerCoords(index, groupCoords[i]);
+			}
+		}
+		return sample < historySize ? event.getHistoricalEventTime(sample) : event.getEventTime();
+	}
+
+	private TouchGroup obtainGroup() {
+		TouchGroup group;
+		if(recycledCount > 0) {
+			group = recycledGroups[--recycledCount];
+			recycledGroups[recycledCount] = null;
+		} else {
+			group = new TouchGroup(INITIAL_CAPACITY);
+		}
+		group.reset(nextGroupId++);
+		if(groupCount == groups.length) {
+			TouchGroup[] newGroups = new TouchGroup[groupCount * 2];
+			System.arraycopy(groups, 0, newGroups, 0, groupCount);
+			groups = newGroups;
+		}
+		groups[groupCount++] = group;
+		return group;
+	}
+
+	/*
+	 * Inner classes
+	 */
+
+	/**
+	 * <p>Listener that is notified of the groups' progress. A typical implementation creates a handler for every group in
+	 * {@link #onGroupStart(TouchGroup, MotionEvent)}, attaches it with {@link TouchGroup#setTag(Object)} and passes it the event
+	 * of every callback.</p>
+	 * <p>The events hold only the pointers of the group and are recycled when the callback returns; use
+	 * <code>MotionEvent.obtain(MotionEvent)</code> to keep one.</p>
+	 */
+	public interface OnTouchGroupListener {
+
+		/**
+		 * <p>Called when a pointer went down away from any other group.</p>
+		 * @param group
+		 * @param event
+		 */
+		void onGroupStart(TouchGroup group, MotionEvent event);
+
+		/**
+		 * <p>Called when a pointer joined or left the group. Handlers should restart their gesture from the current positions.</p>
+		 * @param group
+		 * @param event
+		 */
+		void onGroupChanged(TouchGroup group, MotionEvent event);
+
+		/**
+		 * <p>Called for every move event while the group is in progress.</p>
+		 * @param group
+		 * @param event
+		 */
+		void onGroupMove(TouchGroup group, MotionEvent event);
+
+		/**
+		 * <p>Called when the last pointer of the group went up, or the gesture was cancelled.</p>
+		 * @param group
+		 * @param event <code>ACTION_UP</code> or <code>ACTION_CANCEL</code>
+		 */
+		void onGroupEnd(TouchGroup group, MotionEvent event);
+	}
+}
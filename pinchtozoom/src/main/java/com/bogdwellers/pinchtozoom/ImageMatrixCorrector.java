@@ -2,14 +2,20 @@ package com.bogdwellers.pinchtozoom;
 
 import android.graphics.Matrix;
 import android.graphics.drawable.Drawable;
+import android.view.View;
 import android.widget.ImageView;
 
+import com.bogdwellers.pinchtozoom.core.CorrectorUtils;
+import com.bogdwellers.pinchtozoom.core.Transform;
+
 /**
  * 
  * @author Martin
  *
  */
 public abstract class ImageMatrixCorrector extends MatrixCorrector {
+
+	private static final float EDGE_TOLERANCE = 1f;
 	
 	/*
 	 * Attributes
@@ -18,14 +24,89 @@ public abstract class ImageMatrixCorrector extends MatrixCorrector {
 	private ImageView imageView;
 	private float scaledImageWidth;
 	private float scaledImageHeight;
+	private float imageBoundsOffsetX;
+	private float imageBoundsOffsetY;
+	private float scale;
+	private OnScaleChangedListener onScaleChangedListener;
+	private Drawable readDrawable;
+	private int readViewWidth;
+	private int readViewHeight;
+	private boolean geometryValid;
+	private Drawable geometryDrawable;
+	private float drawableWidth;
+	private float drawableHeight;
+	private float innerFitScale;
+	private View.OnLayoutChangeListener onLayoutChangeListener;
+	private boolean layerTransformActive;
+	private Transform layerBaseInverse;
+	private Transform layerDelta;
+	private int layerTypeBefore;
+	private EdgeState edgeState;
 
 	/*
 	 * Overrides
 	 */
 
+	/**
+	 * <p>Also reads the matrix again when the drawable or the size of the view has changed since the last read, and updates the
+	 * scaled image dimensions whenever the matrix is read.</p>
+	 */
+	@Override
+	public void readMatrix() {
+		if(layerTransformActive) {
+			return; // The matrix lags behind the transform until the layer transform ends
+		}
+		if(imageView != null) {
+			Drawable drawable = imageView.getDrawable();
+			int width = imageView.getWidth();
+			int height = imageView.getHeight();
+			if(drawable != readDrawable || width != readViewWidth || height != readViewHeight) {
+				readDrawable = drawable;
+				readViewWidth = width;
+				readViewHeight = height;
+				invalidateMatrix();
+			}
+		}
+		if(isMatrixDirty()) {
+			super.readMatrix();
+			if(imageView != null) {
+				updateScaledImageDimensions();
+				updateEdgeState();
+			}
+		}
+	}
+
+	/**
+	 * <p>While a layer transform is active, applies the transform to the view's properties instead of the matrix.</p>
+	 * <p>Also updates the scaled image dimensions and publishes the view's {@link EdgeState}.</p>
+	 */
+	@Override
+	public void writeMatrix() {
+		if(layerTransformActive) {
+			// The view transform maps the image as drawn with the base transform to the current transform
+			layerDelta.set(layerBaseInverse);
+			layerDelta.postConcat(getTransform());
+			float scale = layerDelta.getScale();
+			imageView.setScaleX(scale);
+			imageView.setScaleY(scale);
+			imageView.setRotation(layerDelta.getRotation());
+			imageView.setTranslationX(layerDelta.getTranslateX());
+			imageView.setTranslationY(layerDelta.getTranslateY());
+		} else {
+			super.writeMatrix();
+		}
+		if(imageView != null) {
+			updateScaledImageDimensions();
+			updateEdgeState();
+		}
+	}
+
 	@Override
 	public void setMatrix(Matrix matrix) {
 		super.setMatrix(matrix);
+		if(matrix != null) {
+			readMatrix();
+		}
 		updateScaledImageDimensions();
 	}
 
@@ -35,12 +116,28 @@ public abstract class ImageMatrixCorrector extends MatrixCorrector {
 	
 	/**
 	 * <p>Sets the <code>ImageView</code>. This also sets its inner image matrix as this corrector's matrix automatically.</p>
+	 * <p>The corrector registers itself with the view, so that others can share its geometry through {@link #getCorrector(View)}.</p>
+	 * <p>Setting <code>null</code> releases the view. <code>ImageMatrixTouchHandler</code> does so when the view is detached
+	 * from its window.</p>
 	 * @param imageView
 	 */
 	public void setImageView(ImageView imageView) {
-		// TODO Make a weak reference or set to null in order to avoid memory leaks
+		endLayerTransform();
+		if(this.imageView != null) {
+			this.imageView.removeOnLayoutChangeListener(onLayoutChangeListener);
+			if(this.imageView.getTag(R.id.pinchtozoom_corrector) == this) {
+				this.imageView.setTag(R.id.pinchtozoom_corrector, null);
+			}
+		}
 		this.imageView = imageView;
+		this.edgeState = imageView != null ? EdgeState.obtainEdgeState(imageView) : null;
+		invalidateGeometry();
 		if(imageView != null) {
+			if(onLayoutChangeListener == null) {
+				onLayoutChangeListener = new GeometryInvalidator();
+			}
+			imageView.addOnLayoutChangeListener(onLayoutChangeListener);
+			imageView.setTag(R.id.pinchtozoom_corrector, this);
 			setMatrix(imageView.getImageMatrix());
 		}
 	}
@@ -54,39 +151,186 @@ public abstract class ImageMatrixCorrector extends MatrixCorrector {
 	}
 
 	/**
-	 *
+	 * <p>Starts applying the transform through the view's properties, over a hardware layer, instead of through the image
+	 * matrix. Changing the transform then only updates the layer's position in the compositor, without redrawing the image.</p>
+	 * <p>Only what the view showed when the layer transform started is transformed, so parts of the image that move into view are
+	 * not drawn until {@link #endLayerTransform()} folds the transform back into the matrix. Touch coordinates received by the view
+	 * are relative to its transformed bounds in the meantime; map them back with <code>View.getMatrix()</code>.</p>
+	 */
+	public void beginLayerTransform() {
+		if(layerTransformActive || imageView == null) {
+			return;
+		}
+		readMatrix();
+		beginLayerTransform(getTransform());
+	}
+
+	/**
+	 * <p>Starts the layer transform from the given transform, which must be what the matrix currently shows. Use this when the
+	 * corrector's transform has already moved on from the matrix.</p>
+	 * @param base
+	 * @see #beginLayerTransform()
+	 */
+	public void beginLayerTransform(Transform base) {
+		if(layerTransformActive || imageView == null) {
+			return;
+		}
+		if(layerBaseInverse == null) {
+			layerBaseInverse = new Transform();
+			layerDelta = new Transform();
+		}
+		base.invert(layerBaseInverse);
+		layerTypeBefore = imageView.getLayerType();
+		imageView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+
+		// The image matrix applies within the padding
+		imageView.setPivotX(imageView.getPaddingLeft());
+		imageView.setPivotY(imageView.getPaddingTop());
+		layerTransformActive = true;
+	}
+
+	/**
+	 * <p>Ends the layer transform by writing the transform into the matrix and resetting the view's properties.</p>
+	 */
+	public void endLayerTransform() {
+		if(!layerTransformActive) {
+			return;
+		}
+		layerTransformActive = false;
+		super.writeMatrix();
+		imageView.setScaleX(1f);
+		imageView.setScaleY(1f);
+		imageView.setRotation(0f);
+		imageView.setTranslationX(0f);
+		imageView.setTranslationY(0f);
+		imageView.setLayerType(layerTypeBefore, null);
+		imageView.invalidate();
+	}
+
+	/**
+	 * <p>Indicates whether the transform is currently applied through the view's properties.</p>
+	 * @return
+	 */
+	public boolean isLayerTransformActive() {
+		return layerTransformActive;
+	}
+
+	/**
+	 * <p>Sets the listener that is notified whenever the scale of the image changes.</p>
+	 * @param onScaleChangedListener
+	 */
+	public void setOnScaleChangedListener(OnScaleChangedListener onScaleChangedListener) {
+		this.onScaleChangedListener = onScaleChangedListener;
+	}
+
+	/**
+	 * <p>Returns the scale at which the image entirely fits within the view.</p>
 	 * @return
      */
 	public float getInnerFitScale() {
+		validateGeometry();
+		return innerFitScale;
+	}
+
+	/**
+	 * <p>Returns the intrinsic width of the drawable, or <code>0</code> if there is none.</p>
+	 * @return
+	 */
+	public float getDrawableWidth() {
+		validateGeometry();
+		return drawableWidth;
+	}
+
+	/**
+	 * <p>Returns the intrinsic height of the drawable, or <code>0</code> if there is none.</p>
+	 * @return
+	 */
+	public float getDrawableHeight() {
+		validateGeometry();
+		return drawableHeight;
+	}
+
+	/**
+	 * <p>Discards the cached geometry, so that it is recalculated when needed.</p>
+	 * <p>This happens automatically when the view's size or drawable changes. Call it when the drawable's intrinsic dimensions
+	 * change otherwise.</p>
+	 */
+	public void invalidateGeometry() {
+		geometryValid = false;
+	}
+
+	/**
+	 * <p>Recalculates the cached geometry if it has been invalidated or the drawable has changed.</p>
+	 */
+	protected void validateGeometry() {
 		Drawable drawable = imageView.getDrawable();
-		float widthRatio = (float) drawable.getIntrinsicWidth() / imageView.getWidth();
-		float heightRatio = (float) drawable.getIntrinsicHeight() / imageView.getHeight();
-		if(widthRatio > heightRatio) {
-			return 1f / widthRatio;
+		if(!geometryValid || drawable != geometryDrawable) {
+			geometryDrawable = drawable;
+			geometryValid = true;
+			updateGeometry();
+		}
+	}
+
+	/**
+	 * <p>Calculates the geometry of the view and its drawable. Subclasses may extend it to cache values that derive from it.</p>
+	 */
+	protected void updateGeometry() {
+		Drawable drawable = geometryDrawable;
+		if(drawable != null) {
+			drawableWidth = drawable.getIntrinsicWidth();
+			drawableHeight = drawable.getIntrinsicHeight();
+			innerFitScale = CorrectorUtils.innerFitScale(imageView.getWidth(), imageView.getHeight(), drawableWidth, drawableHeight);
 		} else {
-			return 1f / heightRatio;
+			drawableWidth = drawableHeight = 0f;
+			innerFitScale = 1f;
 		}
 	}
 	
 	/**
-	 * <p>(Re)calculates the image's current dimensions.</p>
+	 * <p>(Re)calculates the image's current dimensions from the transform.</p>
+	 * <p>When the image is rotated these are the dimensions of its axis-aligned bounding box.</p>
 	 */
 	protected void updateScaledImageDimensions() {
-		float[] values = getValues();
-		Drawable drawable = imageView.getDrawable();
-		if(drawable != null) {
-			scaledImageWidth = values[Matrix.MSCALE_X] * drawable.getIntrinsicWidth();
-			scaledImageHeight = values[Matrix.MSCALE_Y] * drawable.getIntrinsicHeight();
-		} else {
-			scaledImageWidth = scaledImageHeight = 0f;
+		Transform transform = getTransform();
+		validateGeometry();
+		float scaleX = transform.getScaleX();
+		float skewX = transform.getSkewX();
+		float skewY = transform.getSkewY();
+		float scaleY = transform.getScaleY();
+		scaledImageWidth = CorrectorUtils.boundsExtent(scaleX, skewX, drawableWidth, drawableHeight);
+		scaledImageHeight = CorrectorUtils.boundsExtent(skewY, scaleY, drawableWidth, drawableHeight);
+		imageBoundsOffsetX = CorrectorUtils.boundsOffset(scaleX, skewX, drawableWidth, drawableHeight);
+		imageBoundsOffsetY = CorrectorUtils.boundsOffset(skewY, scaleY, drawableWidth, drawableHeight);
+		float scale = skewX == 0f && skewY == 0f ? scaleX : transform.getScale();
+		if(scale != this.scale) {
+			this.scale = scale;
+			if(onScaleChangedListener != null) {
+				onScaleChangedListener.onScaleChanged(this, scale);
+			}
 		}
 	}
 
+	/**
+	 * <p>Publishes the position of the image relative to the view's edges.</p>
+	 */
+	private void updateEdgeState() {
+		float left = getTransform().getTranslateX() + imageBoundsOffsetX;
+		edgeState.set(imageView.getDrawable(), left >= -EDGE_TOLERANCE, left + scaledImageWidth <= imageView.getWidth() + EDGE_TOLERANCE, scale / getInnerFitScale());
+	}
+
+	/**
+	 * <p>Returns the edge state this corrector publishes on its view, or <code>null</code> if it has no view.</p>
+	 * @return
+	 */
+	public EdgeState getEdgeState() {
+		return edgeState;
+	}
+
 	/**
 	 * <p>Returns the width of the scaled image.</p>
 	 * @return
      */
-	protected float getScaledImageWidth() {
+	public float getScaledImageWidth() {
 		return scaledImageWidth;
 	}
 
@@ -94,7 +338,69 @@ public abstract class ImageMatrixCorrector extends MatrixCorrector {
 	 * * <p>Returns the height of the scaled image.</p>
 	 * @return
      */
-	protected float getScaledImageHeight() {
+	public float getScaledImageHeight() {
 		return scaledImageHeight;
 	}
+
+	/**
+	 * <p>Returns the horizontal offset from the translation to the left side of the scaled image. This is <code>0</code> unless
+	 * the image is rotated.</p>
+	 * @return
+	 */
+	public float getImageBoundsOffsetX() {
+		return imageBoundsOffsetX;
+	}
+
+	/**
+	 * <p>Returns the vertical offset from the translation to the top side of the scaled image. This is <code>0</code> unless the
+	 * image is rotated.</p>
+	 * @return
+	 */
+	public float getImageBoundsOffsetY() {
+		return imageBoundsOffsetY;
+	}
+
+	/*
+	 * Static methods
+	 */
+
+	/**
+	 * <p>Returns the corrector that the given view has been set on, or <code>null</code> if there is none.</p>
+	 * @param view
+	 * @return
+	 */
+	public static ImageMatrixCorrector getCorrector(View view) {
+		Object corrector = view.getTag(R.id.pinchtozoom_corrector);
+		return corrector instanceof ImageMatrixCorrector ? (ImageMatrixCorrector) corrector : null;
+	}
+
+	/*
+	 * Inner classes
+	 */
+
+	/**
+	 * <p>Invalidates the geometry when the size of the view changes, e.g. after a configuration change.</p>
+	 */
+	private class GeometryInvalidator implements View.OnLayoutChangeListener {
+
+		@Override
+		public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+			if(right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+				invalidateGeometry();
+			}
+		}
+	}
+
+	/**
+	 * <p>Listener that is notified when the scale of the image changes.</p>
+	 */
+	public interface OnScaleChangedListener {
+
+		/**
+		 * <p>Called when the image's scale has changed.</p>
+		 * @param corrector
+		 * @param scale the new scale
+		 */
+		void onScaleChanged(ImageMatrixCorrector corrector, float scale);
+	}
 }
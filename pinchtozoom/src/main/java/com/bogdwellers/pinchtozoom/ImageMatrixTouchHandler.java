@@ -1,10 +1,7 @@
 package com.bogdwellers.pinchtozoom;
 
-import android.animation.PropertyValuesHolder;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.graphics.Matrix;
-import android.graphics.PointF;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
@@ -13,8 +10,13 @@ import android.view.animation.Interpolator;
 import android.widget.ImageView;
 import android.widget.ImageView.ScaleType;
 
-import com.bogdwellers.pinchtozoom.animation.FlingAnimatorHandler;
-import com.bogdwellers.pinchtozoom.animation.ScaleAnimatorHandler;
+import com.bogdwellers.pinchtozoom.animation.TransformAnimator;
+import com.bogdwellers.pinchtozoom.core.Fling;
+import com.bogdwellers.pinchtozoom.core.GestureSolver;
+import com.bogdwellers.pinchtozoom.core.GestureUtils;
+import com.bogdwellers.pinchtozoom.core.SampleHistory;
+import com.bogdwellers.pinchtozoom.core.TouchPredictor;
+import com.bogdwellers.pinchtozoom.core.Transform;
 
 /**
  * <p>The <code>ImageMatrixTouchHandler</code> enables pinch-zoom, pinch-rotate and dragging on an <code>ImageView</code>.
@@ -30,8 +32,8 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
     public static final int NONE = 0;
     public static final int DRAG = 1;
     public static final int PINCH = 2;
-    public static final int MORPH = 3; // TODO For three or more touch points
-    private static final float MIN_PINCH_DIST_PIXELS = 10f;
+    public static final int MORPH = 3; // For three or more touch points
+	private static final long FLING_ACCUMULATION_WINDOW = 400;
 	public static final String TAG = ImageMatrixTouchHandler.class.getSimpleName();
     
     /*
@@ -39,28 +41,45 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
      */
 
 	private ImageMatrixCorrector corrector;
-    private Matrix savedMatrix;
+	private GestureSolver solver;
+	private Fling fling;
+	private TransformAnimator animator;
+	private Interpolator zoomReleaseInterpolator;
+	private float flingCarryVelocityX;
+	private float flingCarryVelocityY;
+	private long flingCarryTime;
     private int mode;
-    private PointF startMid;
-    private PointF mid;
-    private float startSpacing;
-    private float startAngle;
-	private float pinchVelocity;
-	private boolean rotateEnabled;
-	private boolean scaleEnabled;
-	private boolean translateEnabled;
-    private boolean dragOnPinchEnabled;
+	private SampleHistory historyA;
+	private SampleHistory historyB;
+	private SampleHistory spacingHistory;
+	private int sampledPointerA;
+	private int sampledPointerB;
+	private long flingVelocityWindow;
+	private long smoothingWindow;
+	private TouchPredictor predictor;
+	private float resolvedX;
+	private float resolvedY;
 	private long doubleTapZoomDuration;
 	private long flingDuration;
 	private long zoomReleaseDuration;
+	private long rotationSnapDuration;
 	private long pinchVelocityWindow;
 	private float doubleTapZoomFactor;
 	private float doubleTapZoomOutFactor;
 	private float flingExaggeration;
 	private float zoomReleaseExaggeration;
     private boolean updateTouchState;
+	private boolean morphEnabled;
+	private boolean layerTransformEnabled;
+	private Matrix touchInverse;
+	private Transform layerBase;
+	private View.OnAttachStateChangeListener onAttachStateChangeListener;
+	private OnGestureStateListener onGestureStateListener;
+	private int publishedMode;
 	private GestureDetector gestureDetector;
-	private ValueAnimator valueAnimator;
+	private GestureMetrics gestureMetrics;
+	private OnGestureMetricsListener onGestureMetricsListener;
+	private boolean gestureMetricsPending;
 
     /*
      * Constructor(s)
@@ -72,17 +91,32 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
     
     public ImageMatrixTouchHandler(Context context, ImageMatrixCorrector corrector) {
 		this.corrector = corrector;
-		this.savedMatrix = new Matrix();
+		this.solver = new GestureSolver();
+		this.fling = new Fling();
+		this.animator = new TransformAnimator(corrector);
+		this.animator.setOnAnimationEndListener(new TransformAnimator.OnAnimationEndListener() {
+			@Override
+			public void onAnimationEnd(TransformAnimator animator) {
+				if(gestureMetricsPending) {
+					reportGestureMetrics();
+				}
+				if(!isTouching()) {
+					settle();
+				}
+			}
+		});
+		this.zoomReleaseInterpolator = new DecelerateInterpolator();
 		this.mode = NONE;
-		this.startMid = new PointF();
-		this.mid = new PointF();
-		this.startSpacing = 1f;
-		this.startAngle = 0f;
-		this.rotateEnabled = false;
-		this.scaleEnabled = true;
-		this.translateEnabled = true;
-		this.dragOnPinchEnabled = true;
+		this.morphEnabled = true;
+		this.touchInverse = new Matrix();
+		this.layerBase = new Transform();
+		this.historyA = new SampleHistory();
+		this.historyB = new SampleHistory();
+		this.spacingHistory = new SampleHistory();
+		this.sampledPointerA = -1;
+		this.sampledPointerB = -1;
 		this.pinchVelocityWindow = 100;
+		this.flingVelocityWindow = 100;
 		this.doubleTapZoomDuration = 200;
 		this.flingDuration = 200;
 		this.zoomReleaseDuration = 200;
@@ -116,12 +150,133 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 		return corrector;
 	}
 
+	/**
+	 * <p>Binds the handler to the given view, releasing the view it was bound to.</p>
+	 * <p>A single handler can be set as the touch listener of many views, such as the pages of a pager or the cells of a grid.
+	 * Only one of them can be touched at a time, so the handler binds to whichever view a gesture starts on. The transform of
+	 * every view is kept in its own image matrix, so the handler holds no other state per view.</p>
+	 * @param imageView
+	 */
+	private void bind(ImageView imageView) {
+		release();
+		corrector.setImageView(imageView);
+		if(onAttachStateChangeListener == null) {
+			onAttachStateChangeListener = new ViewReleaser();
+		}
+		imageView.addOnAttachStateChangeListener(onAttachStateChangeListener);
+	}
+
+	/**
+	 * <p>Releases the view the handler is bound to, after stopping its animation and writing its transform into its matrix.</p>
+	 * <p>This happens automatically when the view is detached from its window, so neither the handler nor its corrector keep a
+	 * recycled view from being garbage collected.</p>
+	 */
+	public void release() {
+		ImageView imageView = corrector.getImageView();
+		if(imageView == null) {
+			return;
+		}
+		animator.cancel();
+		mode = NONE;
+		publishMode();
+		corrector.setImageView(null);
+		imageView.removeOnAttachStateChangeListener(onAttachStateChangeListener);
+		flingCarryVelocityX = flingCarryVelocityY = 0f;
+	}
+
 	/**
 	 * <p>Updates the touch state during a touch event. That is, when touch mode is not {@link #NONE} .</p>
 	 * <p>Use this when the image in the <code>ImageView</code> or its matrix has been changed.</p>
 	 */
 	public void updateTouchState() {
 		updateTouchState = true;
+		corrector.invalidateMatrix();
+	}
+
+	/**
+	 * <p>Returns the listener that is notified when the mode changes and when a gesture has settled.</p>
+	 * @return
+	 */
+	public OnGestureStateListener getOnGestureStateListener() {
+		return onGestureStateListener;
+	}
+
+	/**
+	 * <p>Sets the listener that is notified when the mode changes and when a gesture has settled.</p>
+	 * @param onGestureStateListener
+	 */
+	public void setOnGestureStateListener(OnGestureStateListener onGestureStateListener) {
+		this.onGestureStateListener = onGestureStateListener;
+	}
+
+	/**
+	 * <p>Publishes the mode on the view's edge state, and notifies the listener if it has changed.</p>
+	 */
+	private void publishMode() {
+		EdgeState edgeState = corrector.getEdgeState();
+		if(edgeState != null) {
+			edgeState.setMode(mode);
+		}
+		if(mode != publishedMode) {
+			publishedMode = mode;
+			if(onGestureStateListener != null) {
+				onGestureStateListener.onModeChanged(this, mode);
+			}
+		}
+	}
+
+	/**
+	 * <p>Starts the layer transform, if enabled, for an animation of the gesture.</p>
+	 */
+	private void beginAnimationLayer() {
+		if(layerTransformEnabled) {
+			corrector.beginLayerTransform();
+		}
+	}
+
+	/**
+	 * <p>Called when no pointer is down and no animation is running anymore.</p>
+	 */
+	private void settle() {
+		corrector.endLayerTransform();
+		if(onGestureStateListener != null && corrector.getImageView() != null) {
+			onGestureStateListener.onGestureSettled(this);
+		}
+	}
+
+	/**
+	 * <p>Sets the listener that receives the metrics of every gesture, or <code>null</code> to stop collecting them.</p>
+	 * <p>Metrics are only collected while a listener is set.</p>
+	 * @param onGestureMetricsListener
+	 */
+	public void setOnGestureMetricsListener(OnGestureMetricsListener onGestureMetricsListener) {
+		this.onGestureMetricsListener = onGestureMetricsListener;
+		if(onGestureMetricsListener == null) {
+			gestureMetrics = null;
+			gestureMetricsPending = false;
+		} else if(gestureMetrics == null) {
+			gestureMetrics = new GestureMetrics();
+		}
+		animator.setGestureMetrics(gestureMetrics);
+	}
+
+	/**
+	 * <p>Returns the metrics of the current gesture, or <code>null</code> when no metrics listener is set.</p>
+	 * @return
+	 */
+	public GestureMetrics getGestureMetrics() {
+		return gestureMetrics;
+	}
+
+	/**
+	 * <p>Reports the metrics of the finished gesture and clears them.</p>
+	 */
+	private void reportGestureMetrics() {
+		gestureMetricsPending = false;
+		if(!gestureMetrics.isEmpty()) {
+			onGestureMetricsListener.onGestureMetrics(this, gestureMetrics);
+		}
+		gestureMetrics.reset();
 	}
 
 	/**
@@ -129,7 +284,7 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @return
      */
 	public boolean isRotateEnabled() {
-		return rotateEnabled;
+		return solver.isRotateEnabled();
 	}
 
 	/**
@@ -137,7 +292,7 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @param rotateEnabled
      */
 	public void setRotateEnabled(boolean rotateEnabled) {
-		this.rotateEnabled = rotateEnabled;
+		solver.setRotateEnabled(rotateEnabled);
 	}
 
 	/**
@@ -145,7 +300,7 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @return
      */
 	public boolean isScaleEnabled() {
-		return scaleEnabled;
+		return solver.isScaleEnabled();
 	}
 
 	/**
@@ -153,7 +308,7 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @param scaleEnabled
      */
 	public void setScaleEnabled(boolean scaleEnabled) {
-		this.scaleEnabled = scaleEnabled;
+		solver.setScaleEnabled(scaleEnabled);
 	}
 
 	/**
@@ -161,7 +316,7 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @return
      */
 	public boolean isTranslateEnabled() {
-		return translateEnabled;
+		return solver.isTranslateEnabled();
 	}
 
 	/**
@@ -169,7 +324,7 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @param translateEnabled
      */
 	public void setTranslateEnabled(boolean translateEnabled) {
-		this.translateEnabled = translateEnabled;
+		solver.setTranslateEnabled(translateEnabled);
 	}
 
 	/**
@@ -177,7 +332,7 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @return
      */
 	public boolean isDragOnPinchEnabled() {
-		return dragOnPinchEnabled;
+		return solver.isDragOnPinchEnabled();
 	}
 
 	/**
@@ -185,7 +340,49 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @param dragOnPinchEnabled
      */
 	public void setDragOnPinchEnabled(boolean dragOnPinchEnabled) {
-		this.dragOnPinchEnabled = dragOnPinchEnabled;
+		solver.setDragOnPinchEnabled(dragOnPinchEnabled);
+	}
+
+	/**
+	 * <p>Indicates whether morphing is enabled.</p>
+	 * @return
+	 */
+	public boolean isMorphEnabled() {
+		return morphEnabled;
+	}
+
+	/**
+	 * <p>Sets whether morphing is enabled. When enabled, gestures of three or more pointers follow the least-squares fit of all
+	 * pointers ({@link #MORPH} mode); otherwise only the first two pointers pinch.</p>
+	 * @param morphEnabled
+	 */
+	public void setMorphEnabled(boolean morphEnabled) {
+		this.morphEnabled = morphEnabled;
+	}
+
+	/**
+	 * <p>Indicates whether gestures are rendered through a hardware layer.</p>
+	 * @return
+	 */
+	public boolean isLayerTransformEnabled() {
+		return layerTransformEnabled;
+	}
+
+	/**
+	 * <p>Sets whether gestures are rendered through a hardware layer. When enabled, the transform is applied through the view's
+	 * scale, rotation and translation properties during a gesture and its animations, and folded back into the image matrix when
+	 * the gesture settles. Moving the image then only updates the layer in the compositor instead of redrawing it. The layer is
+	 * only created once a gesture moves the image or starts an animation, so taps don't create one.</p>
+	 * <p>Parts of the image that were outside the view when the gesture started are not drawn until it settles, so this suits
+	 * images that are not zoomed in far, or devices on which redrawing the image is the bottleneck.</p>
+	 * @param layerTransformEnabled
+	 * @see ImageMatrixCorrector#beginLayerTransform()
+	 */
+	public void setLayerTransformEnabled(boolean layerTransformEnabled) {
+		this.layerTransformEnabled = layerTransformEnabled;
+		if(!layerTransformEnabled) {
+			corrector.endLayerTransform();
+		}
 	}
 
 	/**
@@ -197,6 +394,51 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 		this.pinchVelocityWindow = pinchVelocityWindow;
 	}
 
+	/**
+	 * <p>Sets the velocity window in milliseconds for determining the fling velocity.</p>
+	 * <p><b>Note:</b> Only touch samples in this temporal window are used to calculate fling velocity.</p>
+	 * @param flingVelocityWindow
+	 */
+	public void setFlingVelocityWindow(long flingVelocityWindow) {
+		this.flingVelocityWindow = flingVelocityWindow;
+	}
+
+	/**
+	 * <p>Sets the smoothing window in milliseconds. Setting the window to <code>0</code> disables smoothing altogether.</p>
+	 * <p>When enabled, drags and pinches follow a least-squares fit through the touch samples in this temporal window instead of
+	 * the raw pointer positions, which reduces jitter on high-rate digitizers.</p>
+	 * @param smoothingWindow
+	 */
+	public void setSmoothingWindow(long smoothingWindow) {
+		this.smoothingWindow = smoothingWindow;
+	}
+
+	/**
+	 * <p>Sets how far ahead in milliseconds pointer positions are predicted. Setting the horizon to <code>0</code> disables
+	 * prediction altogether.</p>
+	 * <p>When enabled, drags and pinches follow the predicted pointer positions, which compensates for the time it takes until a
+	 * frame is displayed. A horizon of one or two frames (16 to 32 ms at 60 Hz) is sensible.</p>
+	 * @param predictionHorizon
+	 */
+	public void setPredictionHorizon(long predictionHorizon) {
+		if(predictionHorizon == 0) {
+			predictor = null;
+		} else {
+			if(predictor == null) {
+				predictor = new TouchPredictor();
+			}
+			predictor.setHorizon(predictionHorizon);
+		}
+	}
+
+	/**
+	 * <p>Returns the predictor of pointer positions, or <code>null</code> when prediction is disabled.</p>
+	 * @return
+	 */
+	public TouchPredictor getTouchPredictor() {
+		return predictor;
+	}
+
 	/**
 	 * <p>Sets the double tap zoom animation duration. Setting the duration to <code>0</code> disables the animation altogether.</p>
 	 * @param doubleTapZoomDuration
@@ -207,6 +449,8 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 
 	/**
 	 * <p>Sets the fling animation duration. Setting the duration to <code>0</code> disables the animation altogether.</p>
+	 * <p><b>Note:</b> Flings decay by friction, so any other value only enables the animation. Use {@link #setFlingFriction(float)}
+	 * to change the fling distance and duration.</p>
 	 * @param flingDuration
 	 */
 	public void setFlingDuration(long flingDuration) {
@@ -221,6 +465,16 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 		this.zoomReleaseDuration = zoomReleaseDuration;
 	}
 
+	/**
+	 * <p>Sets the duration of the animation that snaps the rotation to the nearest multiple of 90 degrees when a pinch is released.
+	 * Setting the duration to <code>0</code> disables snapping altogether, which is the default.</p>
+	 * <p><b>Note:</b> Only applies when rotation is enabled.</p>
+	 * @param rotationSnapDuration
+	 */
+	public void setRotationSnapDuration(long rotationSnapDuration) {
+		this.rotationSnapDuration = rotationSnapDuration;
+	}
+
 	/**
 	 * <p>Sets the double tap zoom factor.</p>
 	 * @param doubleTapZoomFactor
@@ -240,11 +494,21 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	/**
 	 * <p>Sets the fling animation exaggeration factor.</p>
 	 * @param flingExaggeration
+	 * @deprecated Flings decay by friction; use {@link #setFlingFriction(float)} instead. This value is ignored.
 	 */
+	@Deprecated
 	public void setFlingExaggeration(float flingExaggeration) {
 		this.flingExaggeration = flingExaggeration;
 	}
 
+	/**
+	 * <p>Sets the fling friction; the rate at which the fling velocity decays per second. Higher values make shorter flings.</p>
+	 * @param flingFriction
+	 */
+	public void setFlingFriction(float flingFriction) {
+		fling.setFriction(flingFriction);
+	}
+
 	/**
 	 * <p>Sets the zoom release animation exaggeration factor.</p>
 	 * @param zoomReleaseExaggeration
@@ -258,59 +522,174 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @return
      */
 	public boolean isAnimating() {
-		return valueAnimator != null && valueAnimator.isRunning();
+		return animator.isRunning();
+	}
+
+	/**
+	 * <p>Indicates whether the image is being flung.</p>
+	 * @return
+	 */
+	public boolean isFlinging() {
+		return animator.isFlinging();
 	}
 
 	/**
 	 * <p>Cancels any running animations.</p>
 	 */
 	public void cancelAnimation() {
-		if(isAnimating()) {
-			valueAnimator.cancel();
-		}
+		animator.cancel();
 	}
 
 	/**
 	 * <p>Evaluates the touch state.</p>
 	 * @param event
-	 * @param matrix
 	 */
-	private void evaluateTouchState(MotionEvent event, Matrix matrix) {
+	private void evaluateTouchState(MotionEvent event) {
 
 		// Save the starting points
 		updateStartPoints(event);
-		savedMatrix.set(matrix);
+		long start = gestureMetrics != null ? System.nanoTime() : 0L;
+		if(event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+			// The matrix may have been altered in between gestures
+			corrector.invalidateMatrix();
+		}
+		corrector.readMatrix();
+		solver.start(corrector.getTransform());
+		if(gestureMetrics != null) {
+			gestureMetrics.recordCorrector(System.nanoTime() - start);
+		}
 
 		// Update the mode
 		int touchCount = getTouchCount();
 		if(touchCount == 0) {
+			if(mode == PINCH) {
+				releasePinch(false);
+			}
 			mode = NONE;
 		} else {
 			if(isAnimating()) {
-				valueAnimator.cancel();
+				if(isFlinging()) {
+					// Keep the fling's velocity so it can be picked up by the next fling
+					long elapsed = animator.getCurrentPlayTime();
+					flingCarryVelocityX = fling.getVelocityX(elapsed);
+					flingCarryVelocityY = fling.getVelocityY(elapsed);
+					flingCarryTime = event.getEventTime();
+				}
+				animator.cancel();
 			}
 			if(touchCount == 1) {
 				if(mode == PINCH) {
-					if(zoomReleaseDuration > 0 && !isAnimating()) {
-						// Animate zoom release
-						float scale = (float) Math.pow(Math.pow(Math.pow(pinchVelocity, 1d / 1000d), zoomReleaseDuration), zoomReleaseExaggeration);
-						animateZoom(scale, zoomReleaseDuration, mid.x, mid.y, new DecelerateInterpolator());
-					}
+					releasePinch(true);
 				}
 				mode = DRAG;
+			} else if (touchCount > 2 && morphEnabled) {
+				mode = MORPH;
 			} else if (touchCount > 1) {
 				mode = PINCH;
 
-				// Calculate the start distance
-				startSpacing = spacing(event, getId(0), getId(1));
-				pinchVelocity = 0f;
+				// Save the start configuration
+				int indexA = event.findPointerIndex(getId(0));
+				int indexB = event.findPointerIndex(getId(1));
+				solver.startPinch(event.getX(indexA), event.getY(indexA), event.getX(indexB), event.getY(indexB), startedLower(getStartY(0), getStartY(1)));
+			}
+		}
+		publishMode();
 
-				if(startSpacing > MIN_PINCH_DIST_PIXELS) {
-					midPoint(startMid, event, getId(0), getId(1));
-					startAngle = angle(event, getId(0), getId(1), startedLower(getStartPoint(0), getStartPoint(1)));
-				}
+		// Restart the sample histories of the tracked pointers
+		historyA.clear();
+		historyB.clear();
+		spacingHistory.clear();
+		sampledPointerA = touchCount > 0 ? getId(0) : -1;
+		sampledPointerB = touchCount > 1 ? getId(1) : -1;
+		recordSamples(event);
+	}
+
+	/**
+	 * <p>Animates the release of a pinch: the zoom release easing and snapping the rotation, which are combined into a single
+	 * animation.</p>
+	 * @param zoomRelease whether to ease the zoom; only when a pointer remains down
+	 */
+	private void releasePinch(boolean zoomRelease) {
+		if(isAnimating()) {
+			return;
+		}
+		Transform transform = corrector.getTransform();
+		float scale = transform.getScale();
+		float rotation = transform.getRotation();
+		long duration = 0;
+		if(zoomRelease && zoomReleaseDuration > 0 && solver.isScaleEnabled()) {
+			// Animate zoom release; the pinch velocity is the scale factor per second
+			spacingHistory.fit(pinchVelocityWindow);
+			double pinchVelocity = Math.exp(spacingHistory.getVelocityX());
+			scale *= (float) Math.pow(Math.pow(Math.pow(pinchVelocity, 1d / 1000d), zoomReleaseDuration), zoomReleaseExaggeration);
+			duration = zoomReleaseDuration;
+		}
+		if(rotationSnapDuration > 0 && solver.isRotateEnabled()) {
+			float snapped = Math.round(rotation / 90f) * 90f;
+			if(snapped != rotation) {
+				rotation = snapped;
+				duration = Math.max(duration, rotationSnapDuration);
+			}
+		}
+		if(duration > 0) {
+			float x = solver.getMidX();
+			float y = solver.getMidY();
+			beginAnimationLayer();
+			animator.animate(x, y, x, y, scale, rotation, duration, zoomReleaseInterpolator);
+		}
+	}
+
+	/**
+	 * <p>Records the historical and current samples of the tracked pointers in the event.</p>
+	 * @param event
+	 */
+	private void recordSamples(MotionEvent event) {
+		int indexA = sampledPointerA != -1 ? event.findPointerIndex(sampledPointerA) : -1;
+		if(indexA < 0) {
+			return;
+		}
+		int indexB = sampledPointerB != -1 ? event.findPointerIndex(sampledPointerB) : -1;
+		for(int i = 0, n = event.getHistorySize(); i < n; i++) {
+			if(indexB < 0) {
+				historyA.add(event.getHistoricalEventTime(i), event.getHistoricalX(indexA, i), event.getHistoricalY(indexA, i));
+			} else {
+				recordPinchSample(event.getHistoricalEventTime(i), event.getHistoricalX(indexA, i), event.getHistoricalY(indexA, i),
+						event.getHistoricalX(indexB, i), event.getHistoricalY(indexB, i));
 			}
 		}
+		if(indexB < 0) {
+			historyA.add(event.getEventTime(), event.getX(indexA), event.getY(indexA));
+		} else {
+			recordPinchSample(event.getEventTime(), event.getX(indexA), event.getY(indexA), event.getX(indexB), event.getY(indexB));
+		}
+	}
+
+	/**
+	 * <p>Resolves the position the gesture follows for the given pointer: predicted, smoothed or as is. The result is stored in
+	 * {@link #resolvedX} and {@link #resolvedY}.</p>
+	 * @param history
+	 * @param event
+	 * @param pointerId
+	 */
+	private void resolvePosition(SampleHistory history, MotionEvent event, int pointerId) {
+		if(predictor != null && predictor.predict(history)) {
+			resolvedX = predictor.getPredictedX();
+			resolvedY = predictor.getPredictedY();
+		} else if(smoothingWindow > 0) {
+			history.fit(smoothingWindow);
+			resolvedX = history.getFittedX();
+			resolvedY = history.getFittedY();
+		} else {
+			int index = event.findPointerIndex(pointerId);
+			resolvedX = event.getX(index);
+			resolvedY = event.getY(index);
+		}
+	}
+
+	private void recordPinchSample(long time, float xA, float yA, float xB, float yB) {
+		historyA.add(time, xA, yA);
+		historyB.add(time, xB, yB);
+		spacingHistory.add(time, (float) Math.log(Math.max(1f, GestureUtils.spacing(xA, yA, xB, yB))), 0f);
 	}
 
 	/*
@@ -319,6 +698,52 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	
 	@Override
 	public boolean onTouch(View view, MotionEvent event) {
+		if(gestureMetrics == null) {
+			return handleTouch(view, event);
+		}
+		int actionMasked = event.getActionMasked();
+		if(actionMasked == MotionEvent.ACTION_DOWN) {
+			// A new gesture interrupts the animation of the previous one
+			if(gestureMetricsPending) {
+				reportGestureMetrics();
+			} else {
+				gestureMetrics.reset();
+			}
+		}
+		long start = System.nanoTime();
+		boolean handled = handleTouch(view, event);
+		gestureMetrics.recordTouch(System.nanoTime() - start, event.getPointerCount(),
+				actionMasked == MotionEvent.ACTION_DOWN || actionMasked == MotionEvent.ACTION_POINTER_DOWN);
+		if(actionMasked == MotionEvent.ACTION_UP || actionMasked == MotionEvent.ACTION_CANCEL) {
+			// Animations started by the gesture count towards it
+			if(isAnimating()) {
+				gestureMetricsPending = true;
+			} else {
+				reportGestureMetrics();
+			}
+		}
+		return handled;
+	}
+
+	/**
+	 * <p>Handles a touch event.</p>
+	 * @param view
+	 * @param event
+	 * @return
+	 */
+	private boolean handleTouch(View view, MotionEvent event) {
+		int actionMasked = event.getActionMasked();
+		boolean layerTransform = corrector.isLayerTransformActive() && corrector.getImageView() == view;
+		if(layerTransform) {
+			// The event is relative to the transformed view; map it to the untransformed view the image matrix applies to
+			Matrix viewMatrix = view.getMatrix();
+			viewMatrix.invert(touchInverse);
+			event.transform(viewMatrix);
+		}
+		if(actionMasked == MotionEvent.ACTION_MOVE || actionMasked == MotionEvent.ACTION_UP || actionMasked == MotionEvent.ACTION_POINTER_UP) {
+			// Pointers going up are still in the event, so record them before they are released
+			recordSamples(event);
+		}
 		super.onTouch(view, event);
 		gestureDetector.onTouchEvent(event);
 		ImageView imageView;
@@ -331,69 +756,96 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 		Matrix matrix = imageView.getImageMatrix();
 		// Sets the image view
 		if(corrector.getImageView() != imageView) {
-			corrector.setImageView(imageView);
+			bind(imageView);
 		} else if(imageView.getScaleType() != ScaleType.MATRIX) {
 			imageView.setScaleType(ScaleType.MATRIX);
 			corrector.setMatrix(matrix);
+		} else if(corrector.getMatrix() != matrix) {
+			corrector.setMatrix(matrix);
 		}
-		int actionMasked = event.getActionMasked();
 		switch (actionMasked) {
 		case MotionEvent.ACTION_UP:
 		case MotionEvent.ACTION_POINTER_UP:
 		case MotionEvent.ACTION_DOWN:
 		case MotionEvent.ACTION_POINTER_DOWN:
-			evaluateTouchState(event, matrix);
+			evaluateTouchState(event);
+			break;
+		case MotionEvent.ACTION_CANCEL:
+			// A parent took over the gesture
+			mode = NONE;
+			publishMode();
 			break;
 		case MotionEvent.ACTION_MOVE:
 			if(updateTouchState) {
-				evaluateTouchState(event, matrix);
+				evaluateTouchState(event);
 				updateTouchState = false;
 			}
-			// Reuse the saved matrix
-			matrix.set(savedMatrix);
+			// Solve relative to the transform at the start of the gesture
+			long start = gestureMetrics != null ? System.nanoTime() : 0L;
+			boolean layerPending = layerTransformEnabled && !corrector.isLayerTransformActive();
+			if(layerPending) {
+				// What the matrix shows before this event
+				layerBase.set(corrector.getTransform());
+			}
 			if (mode == DRAG) {
-				if(translateEnabled) {
-					// Get the start point
-					PointF start = getStartPoint(0);
-					int index = event.findPointerIndex(getId(0));
-					float dx = event.getX(index) - start.x;
-					dx = corrector.correctRelative(Matrix.MTRANS_X, dx);
-					float dy = event.getY(index) - start.y;
-					dy = corrector.correctRelative(Matrix.MTRANS_Y, dy);
-					matrix.postTranslate(dx, dy);
-				}
+				resolvePosition(historyA, event, getId(0));
+				solver.drag(corrector, resolvedX - getStartX(0), resolvedY - getStartY(0));
 			} else if (mode == PINCH) {
-				// Get the new midpoint
-				midPoint(mid, event, getId(0), getId(1));
-				// Rotate
-				if(rotateEnabled) {
-					float deg = startAngle - angle(event, getId(0), getId(1), startedLower(getStartPoint(0), getStartPoint(1)));
-					matrix.postRotate(deg, mid.x, mid.y);
+				resolvePosition(historyA, event, getId(0));
+				float xA = resolvedX;
+				float yA = resolvedY;
+				resolvePosition(historyB, event, getId(1));
+				solver.pinch(corrector, xA, yA, resolvedX, resolvedY);
+			} else if (mode == MORPH) {
+				solver.beginMorph();
+				for(int i = 0, n = getTouchCount(); i < n; i++) {
+					int index = event.findPointerIndex(getId(i));
+					solver.addMorphPoint(getStartX(i), getStartY(i), event.getX(index), event.getY(index));
 				}
-				if(scaleEnabled) {
-					// Scale
-					float spacing = spacing(event, getId(0), getId(1));
-					float sx = spacing / startSpacing;
-					sx = corrector.correctRelative(Matrix.MSCALE_X, sx);
-					matrix.postScale(sx, sx, mid.x, mid.y);
-					if(event.getHistorySize() > 0) {
-						pinchVelocity = pinchVelocity(event, getId(0), getId(1), pinchVelocityWindow);
-					}
-				}
-				if(dragOnPinchEnabled && translateEnabled) {
-					// Translate
-					float dx = mid.x - startMid.x;
-					float dy = mid.y - startMid.y;
-					matrix.postTranslate(dx, dy);
+				solver.morph(corrector);
+			}
+			if(mode != NONE) {
+				if(layerPending && !corrector.getTransform().equals(layerBase)) {
+					// Only start the layer once the image moves, so taps don't create and destroy one
+					corrector.beginLayerTransform(layerBase);
 				}
-				corrector.performAbsoluteCorrections();
+				corrector.writeMatrix();
+			}
+			if(gestureMetrics != null && mode != NONE) {
+				gestureMetrics.recordCorrector(System.nanoTime() - start);
+			}
+			if(!corrector.isLayerTransformActive()) {
+				imageView.invalidate();
 			}
-			imageView.invalidate();
 			break;
 		}
+		if(!isTouching() && !isAnimating()) {
+			settle();
+		}
+		if(layerTransform) {
+			event.transform(touchInverse);
+		}
 		return true; // indicate event was handled
 	}
 
+	/**
+	 * <p>Releases the bound view when it is detached from its window.</p>
+	 */
+	private class ViewReleaser implements View.OnAttachStateChangeListener {
+
+		@Override
+		public void onViewAttachedToWindow(View v) {
+
+		}
+
+		@Override
+		public void onViewDetachedFromWindow(View v) {
+			if(v == corrector.getImageView()) {
+				release();
+			}
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -403,18 +855,31 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 		public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
 			if (mode == DRAG) {
 				if (flingDuration > 0 && !isAnimating()) {
-					float factor = ((float) flingDuration / 1000f) * flingExaggeration;
-					float[] values = corrector.getValues();
-					float dx = (velocityX * factor) * values[Matrix.MSCALE_X];
-					float dy = (velocityY * factor) * values[Matrix.MSCALE_Y];
-					PropertyValuesHolder flingX = PropertyValuesHolder.ofFloat(FlingAnimatorHandler.PROPERTY_TRANSLATE_X, values[Matrix.MTRANS_X], values[Matrix.MTRANS_X] + dx);
-					PropertyValuesHolder flingY = PropertyValuesHolder.ofFloat(FlingAnimatorHandler.PROPERTY_TRANSLATE_Y, values[Matrix.MTRANS_Y], values[Matrix.MTRANS_Y] + dy);
-					valueAnimator = ValueAnimator.ofPropertyValuesHolder(flingX, flingY);
-					valueAnimator.setDuration(flingDuration);
-					valueAnimator.addUpdateListener(new FlingAnimatorHandler(corrector));
-					valueAnimator.setInterpolator(new DecelerateInterpolator());
-					valueAnimator.start();
-					return true;
+					// Estimate the velocity from all samples of the drag, including historical ones
+					if(historyA.size() > 1) {
+						historyA.fit(flingVelocityWindow);
+						velocityX = historyA.getVelocityX();
+						velocityY = historyA.getVelocityY();
+					}
+
+					// Pick up the velocity of a fling that was interrupted by this gesture
+					if(e2.getEventTime() - flingCarryTime < FLING_ACCUMULATION_WINDOW) {
+						velocityX = Fling.accumulate(velocityX, flingCarryVelocityX);
+						velocityY = Fling.accumulate(velocityY, flingCarryVelocityY);
+					}
+					flingCarryVelocityX = flingCarryVelocityY = 0f;
+
+					// The fling stops at the corrector's bounds
+					corrector.readMatrix();
+					Transform transform = corrector.getTransform();
+					fling.start(transform.getTranslateX(), transform.getTranslateY(), velocityX, velocityY,
+							corrector.correctAbsolute(Matrix.MTRANS_X, -Float.MAX_VALUE), corrector.correctAbsolute(Matrix.MTRANS_X, Float.MAX_VALUE),
+							corrector.correctAbsolute(Matrix.MTRANS_Y, -Float.MAX_VALUE), corrector.correctAbsolute(Matrix.MTRANS_Y, Float.MAX_VALUE));
+					if(fling.getDuration() > 0) {
+						beginAnimationLayer();
+						animator.fling(fling);
+						return true;
+					}
 				}
 			}
 			return super.onFling(e1, e2, velocityX, velocityY);
@@ -423,12 +888,12 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 		@Override
 		public boolean onDoubleTapEvent(MotionEvent e) {
 			if (doubleTapZoomFactor > 0 && !isAnimating()) {
-				float sx = corrector.getValues()[Matrix.MSCALE_X];
+				float sx = getScale();
 				float innerFitScale = corrector.getInnerFitScale();
 				float reversalScale = innerFitScale * doubleTapZoomOutFactor;
-				ScaleAnimatorHandler scaleAnimatorHandler = new ScaleAnimatorHandler(corrector, e.getX(), e.getY());
 				float scaleTo = sx > reversalScale ? innerFitScale : sx * doubleTapZoomFactor;
-				animateZoom(sx, scaleTo, doubleTapZoomDuration, scaleAnimatorHandler, null);
+				beginAnimationLayer();
+				animateZoomTo(scaleTo, doubleTapZoomDuration, e.getX(), e.getY(), null);
 				return true;
 			}
 			return super.onDoubleTap(e);
@@ -441,8 +906,8 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @param duration
 	 */
 	public void animateZoom(float zoomFactor, long duration) {
-		float sx = corrector.getValues()[Matrix.MSCALE_X];
-		animateZoom(sx, sx * zoomFactor, duration, new ScaleAnimatorHandler(corrector), null);
+		corrector.invalidateMatrix();
+		animateZoomTo(getScale() * zoomFactor, duration, 0f, 0f, null);
 	}
 
 	/**
@@ -465,8 +930,8 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @param interpolator
      */
 	public void animateZoom(float zoomFactor, long duration, float x, float y, Interpolator interpolator) {
-		float sx = corrector.getValues()[Matrix.MSCALE_X];
-		animateZoom(sx, sx * zoomFactor, duration, new ScaleAnimatorHandler(corrector, x, y), interpolator);
+		corrector.invalidateMatrix();
+		animateZoomTo(getScale() * zoomFactor, duration, x, y, interpolator);
 	}
 
 	/**
@@ -474,8 +939,7 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @param duration
 	 */
 	public void animateZoomOutToFit(long duration) {
-		float sx = corrector.getValues()[Matrix.MSCALE_X];
-		animateZoom(sx, corrector.getInnerFitScale(), duration, new ScaleAnimatorHandler(corrector), null);
+		animateZoomTo(corrector.getInnerFitScale(), duration, 0f, 0f, null);
 	}
 
 	/**
@@ -485,26 +949,84 @@ public class ImageMatrixTouchHandler extends MultiTouchListener {
 	 * @param y
      */
 	public void animateZoomOutToFit(long duration, float x, float y) {
-		float sx = corrector.getValues()[Matrix.MSCALE_X];
-		animateZoom(sx, corrector.getInnerFitScale(), duration, new ScaleAnimatorHandler(corrector, x, y), null);
+		animateZoomTo(corrector.getInnerFitScale(), duration, x, y, null);
+	}
+
+	/**
+	 * <p>Performs a zoom animation so that the given rectangle in image coordinates fits and is centered within the view.</p>
+	 * <p>Scale and translation are animated together; the rectangle's center moves to the view's center while zooming.</p>
+	 * @param left
+	 * @param top
+	 * @param right
+	 * @param bottom
+	 * @param duration
+	 * @param interpolator
+	 */
+	public void animateZoomToRect(float left, float top, float right, float bottom, long duration, Interpolator interpolator) {
+		if(isAnimating()) {
+			throw new IllegalStateException("An animation is currently running; Check isAnimating() first!");
+		}
+		animator.animateZoomToRect(left, top, right, bottom, duration, interpolator);
 	}
 
 	/**
-	 * <p>Performs a zoom animation from <code>scaleFrom</code> to <code>scaleTo</code> using the given <code>ScaleAnimatorHandler</code>.</p>
-	 * @param scaleFrom
+	 * <p>Performs a zoom animation to <code>scaleTo</code> keeping the given point in place.</p>
 	 * @param scaleTo
 	 * @param duration
-	 * @param scaleAnimatorHandler
+	 * @param x
+	 * @param y
 	 * @param interpolator
      */
-	private void animateZoom(float scaleFrom, float scaleTo, long duration, ScaleAnimatorHandler scaleAnimatorHandler, Interpolator interpolator) {
+	private void animateZoomTo(float scaleTo, long duration, float x, float y, Interpolator interpolator) {
 		if(isAnimating()) {
 			throw new IllegalStateException("An animation is currently running; Check isAnimating() first!");
 		}
-		valueAnimator = ValueAnimator.ofFloat(scaleFrom, scaleTo);
-		valueAnimator.setDuration(duration);
-		valueAnimator.addUpdateListener(scaleAnimatorHandler);
-		if(interpolator != null) valueAnimator.setInterpolator(interpolator);
-		valueAnimator.start();
+		animator.animateZoom(scaleTo, x, y, duration, interpolator);
+	}
+
+	/**
+	 * <p>Returns the current scale of the image.</p>
+	 * @return
+	 */
+	private float getScale() {
+		corrector.readMatrix();
+		return corrector.getTransform().getScale();
+	}
+
+	/*
+	 * Inner classes
+	 */
+
+	/**
+	 * <p>Listener that follows the state of the handler's gestures, e.g. to postpone expensive work until a gesture settles.</p>
+	 */
+	public interface OnGestureStateListener {
+
+		/**
+		 * <p>Called when the mode has changed.</p>
+		 * @param handler
+		 * @param mode the new mode
+		 */
+		void onModeChanged(ImageMatrixTouchHandler handler, int mode);
+
+		/**
+		 * <p>Called when the last pointer has gone up and any animation it started has ended, so the image is at rest.</p>
+		 * @param handler
+		 */
+		void onGestureSettled(ImageMatrixTouchHandler handler);
+	}
+
+	/**
+	 * <p>Listener that receives the metrics of every finished gesture.</p>
+	 */
+	public interface OnGestureMetricsListener {
+
+		/**
+		 * <p>Called when a gesture and the animation it started have ended.</p>
+		 * <p><b>Note:</b> The metrics instance is reused; copy any values that need to outlive this call.</p>
+		 * @param handler
+		 * @param metrics
+		 */
+		void onGestureMetrics(ImageMatrixTouchHandler handler, GestureMetrics metrics);
 	}
 }
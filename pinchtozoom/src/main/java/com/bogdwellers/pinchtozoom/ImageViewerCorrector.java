@@ -3,13 +3,14 @@ package com.bogdwellers.pinchtozoom;
 import android.graphics.Matrix;
 import android.widget.ImageView;
 
+import com.bogdwellers.pinchtozoom.core.CorrectorUtils;
+import com.bogdwellers.pinchtozoom.core.Transform;
+
 /**
  * <p>This <code>MatrixCorrector</code> implementation defines the default behavior for an image viewer.</p>
- * <p>It works properly only if the following two conditions are met:</p>
- * <ol>
- * <li>There are no rotations</li>
- * <li>The scaling is uniform: <code>sx</code> and <code>sy</code> are always the same value</li>
- * </ol>
+ * <p>It works properly only if the scaling is uniform: <code>sx</code> and <code>sy</code> are always the same value.</p>
+ * <p>Rotated images are bounded by their axis-aligned bounding box. Scales are corrected by their magnitude, regardless of the
+ * rotation, and may go down to the scale at which the rotated image fits within the view.</p>
  * @author Martin
  *
  */
@@ -23,6 +24,7 @@ public class ImageViewerCorrector extends ImageMatrixCorrector {
 	
 	private float maxScale;
 	private boolean maxScaleRelative;
+	private float absoluteMaxScale;
 	
 	/*
 	 * Constructor(s)
@@ -34,8 +36,8 @@ public class ImageViewerCorrector extends ImageMatrixCorrector {
 	
 	public ImageViewerCorrector(ImageView imageView, float maxScale) {
 		super();
-		if(imageView != null) setImageView(imageView);
 		this.maxScale = maxScale;
+		if(imageView != null) setImageView(imageView);
 	}
 
 	/*
@@ -56,6 +58,7 @@ public class ImageViewerCorrector extends ImageMatrixCorrector {
      */
 	public void setMaxScale(float maxScale) {
 		this.maxScale = maxScale;
+		invalidateGeometry();
 	}
 
 	/**
@@ -72,43 +75,96 @@ public class ImageViewerCorrector extends ImageMatrixCorrector {
      */
 	public void setMaxScaleRelative(boolean maxScaleRelative) {
 		this.maxScaleRelative = maxScaleRelative;
+		invalidateGeometry();
+	}
+
+	/**
+	 * <p>Returns the maximum allowed scale in absolute terms; that is, relative to the inner fit scale if the maximum scale is.</p>
+	 * @return
+	 */
+	public float getAbsoluteMaxScale() {
+		validateGeometry();
+		return absoluteMaxScale;
+	}
+
+	/**
+	 * <p>Returns the minimum allowed scale; the scale at which the image, at its current rotation, fits within the view.</p>
+	 * @return
+	 */
+	public float getMinScale() {
+		Transform transform = getTransform();
+		float skewY = transform.getSkewY();
+		if(transform.getSkewX() == 0f && skewY == 0f) {
+			return getInnerFitScale();
+		}
+		float scale = transform.getScale();
+		ImageView imageView = getImageView();
+		return CorrectorUtils.innerFitScale(imageView.getWidth(), imageView.getHeight(), getDrawableWidth(), getDrawableHeight(),
+				transform.getScaleX() / scale, skewY / scale);
 	}
 
 	/*
 	 * Overrides
 	 */
+
+	@Override
+	protected void updateGeometry() {
+		super.updateGeometry();
+		absoluteMaxScale = maxScaleRelative ? getInnerFitScale() * maxScale : maxScale;
+	}
 	
+	/**
+	 * <p>Corrects the translations of the transform. Use {@link #writeMatrix()} to apply the result to the matrix.</p>
+	 */
 	@Override
-	public void performAbsoluteCorrections() {
-		super.performAbsoluteCorrections();
+	public void correctTransform() {
+		super.correctTransform();
 		
 		// Calculate the image's new dimensions
 		updateScaledImageDimensions();
 
-		// Correct scale
-		//values[Matrix.MSCALE_X] = values[Matrix.MSCALE_Y] = correctAbsolute(Matrix.MSCALE_X, values[Matrix.MSCALE_X]);
-
 		// Correct the translations
-		float[] values = getValues();
-		values[Matrix.MTRANS_X] = correctAbsolute(Matrix.MTRANS_X, values[Matrix.MTRANS_X]);
-		values[Matrix.MTRANS_Y] = correctAbsolute(Matrix.MTRANS_Y, values[Matrix.MTRANS_Y]);
+		Transform transform = getTransform();
+		transform.setTranslate(
+				correctAbsolute(Matrix.MTRANS_X, transform.getTranslateX()),
+				correctAbsolute(Matrix.MTRANS_Y, transform.getTranslateY()));
+	}
 
-		// Update the matrix
-		getMatrix().setValues(values);
+	/**
+	 * <p>Scales are corrected relative to the magnitude of the current scale, so that they remain correct when rotated.</p>
+	 */
+	@Override
+	public float correctRelative(int vector, float x) {
+		switch(vector) {
+			case Matrix.MSCALE_X:
+			case Matrix.MSCALE_Y:
+				Transform transform = getTransform();
+				if(transform.getSkewX() == 0f && transform.getSkewY() == 0f) {
+					// Not rotated, so the scale is the matrix value itself
+					return super.correctRelative(vector, x);
+				}
+				float scale = transform.getScale();
+				return correctAbsolute(vector, scale * x) / scale;
+			default:
+				return super.correctRelative(vector, x);
+		}
 	}
 
+	/**
+	 * <p>Translations are corrected by the bounding box of the image. Scales are corrected by their magnitude.</p>
+	 */
 	@Override
 	public float correctAbsolute(int vector, float x) {
 		switch(vector) {
 			case Matrix.MTRANS_X:
-				return correctTranslation(x, getImageView().getWidth(), getScaledImageWidth());
+				float offsetX = getImageBoundsOffsetX();
+				return correctTranslation(x + offsetX, getImageView().getWidth(), getScaledImageWidth()) - offsetX;
 			case Matrix.MTRANS_Y:
-				return correctTranslation(x, getImageView().getHeight(), getScaledImageHeight());
+				float offsetY = getImageBoundsOffsetY();
+				return correctTranslation(x + offsetY, getImageView().getHeight(), getScaledImageHeight()) - offsetY;
 			case Matrix.MSCALE_X:
 			case Matrix.MSCALE_Y:
-				float innerFitScale = getInnerFitScale();
-				float maxScale = maxScaleRelative ? innerFitScale * this.maxScale : this.maxScale;
-				return Math.max(Math.min(x, maxScale), innerFitScale);
+				return CorrectorUtils.clampScale(x, getMinScale(), getAbsoluteMaxScale());
 			default:
 				throw new IllegalArgumentException("Vector not supported");
 		}
@@ -126,13 +182,6 @@ public class ImageViewerCorrector extends ImageMatrixCorrector {
 	 * @return
 	 */
 	public static final float correctTranslation(float translation, float viewDim, float imgDim) {
-		if(imgDim < viewDim) {
-			// Must center
-			translation = (viewDim / 2) - (imgDim / 2);
-		} else {
-			float diff = imgDim - viewDim;
-			translation = Math.max(Math.min(0, translation), -diff);
-		}
-		return translation;
+		return CorrectorUtils.correctTranslation(translation, viewDim, imgDim);
 	}
 }
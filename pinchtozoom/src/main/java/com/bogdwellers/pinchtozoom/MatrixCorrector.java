@@ -2,74 +2,93 @@ package com.bogdwellers.pinchtozoom;
 
 import android.graphics.Matrix;
 
+import com.bogdwellers.pinchtozoom.core.TransformCorrector;
+
 /**
  * <p>The <code>MatrixCorrector</code> enforces boundaries in the transformation of a <code>Matrix</code>.</p>
- * 
+ * <p>Corrections are performed on the corrector's {@link com.bogdwellers.pinchtozoom.core.Transform} by
+ * {@link #correctTransform()}. Use {@link #readMatrix()} to copy the matrix into the transform and {@link #writeMatrix()} to copy
+ * the corrected transform back into the matrix, or {@link #correctMatrix()} to do all three.</p>
+ * <p>The transform is a cached copy of the matrix. It is only read from the matrix again after the matrix has been marked as
+ * changed from outside using {@link #invalidateMatrix()}, so repeated reads are free. Code that sets the matrix other than
+ * through the corrector, e.g. using <code>ImageView.setImageMatrix(Matrix)</code>, must call {@link #invalidateMatrix()} before
+ * the corrector is used again, or the corrector carries on from the transform it had cached.</p>
+ *
  * @author Martin
  *
  */
-public abstract class MatrixCorrector {
-	
+public abstract class MatrixCorrector extends TransformCorrector {
+
 	/*
 	 * Attributes
 	 */
 
 	private Matrix matrix;
 	private float[] values;
+	private boolean matrixDirty;
 
 	/*
 	 * Constructor(s)
 	 */
-	
+
 	public MatrixCorrector() {
 		this(null);
 	}
-	
+
 	public MatrixCorrector(Matrix matrix) {
 		this.matrix = matrix;
 		this.values = new float[9];
+		this.matrixDirty = true;
 	}
-	
+
 	/*
 	 * Class methods
 	 */
 
 	/**
-	 * <p>Does corrections AFTER matrix operations have been applied.</p>
-	 * <p>This implementation only copies the values of the matrix into its float array <code>values</code>.</p>
+	 * <p>Copies the values of the matrix into the transform if the matrix has changed since it was last read or written.</p>
 	 */
-	public void performAbsoluteCorrections() {
+	public void readMatrix() {
+		if(matrixDirty) {
+			matrix.getValues(values);
+			getTransform().setValues(values);
+			matrixDirty = false;
+		}
+	}
 
+	/**
+	 * <p>Copies the values of the transform into the matrix.</p>
+	 */
+	public void writeMatrix() {
+		getTransform().getValues(values);
+		matrix.setValues(values);
+		matrixDirty = false;
 	}
 
 	/**
-	 * <p>Returns the corrected value of the given relative vector.</p>
-	 * @param vector
-	 * @param x
-     * @return
-     */
-	public float correctRelative(int vector, float x) {
-		float v = getValues()[vector];
-		switch(vector) {
-			case Matrix.MTRANS_X:
-			case Matrix.MTRANS_Y:
-				return correctAbsolute(vector, v + x) - v;
-			case Matrix.MSCALE_X:
-			case Matrix.MSCALE_Y:
-				return correctAbsolute(vector, v * x) / v;
-			default:
-				throw new IllegalArgumentException("Vector not supported");
-		}
+	 * <p>Reads the matrix, corrects it and writes it back.</p>
+	 */
+	public void correctMatrix() {
+		invalidateMatrix();
+		readMatrix();
+		correctTransform();
+		writeMatrix();
 	}
 
 	/**
-	 * * <p>Returns the corrected value of the given absolute vector.</p>
-	 * @param vector
-	 * @param x
-     * @return
-     */
-	public float correctAbsolute(int vector, float x) {
-		return x;
+	 * <p>Marks the matrix as changed from outside this corrector, so that the next {@link #readMatrix()} reads it.</p>
+	 * <p>Call this after altering the matrix directly, e.g. using <code>ImageView.setImageMatrix(Matrix)</code>.</p>
+	 */
+	public void invalidateMatrix() {
+		matrixDirty = true;
+	}
+
+	/**
+	 * <p>Indicates whether the matrix has to be read again.</p>
+	 * @return
+	 */
+	public boolean isMatrixDirty() {
+		return matrixDirty;
 	}
 
 	/**
@@ -86,14 +105,29 @@ public abstract class MatrixCorrector {
 	 */
 	public void setMatrix(Matrix matrix) {
 		this.matrix = matrix;
+		this.matrixDirty = true;
+	}
+
+	/*
+	 * Overrides
+	 */
+
+	/**
+	 * <p>Corrects the matrix itself using {@link #correctMatrix()}.</p>
+	 */
+	@Override
+	public void performAbsoluteCorrections() {
+		correctMatrix();
 	}
 
 	/**
 	 * * * <p>Returns the matrix values.</p>
+	 * <p>This also copies the matrix into the transform.</p>
 	 * @return
 	 */
 	protected float[] getValues() {
-		matrix.getValues(values);
+		readMatrix();
+		getTransform().getValues(values);
 		return values;
 	}
 }
@@ -1,42 +1,50 @@
 package com.bogdwellers.pinchtozoom;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import android.graphics.Point;
 import android.graphics.PointF;
-import android.util.SparseArray;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnTouchListener;
 
+import com.bogdwellers.pinchtozoom.core.GestureUtils;
+
 /**
  * <p>This class enables easy interpretation of multitouch gestures such as pinching, rotating etc.</p>
+ * <p>Pointer state is kept in primitive arrays that are indexed by pointer id, so tracking pointers does not allocate
+ * once the arrays have grown to the highest pointer id in use.</p>
+ * <p>See {@link GroupingTouchListener} for grouping the pointers of several users by proximity.</p>
  * 
- * TODO Implement convex hull algorithm (static method)
- * TODO Implement touch grouping by evaluating touch proximity
- * TODO Implement get touch numbers ordered by x- or y-axis alignment
  * @author Martin
  *
  */
 public class MultiTouchListener implements OnTouchListener {
 	
 	private static final String TAG = MultiTouchListener.class.getSimpleName();
+	private static final int INITIAL_CAPACITY = 40; // 4 persons with both hands compatible :)
+	private static final int NO_TOUCH = -1;
 	
 	/*
 	 * Attributes
 	 */
 	
-	private List<Integer> pointerIds;
-	private SparseArray<PointF> startPoints;
+	private int[] pointerIds;
+	private int touchCount;
+	private int[] touchNumbers;
+	private float[] startX;
+	private float[] startY;
 	
 	/*
 	 * Constructor(s)
 	 */
 	
 	public MultiTouchListener() {
-		this.pointerIds = new ArrayList<>(40); // 4 persons with both hands compatible :)
-		this.startPoints = new SparseArray<>();
+		this.pointerIds = new int[INITIAL_CAPACITY];
+		this.touchNumbers = new int[INITIAL_CAPACITY];
+		this.startX = new float[INITIAL_CAPACITY];
+		this.startY = new float[INITIAL_CAPACITY];
+		for(int i = 0; i < INITIAL_CAPACITY; i++) {
+			touchNumbers[i] = NO_TOUCH;
+		}
 	}
 	
 	/*
@@ -49,28 +57,32 @@ public class MultiTouchListener implements OnTouchListener {
 		// Separate action and pointer index
 		int actionMasked = event.getActionMasked();
 		int actionIndex = event.getActionIndex();
-		Integer pointerId;
+		int pointerId;
+		
+		// A new gesture starts; drop any pointers left over from an incomplete one
+		if(actionMasked == MotionEvent.ACTION_DOWN) {
+			clearPointerIds();
+		}
 		
 		// Handle touch event
 		switch (actionMasked) {
 		case MotionEvent.ACTION_DOWN:
 		case MotionEvent.ACTION_POINTER_DOWN:
 			pointerId = event.getPointerId(actionIndex);
-			PointF startPoint = new PointF(event.getX(actionIndex), event.getY(actionIndex));
+			ensureCapacity(pointerId);
 			
 			// Save the starting point
-			startPoints.put(pointerId, startPoint);
-			pointerIds.add(pointerId);
+			startX[pointerId] = event.getX(actionIndex);
+			startY[pointerId] = event.getY(actionIndex);
+			addPointerId(pointerId);
 			break;
 		case MotionEvent.ACTION_UP:
 		case MotionEvent.ACTION_POINTER_UP:
 			pointerId = event.getPointerId(actionIndex);
-			pointerIds.remove(pointerId);
-			startPoints.remove(pointerId);
+			removePointerId(pointerId);
 			break;
 		case MotionEvent.ACTION_CANCEL:
 			clearPointerIds();
-			startPoints.clear();
 			break;
 		}
 		return false;
@@ -79,12 +91,72 @@ public class MultiTouchListener implements OnTouchListener {
 	/*
 	 * Class methods
 	 */
+
+	/**
+	 * <p>Grows the pointer tables so they can be indexed by the given pointer id.</p>
+	 * @param pointerId
+	 */
+	private void ensureCapacity(int pointerId) {
+		int capacity = touchNumbers.length;
+		if(pointerId >= capacity) {
+			int newCapacity = Math.max(pointerId + 1, capacity * 2);
+			int[] ids = new int[newCapacity];
+			System.arraycopy(pointerIds, 0, ids, 0, touchCount);
+			pointerIds = ids;
+			int[] numbers = new int[newCapacity];
+			System.arraycopy(touchNumbers, 0, numbers, 0, capacity);
+			for(int i = capacity; i < newCapacity; i++) {
+				numbers[i] = NO_TOUCH;
+			}
+			touchNumbers = numbers;
+			float[] x = new float[newCapacity];
+			System.arraycopy(startX, 0, x, 0, capacity);
+			startX = x;
+			float[] y = new float[newCapacity];
+			System.arraycopy(startY, 0, y, 0, capacity);
+			startY = y;
+		}
+	}
+
+	/**
+	 * <p>Registers the pointer id as the last touch number.</p>
+	 * @param pointerId
+	 */
+	private void addPointerId(int pointerId) {
+		if(touchNumbers[pointerId] == NO_TOUCH) {
+			touchNumbers[pointerId] = touchCount;
+			pointerIds[touchCount++] = pointerId;
+		}
+	}
+
+	/**
+	 * <p>Unregisters the pointer id; subsequent touch numbers move down by one.</p>
+	 * @param pointerId
+	 */
+	private void removePointerId(int pointerId) {
+		if(pointerId >= touchNumbers.length) {
+			return;
+		}
+		int touchNo = touchNumbers[pointerId];
+		if(touchNo != NO_TOUCH) {
+			touchNumbers[pointerId] = NO_TOUCH;
+			touchCount--;
+			for(int i = touchNo; i < touchCount; i++) {
+				int id = pointerIds[i + 1];
+				pointerIds[i] = id;
+				touchNumbers[id] = i;
+			}
+		}
+	}
 	
 	/**
 	 * <p>Clears all registered pointer ids.</p>
 	 */
 	private void clearPointerIds() {
-		pointerIds.clear();
+		for(int i = 0; i < touchCount; i++) {
+			touchNumbers[pointerIds[i]] = NO_TOUCH;
+		}
+		touchCount = 0;
 	}
 	
 	/**
@@ -92,7 +164,7 @@ public class MultiTouchListener implements OnTouchListener {
 	 * @return
 	 */
 	public int getTouchCount() {
-		return pointerIds.size();
+		return touchCount;
 	}
 	
 	/**
@@ -100,7 +172,7 @@ public class MultiTouchListener implements OnTouchListener {
 	 * @return
 	 */
 	public boolean isTouching() {
-		return !pointerIds.isEmpty();
+		return touchCount > 0;
 	}
 	
 	/**
@@ -109,16 +181,60 @@ public class MultiTouchListener implements OnTouchListener {
 	 * @return
 	 */
 	public int getId(int touchNo) {
-		return pointerIds.get(touchNo);
+		if(touchNo < 0 || touchNo >= touchCount) {
+			throw new IndexOutOfBoundsException("Invalid touch number " + touchNo + ", touch count is " + touchCount);
+		}
+		return pointerIds[touchNo];
+	}
+
+	/**
+	 * <p>Returns the touch number of the given pointer id or <code>-1</code> if the pointer is not down.</p>
+	 * @param pointerId
+	 * @return
+	 */
+	public int getTouchNo(int pointerId) {
+		return pointerId >= 0 && pointerId < touchNumbers.length ? touchNumbers[pointerId] : NO_TOUCH;
 	}
 	
 	/**
 	 * <p>Returns the start point for the given touch number (where the user initially pressed down).</p>
 	 * @param touchNo
 	 * @return
+	 * @deprecated Allocates a new <code>PointF</code>; use {@link #getStartPoint(int, PointF)}, {@link #getStartX(int)} or {@link #getStartY(int)} instead.
 	 */
+	@Deprecated
 	public PointF getStartPoint(int touchNo) {
-		return startPoints.get(getId(touchNo));
+		return getStartPoint(touchNo, new PointF());
+	}
+
+	/**
+	 * <p>Sets the given point to the start point for the given touch number (where the user initially pressed down).</p>
+	 * @param touchNo
+	 * @param point
+	 * @return the given point
+	 */
+	public PointF getStartPoint(int touchNo, PointF point) {
+		int pointerId = getId(touchNo);
+		point.set(startX[pointerId], startY[pointerId]);
+		return point;
+	}
+
+	/**
+	 * <p>Returns the x-coordinate of the start point for the given touch number.</p>
+	 * @param touchNo
+	 * @return
+	 */
+	public float getStartX(int touchNo) {
+		return startX[getId(touchNo)];
+	}
+
+	/**
+	 * <p>Returns the y-coordinate of the start point for the given touch number.</p>
+	 * @param touchNo
+	 * @return
+	 */
+	public float getStartY(int touchNo) {
+		return startY[getId(touchNo)];
 	}
 	
 	/**
@@ -126,15 +242,15 @@ public class MultiTouchListener implements OnTouchListener {
 	 * @param event
 	 */
 	public void updateStartPoints(MotionEvent event) {
-		PointF startPoint;
-		Integer pointerId;
+		int pointerId;
 		
 		for(int i = 0, n = event.getPointerCount(); i < n; i++) {
 			pointerId = event.getPointerId(i);
-			startPoint = new PointF(event.getX(i), event.getY(i));
+			ensureCapacity(pointerId);
 			
 			// Save the starting point
-			startPoints.put(pointerId, startPoint);
+			startX[pointerId] = event.getX(i);
+			startY[pointerId] = event.getY(i);
 		}
 	}
 	
@@ -142,9 +258,64 @@ public class MultiTouchListener implements OnTouchListener {
 	 * <p>Returns an array containing all pointer ids.</p>
 	 * @param ids
 	 * @return
+	 * @deprecated Boxes every pointer id; use {@link #getIds(int[])} instead.
 	 */
+	@Deprecated
 	public Integer[] getIdArray(Integer[] ids) {
-		return pointerIds.toArray(ids);
+		if(ids.length < touchCount) {
+			ids = new Integer[touchCount];
+		}
+		for(int i = 0; i < touchCount; i++) {
+			ids[i] = pointerIds[i];
+		}
+		if(ids.length > touchCount) {
+			ids[touchCount] = null;
+		}
+		return ids;
+	}
+
+	/**
+	 * <p>Copies all pointer ids in touch number order into the given array.</p>
+	 * @param ids array to copy into; a new array is allocated only if it is too small
+	 * @return the array containing the pointer ids
+	 */
+	public int[] getIds(int[] ids) {
+		if(ids == null || ids.length < touchCount) {
+			ids = new int[touchCount];
+		}
+		System.arraycopy(pointerIds, 0, ids, 0, touchCount);
+		return ids;
+	}
+	
+	/**
+	 * <p>Copies all touch numbers into the given array, ordered by the current position of their pointers along the x- or
+	 * y-axis.</p>
+	 * @param event
+	 * @param vertical whether to order along the y-axis instead of the x-axis
+	 * @param touchNumbers array to copy into; a new array is allocated only if it is too small
+	 * @return the array containing the ordered touch numbers
+	 */
+	public int[] getTouchNumbersByAxis(MotionEvent event, boolean vertical, int[] touchNumbers) {
+		if(touchNumbers == null || touchNumbers.length < touchCount) {
+			touchNumbers = new int[touchCount];
+		}
+
+		// Insertion sort; there are only as many touches as fingers
+		for(int i = 0; i < touchCount; i++) {
+			float value = axisValue(event, i, vertical);
+			int j = i - 1;
+			while(j >= 0 && axisValue(event, touchNumbers[j], vertical) > value) {
+				touchNumbers[j + 1] = touchNumbers[j];
+				j--;
+			}
+			touchNumbers[j + 1] = i;
+		}
+		return touchNumbers;
+	}
+
+	private float axisValue(MotionEvent event, int touchNo, boolean vertical) {
+		int index = event.findPointerIndex(pointerIds[touchNo]);
+		return vertical ? event.getY(index) : event.getX(index);
 	}
 	
 	/*
@@ -184,9 +355,7 @@ public class MultiTouchListener implements OnTouchListener {
      * @return
      */
 	private static final float spacingByIndex(MotionEvent event, int indexA, int indexB) {
-		float x = event.getX(indexA) - event.getX(indexB);
-		float y = event.getY(indexA) - event.getY(indexB);
-		return (float) Math.sqrt(x * x + y * y); // Pythagoras
+		return GestureUtils.spacing(event.getX(indexA), event.getY(indexA), event.getX(indexB), event.getY(indexB));
 	}
 
 	/**
@@ -206,9 +375,9 @@ public class MultiTouchListener implements OnTouchListener {
 		float scale = 1;
 		for(int i = 0, n = event.getHistorySize(); i < n && timeDelta < timeWindow; i++) {
 			int index = (n - 1) - i;
-			float x = event.getHistoricalX(indexA, index) - event.getHistoricalX(indexB, index);
-			float y = event.getHistoricalY(indexA, index) - event.getHistoricalY(indexB, index);
-			float spacing = (float) Math.sqrt(x * x + y * y);
+			float spacing = GestureUtils.spacing(
+					event.getHistoricalX(indexA, index), event.getHistoricalY(indexA, index),
+					event.getHistoricalX(indexB, index), event.getHistoricalY(indexB, index));
 			scale *= previousSpacing / spacing;
 			previousSpacing = spacing;
 			timeDelta = eventTime - event.getHistoricalEventTime(index);
@@ -260,22 +429,7 @@ public class MultiTouchListener implements OnTouchListener {
 		// Resolve the indices
 		int indexA = event.findPointerIndex(pointerA);
 		int indexB = event.findPointerIndex(pointerB);
-		
-		// Get the x-y displacement
-		float x = event.getX(indexA) - event.getX(indexB);
-		float y = event.getY(indexA) - event.getY(indexB);
-		
-		// Calculate the arc tangent
-		double atan = Math.atan(x / y);
-		
-		// Always consider the same pointer the pivot
-		if((y < 0f && isPointerAPivot) || (y > 0f && !isPointerAPivot)) {
-			atan += Math.PI;
-		}
-		
-		// Convert to float in degrees
-		double deg = Math.toDegrees(atan);
-		return (float) deg;
+		return GestureUtils.angle(event.getX(indexA), event.getY(indexA), event.getX(indexB), event.getY(indexB), isPointerAPivot);
 	}
 	
 	/**
@@ -286,6 +440,17 @@ public class MultiTouchListener implements OnTouchListener {
 	 * @return
 	 */
 	public static final boolean startedLower(PointF pointA, PointF pointB) {
-		return pointA.y < pointB.y;
+		return startedLower(pointA.y, pointB.y);
+	}
+
+	/**
+	 * <p>Convenience method to determine whether starting y-coordinate A is lower than starting y-coordinate B.
+	 * Useful in conjunction with {@link #angle(MotionEvent, int, int, boolean)}.</p>
+	 * @param yA
+	 * @param yB
+	 * @return
+	 */
+	public static final boolean startedLower(float yA, float yB) {
+		return yA < yB;
 	}
 }
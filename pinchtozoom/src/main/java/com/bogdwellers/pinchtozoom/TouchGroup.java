@@ -0,0 +1,218 @@
+package com.bogdwellers.pinchtozoom;
+
+import android.view.MotionEvent;
+
+import com.bogdwellers.pinchtozoom.core.GestureUtils;
+
+/**
+ * <p>A group of pointers that are close to each other, typically the fingers of a single user on a large multi-user surface.</p>
+ * <p>Groups are maintained by a {@link GroupingTouchListener}, which reuses the instances once a group has ended. The centroid and
+ * the convex hull are recalculated for every event without allocating.</p>
+ *
+ * @author Martin
+ *
+ */
+public class TouchGroup {
+
+	/*
+	 * Attributes
+	 */
+
+	private int id;
+	private int pointerCount;
+	private int[] pointerIds;
+	private float centroidX;
+	private float centroidY;
+	private float[] xs;
+	private float[] ys;
+	private int[] order;
+	private int[] hull;
+	private int hullSize;
+	private Object tag;
+
+	/*
+	 * Constructor(s)
+	 */
+
+	TouchGroup(int capacity) {
+		this.pointerIds = new int[capacity];
+		this.xs = new float[capacity];
+		this.ys = new float[capacity];
+		this.order = new int[capacity];
+		this.hull = new int[capacity + 1];
+	}
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * <p>Prepares the instance for a new group.</p>
+	 * @param id
+	 */
+	void reset(int id) {
+		this.id = id;
+		this.pointerCount = 0;
+		this.hullSize = 0;
+		this.tag = null;
+	}
+
+	void addPointer(int pointerId) {
+		if(pointerCount == pointerIds.length) {
+			int capacity = pointerCount * 2;
+			int[] ids = new int[capacity];
+			System.arraycopy(pointerIds, 0, ids, 0, pointerCount);
+			pointerIds = ids;
+			xs = new float[capacity];
+			ys = new float[capacity];
+			order = new int[capacity];
+			hull = new int[capacity + 1];
+		}
+		pointerIds[pointerCount++] = pointerId;
+	}
+
+	void removePointer(int pointerId) {
+		for(int i = 0; i < pointerCount; i++) {
+			if(pointerIds[i] == pointerId) {
+				pointerCount--;
+				System.arraycopy(pointerIds, i + 1, pointerIds, i, pointerCount - i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * <p>Recalculates the centroid and the convex hull from the pointer positions in the given event.</p>
+	 * @param event
+	 */
+	void update(MotionEvent event) {
+		float sumX = 0f;
+		float sumY = 0f;
+		for(int i = 0; i < pointerCount; i++) {
+			int index = event.findPointerIndex(pointerIds[i]);
+			float x = event.getX(index);
+			float y = event.getY(index);
+			xs[i] = x;
+			ys[i] = y;
+			order[i] = i;
+			sumX += x;
+			sumY += y;
+		}
+		if(pointerCount > 0) {
+			centroidX = sumX / pointerCount;
+			centroidY = sumY / pointerCount;
+		}
+		hullSize = GestureUtils.convexHull(xs, ys, order, pointerCount, hull);
+	}
+
+	/**
+	 * <p>Returns the id of the group, which is unique for the lifetime of its listener.</p>
+	 * @return
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * <p>Returns the number of pointers in the group.</p>
+	 * @return
+	 */
+	public int getPointerCount() {
+		return pointerCount;
+	}
+
+	/**
+	 * <p>Returns the pointer id of the given pointer in the group, in the order the pointers joined.</p>
+	 * @param i
+	 * @return
+	 */
+	public int getPointerId(int i) {
+		if(i < 0 || i >= pointerCount) {
+			throw new IndexOutOfBoundsException("Invalid pointer " + i + ", pointer count is " + pointerCount);
+		}
+		return pointerIds[i];
+	}
+
+	/**
+	 * <p>Indicates whether the pointer with the given id belongs to this group.</p>
+	 * @param pointerId
+	 * @return
+	 */
+	public boolean containsPointer(int pointerId) {
+		for(int i = 0; i < pointerCount; i++) {
+			if(pointerIds[i] == pointerId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * <p>Returns the x-coordinate of the given pointer in the group at the last update.</p>
+	 * @param i
+	 * @return
+	 */
+	float getX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * <p>Returns the y-coordinate of the given pointer in the group at the last update.</p>
+	 * @param i
+	 * @return
+	 */
+	float getY(int i) {
+		return ys[i];
+	}
+
+	public float getCentroidX() {
+		return centroidX;
+	}
+
+	public float getCentroidY() {
+		return centroidY;
+	}
+
+	/**
+	 * <p>Returns the number of vertices of the convex hull around the group's pointers.</p>
+	 * @return
+	 */
+	public int getHullSize() {
+		return hullSize;
+	}
+
+	/**
+	 * <p>Returns the x-coordinate of the given vertex of the convex hull.</p>
+	 * @param vertex
+	 * @return
+	 */
+	public float getHullX(int vertex) {
+		return xs[hull[vertex]];
+	}
+
+	/**
+	 * <p>Returns the y-coordinate of the given vertex of the convex hull.</p>
+	 * @param vertex
+	 * @return
+	 */
+	public float getHullY(int vertex) {
+		return ys[hull[vertex]];
+	}
+
+	public Object getTag() {
+		return tag;
+	}
+
+	/**
+	 * <p>Attaches an object to the group, such as the handler that the group drives. The tag is cleared when the group ends.</p>
+	 * @param tag
+	 */
+	public void setTag(Object tag) {
+		this.tag = tag;
+	}
+
+	@Override
+	public String toString() {
+		return "TouchGroup{id=" + id + ", pointers=" + pointerCount + ", centroid=(" + centroidX + ", " + centroidY + ")}";
+	}
+}
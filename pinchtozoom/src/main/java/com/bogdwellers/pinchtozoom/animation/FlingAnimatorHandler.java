@@ -5,35 +5,63 @@ import android.graphics.Matrix;
 import android.widget.ImageView;
 
 import com.bogdwellers.pinchtozoom.ImageMatrixCorrector;
+import com.bogdwellers.pinchtozoom.core.Fling;
 
 /**
  * Created by Martin on 12-10-2016.
+ *
+ * @deprecated Use {@link TransformAnimator}, which drives all animations of a view from a single reusable instance.
  */
-
+@Deprecated
 public class FlingAnimatorHandler extends AbsCorrectorAnimatorHandler {
 
     public static final String PROPERTY_TRANSLATE_X = "translateX";
     public static final String PROPERTY_TRANSLATE_Y = "translateY";
 
+    private Fling fling;
+
+    /**
+     * <p>Creates a handler that translates to the animated values of {@link #PROPERTY_TRANSLATE_X} and {@link #PROPERTY_TRANSLATE_Y},
+     * correcting them on every frame.</p>
+     * @param corrector
+     */
     public FlingAnimatorHandler(ImageMatrixCorrector corrector) {
+        this(corrector, null);
+    }
+
+    /**
+     * <p>Creates a handler that translates to the position of the given fling at the animation's current play time.</p>
+     * <p>The fling already stops at the corrector's bounds, so no corrections are performed.</p>
+     * @param corrector
+     * @param fling
+     */
+    public FlingAnimatorHandler(ImageMatrixCorrector corrector, Fling fling) {
         super(corrector);
+        this.fling = fling;
     }
 
     @Override
     public void onAnimationUpdate(ValueAnimator animation) {
         ImageMatrixCorrector corrector = getCorrector();
         ImageView imageView = corrector.getImageView();
-        Matrix matrix = imageView.getImageMatrix();
-        float[] values = getValues();
-        matrix.getValues(values);
+        corrector.readMatrix();
 
-        float dx = (float) animation.getAnimatedValue(PROPERTY_TRANSLATE_X);
-        dx = corrector.correctAbsolute(Matrix.MTRANS_X, dx) - values[Matrix.MTRANS_X];
+        float tx;
+        float ty;
+        if(fling != null) {
+            long elapsed = animation.getAnimatedFraction() < 1f ? animation.getCurrentPlayTime() : fling.getDuration();
+            tx = fling.getX(elapsed);
+            ty = fling.getY(elapsed);
+        } else {
+            tx = (float) animation.getAnimatedValue(PROPERTY_TRANSLATE_X);
+            tx = corrector.correctAbsolute(Matrix.MTRANS_X, tx);
 
-        float dy = (float) animation.getAnimatedValue(PROPERTY_TRANSLATE_Y);
-        dy = corrector.correctAbsolute(Matrix.MTRANS_Y, dy) - values[Matrix.MTRANS_Y];
+            ty = (float) animation.getAnimatedValue(PROPERTY_TRANSLATE_Y);
+            ty = corrector.correctAbsolute(Matrix.MTRANS_Y, ty);
+        }
 
-        matrix.postTranslate(dx, dy);
+        corrector.getTransform().setTranslate(tx, ty);
+        corrector.writeMatrix();
         imageView.invalidate();
     }
 }
@@ -5,11 +5,14 @@ import android.graphics.Matrix;
 import android.widget.ImageView;
 
 import com.bogdwellers.pinchtozoom.ImageMatrixCorrector;
+import com.bogdwellers.pinchtozoom.core.Transform;
 
 /**
  * Created by Martin on 12-10-2016.
+ *
+ * @deprecated Use {@link TransformAnimator}, which drives all animations of a view from a single reusable instance.
  */
-
+@Deprecated
 public class ScaleAnimatorHandler extends AbsCorrectorAnimatorHandler {
 
     private static final String TAG = ScaleAnimatorHandler.class.getSimpleName();
@@ -35,19 +38,19 @@ public class ScaleAnimatorHandler extends AbsCorrectorAnimatorHandler {
         ImageMatrixCorrector corrector = getCorrector();
         ImageView imageView = corrector.getImageView();
         if(imageView.getDrawable() != null) {
-            Matrix matrix = imageView.getImageMatrix();
-            float[] values = getValues();
-            matrix.getValues(values);
+            corrector.readMatrix();
+            Transform transform = corrector.getTransform();
 
             float sx = (float) animation.getAnimatedValue();
-            sx = corrector.correctAbsolute(Matrix.MSCALE_X, sx) / values[Matrix.MSCALE_X];
+            sx = corrector.correctAbsolute(Matrix.MSCALE_X, sx) / transform.getScaleX();
 
             if (translate) {
-                matrix.postScale(sx, sx, px, py);
+                transform.postScale(sx, sx, px, py);
             } else {
-                matrix.postScale(sx, sx);
+                transform.postScale(sx, sx);
             }
-            corrector.performAbsoluteCorrections();
+            corrector.correctTransform();
+            corrector.writeMatrix();
             imageView.invalidate();
         }
     }
@@ -0,0 +1,322 @@
+package com.bogdwellers.pinchtozoom.animation;
+
+import android.graphics.Matrix;
+import android.view.Choreographer;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.GestureMetrics;
+import com.bogdwellers.pinchtozoom.ImageMatrixCorrector;
+import com.bogdwellers.pinchtozoom.core.Fling;
+import com.bogdwellers.pinchtozoom.core.Transform;
+
+/**
+ * <p>Animates the transform of an <code>ImageMatrixCorrector</code> on vsync using the <code>Choreographer</code>.</p>
+ * <p>An animation moves an anchor point in image coordinates to a target position on screen while interpolating scale and
+ * rotation around it, so zooming around a focus point, panning and zooming to a rectangle are all a single combined animation.
+ * Flings are sampled from a {@link Fling}. Every frame builds the transform from the state captured at the start, corrects it
+ * and writes it into the image matrix once.</p>
+ * <p>A single instance is meant to be reused for all animations of a view; starting an animation or rendering a frame does
+ * not allocate.</p>
+ */
+public class TransformAnimator implements Choreographer.FrameCallback {
+
+    private static final String TAG = TransformAnimator.class.getSimpleName();
+    private static final int IDLE = 0;
+    private static final int TWEEN = 1;
+    private static final int FLING = 2;
+
+    /*
+     * Attributes
+     */
+
+    private ImageMatrixCorrector corrector;
+    private Choreographer choreographer;
+    private Interpolator defaultInterpolator;
+    private Interpolator interpolator;
+    private Fling fling;
+    private Transform inverse;
+    private float[] point;
+    private int state;
+    private long startTime;
+    private long duration;
+    private long elapsed;
+    private float anchorX;
+    private float anchorY;
+    private float fromX;
+    private float fromY;
+    private float toX;
+    private float toY;
+    private float fromScale;
+    private float toScale;
+    private float fromRotation;
+    private float toRotation;
+    private OnAnimationEndListener onAnimationEndListener;
+    private GestureMetrics gestureMetrics;
+
+    /*
+     * Constructor(s)
+     */
+
+    public TransformAnimator(ImageMatrixCorrector corrector) {
+        this.corrector = corrector;
+        this.defaultInterpolator = new AccelerateDecelerateInterpolator();
+        this.inverse = new Transform();
+        this.point = new float[2];
+        this.state = IDLE;
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Sets the listener that is notified when an animation ends or is cancelled.</p>
+     * @param onAnimationEndListener
+     */
+    public void setOnAnimationEndListener(OnAnimationEndListener onAnimationEndListener) {
+        this.onAnimationEndListener = onAnimationEndListener;
+    }
+
+    /**
+     * <p>Sets the metrics that the time spent per frame is recorded to, or <code>null</code> to record nothing.</p>
+     * @param gestureMetrics
+     */
+    public void setGestureMetrics(GestureMetrics gestureMetrics) {
+        this.gestureMetrics = gestureMetrics;
+    }
+
+    /**
+     * <p>Indicates whether an animation is running.</p>
+     * @return
+     */
+    public boolean isRunning() {
+        return state != IDLE;
+    }
+
+    /**
+     * <p>Indicates whether a fling is running.</p>
+     * @return
+     */
+    public boolean isFlinging() {
+        return state == FLING;
+    }
+
+    /**
+     * <p>Returns the time in milliseconds since the first frame of the running animation.</p>
+     * @return
+     */
+    public long getCurrentPlayTime() {
+        return elapsed;
+    }
+
+    /**
+     * <p>Animates to the given scale keeping the given screen point in place.</p>
+     * @param toScale
+     * @param px
+     * @param py
+     * @param duration
+     * @param interpolator may be <code>null</code> for the default interpolator
+     */
+    public void animateZoom(float toScale, float px, float py, long duration, Interpolator interpolator) {
+        Transform transform = captureStart();
+        animate(px, py, px, py, toScale, transform.getRotation(), duration, interpolator);
+    }
+
+    /**
+     * <p>Animates the scale and rotation while moving the image point under screen point <code>(fromX, fromY)</code> to screen point
+     * <code>(toX, toY)</code>.</p>
+     * @param fromX
+     * @param fromY
+     * @param toX
+     * @param toY
+     * @param toScale
+     * @param toRotation in degrees
+     * @param duration
+     * @param interpolator may be <code>null</code> for the default interpolator
+     */
+    public void animate(float fromX, float fromY, float toX, float toY, float toScale, float toRotation, long duration, Interpolator interpolator) {
+        Transform transform = captureStart();
+        if(!transform.invert(inverse)) {
+            return;
+        }
+        point[0] = fromX;
+        point[1] = fromY;
+        inverse.mapPoints(point);
+        start(point[0], point[1], fromX, fromY, toX, toY, toScale, toRotation, duration, interpolator);
+    }
+
+    /**
+     * <p>Animates so that the given rectangle in image coordinates fits and is centered within the view.</p>
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     * @param duration
+     * @param interpolator may be <code>null</code> for the default interpolator
+     */
+    public void animateZoomToRect(float left, float top, float right, float bottom, long duration, Interpolator interpolator) {
+        ImageView imageView = corrector.getImageView();
+        Transform transform = captureStart();
+        float ax = (left + right) / 2f;
+        float ay = (top + bottom) / 2f;
+        point[0] = ax;
+        point[1] = ay;
+        transform.mapPoints(point);
+        float scale = Math.min(imageView.getWidth() / (right - left), imageView.getHeight() / (bottom - top));
+        start(ax, ay, point[0], point[1], imageView.getWidth() / 2f, imageView.getHeight() / 2f, scale, transform.getRotation(), duration, interpolator);
+    }
+
+    /**
+     * <p>Runs the given fling, which must have been started from the current translation.</p>
+     * @param fling
+     */
+    public void fling(Fling fling) {
+        cancel();
+        this.fling = fling;
+        this.duration = fling.getDuration();
+        begin(FLING);
+    }
+
+    /**
+     * <p>Cancels the running animation.</p>
+     */
+    public void cancel() {
+        if(state != IDLE) {
+            getChoreographer().removeFrameCallback(this);
+            end();
+        }
+    }
+
+    /**
+     * <p>Reads the current matrix into the corrector's transform. Animations may be started between gestures, after the matrix
+     * has been set from outside, so the matrix is always read.</p>
+     * @return
+     */
+    private Transform captureStart() {
+        cancel();
+        corrector.invalidateMatrix();
+        corrector.readMatrix();
+        return corrector.getTransform();
+    }
+
+    /**
+     * <p>Starts a tween from the corrector's current transform.</p>
+     */
+    private void start(float anchorX, float anchorY, float fromX, float fromY, float toX, float toY, float toScale, float toRotation, long duration, Interpolator interpolator) {
+        Transform transform = corrector.getTransform();
+        this.anchorX = anchorX;
+        this.anchorY = anchorY;
+        this.fromX = fromX;
+        this.fromY = fromY;
+        this.toX = toX;
+        this.toY = toY;
+        this.fromScale = transform.getScale();
+        this.toScale = corrector.correctAbsolute(Matrix.MSCALE_X, toScale);
+        this.fromRotation = transform.getRotation();
+        // Rotate the shortest way around
+        this.toRotation = fromRotation + (((toRotation - fromRotation) % 360f + 540f) % 360f - 180f);
+        this.duration = duration;
+        this.interpolator = interpolator != null ? interpolator : defaultInterpolator;
+        begin(TWEEN);
+    }
+
+    private void begin(int state) {
+        this.state = state;
+        this.startTime = -1;
+        this.elapsed = 0;
+        getChoreographer().postFrameCallback(this);
+    }
+
+    private void end() {
+        state = IDLE;
+        fling = null;
+        interpolator = null;
+        if(onAnimationEndListener != null) {
+            onAnimationEndListener.onAnimationEnd(this);
+        }
+    }
+
+    private Choreographer getChoreographer() {
+        if(choreographer == null) {
+            choreographer = Choreographer.getInstance();
+        }
+        return choreographer;
+    }
+
+    /**
+     * <p>Applies the animation at the given time to the corrector's transform.</p>
+     * @param elapsed
+     */
+    private void apply(long elapsed) {
+        Transform transform = corrector.getTransform();
+        if(state == FLING) {
+            transform.setTranslate(fling.getX(elapsed), fling.getY(elapsed));
+        } else {
+            float fraction = duration > 0 ? Math.min(1f, (float) elapsed / duration) : 1f;
+            fraction = interpolator.getInterpolation(fraction);
+            float scale = fromScale + (toScale - fromScale) * fraction;
+            float rotation = fromRotation + (toRotation - fromRotation) * fraction;
+            transform.reset();
+            transform.postTranslate(-anchorX, -anchorY);
+            transform.postScale(scale, scale);
+            if(rotation != 0f) {
+                transform.postRotate(rotation);
+            }
+            transform.postTranslate(fromX + (toX - fromX) * fraction, fromY + (toY - fromY) * fraction);
+            corrector.correctTransform();
+        }
+        corrector.writeMatrix();
+        if(!corrector.isLayerTransformActive()) {
+            corrector.getImageView().invalidate();
+        }
+    }
+
+    /*
+     * Interface implementations
+     */
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if(state == IDLE) {
+            return;
+        }
+        long frameTime = frameTimeNanos / 1000000L;
+        if(startTime < 0) {
+            startTime = frameTime;
+        }
+        elapsed = Math.min(frameTime - startTime, duration);
+        if(corrector.getImageView() == null || corrector.getImageView().getDrawable() == null) {
+            end();
+            return;
+        }
+        if(gestureMetrics != null) {
+            long start = System.nanoTime();
+            apply(elapsed);
+            gestureMetrics.recordAnimation(System.nanoTime() - start);
+        } else {
+            apply(elapsed);
+        }
+        if(elapsed >= duration) {
+            end();
+        } else {
+            getChoreographer().postFrameCallback(this);
+        }
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>Listener that is notified when an animation ends or is cancelled.</p>
+     */
+    public interface OnAnimationEndListener {
+
+        /**
+         * @param animator
+         */
+        void onAnimationEnd(TransformAnimator animator);
+    }
+}
@@ -0,0 +1,407 @@
+package com.bogdwellers.pinchtozoom.bitmap;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.util.BitmapUtils;
+import com.bogdwellers.pinchtozoom.util.ImageViewUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>Keeps the memory of the bitmaps that <code>BitmapLoader</code>s bind to zoomable views within a budget.</p>
+ * <p>The budget tracks the bytes of the bitmap every view shows. Decodes are adjusted to it: a JPEG is decoded as
+ * <code>RGB_565</code> instead of <code>ARGB_8888</code> when its pixels would not fit in the remaining budget, and a single
+ * image is downsampled until it fits in its share of the budget. When a new bitmap takes the usage beyond the budget, the views
+ * that are least recently loaded and out of sight are released.</p>
+ * <p>A released view keeps a thumbnail at an eighth of the resolution in place of its bitmap, bound with the same transform, and
+ * its loader reloads the bitmap as soon as the view is drawn on screen again. Register the budget with
+ * <code>Context.registerComponentCallbacks()</code> so it releases views when the system is low on memory as well: the views out
+ * of sight while the app runs low or its UI is hidden, and all views once the app is in the background.</p>
+ * <p>All public methods, except for {@link #adjustOptions(BitmapFactory.Options)}, must be called from the UI thread.</p>
+ */
+public class BitmapBudget implements ComponentCallbacks2 {
+
+    private static final int DEFAULT_HEAP_FRACTION = 4;
+    private static final int DEFAULT_IMAGE_SHARE = 4;
+    private static final int THUMBNAIL_SAMPLE_SIZE = 8;
+
+    /*
+     * Attributes
+     */
+
+    private long maxBytes;
+    private long maxImageBytes;
+    private Map<ImageView, Entry> entries;
+    private Rect visibleRect;
+    private volatile long usedBytes;
+    private long sequence;
+    private int releaseCount;
+    private int restoreCount;
+
+    /*
+     * Constructor(s)
+     */
+
+    /**
+     * <p>Creates a budget of a quarter of the heap.</p>
+     */
+    public BitmapBudget() {
+        this(Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION);
+    }
+
+    /**
+     *
+     * @param maxBytes the maximum number of bytes of all tracked bitmaps together
+     */
+    public BitmapBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.maxImageBytes = maxBytes / DEFAULT_IMAGE_SHARE;
+        this.entries = new WeakHashMap<>();
+        this.visibleRect = new Rect();
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Returns the maximum number of bytes of all tracked bitmaps together.</p>
+     * @return
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * <p>Returns the maximum number of bytes of a single bitmap.</p>
+     * @return
+     */
+    public long getMaxImageBytes() {
+        return maxImageBytes;
+    }
+
+    /**
+     * <p>Sets the maximum number of bytes of a single bitmap; larger images are downsampled. Defaults to a quarter of the
+     * budget.</p>
+     * @param maxImageBytes
+     */
+    public void setMaxImageBytes(long maxImageBytes) {
+        this.maxImageBytes = maxImageBytes;
+    }
+
+    /**
+     * <p>Returns the number of bytes of the bitmaps the tracked views show.</p>
+     * @return
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * <p>Returns the number of tracked views.</p>
+     * @return
+     */
+    public int getViewCount() {
+        return entries.size();
+    }
+
+    /**
+     * <p>Returns the number of tracked views that have been released and show a thumbnail.</p>
+     * @return
+     */
+    public int getReleasedViewCount() {
+        int count = 0;
+        for(Entry entry: entries.values()) {
+            if(entry.released) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * <p>Returns the number of times a view has been released.</p>
+     * @return
+     */
+    public int getReleaseCount() {
+        return releaseCount;
+    }
+
+    /**
+     * <p>Returns the number of times a released view has been reloaded.</p>
+     * @return
+     */
+    public int getRestoreCount() {
+        return restoreCount;
+    }
+
+    /**
+     * <p>Registers the source a loader is loading into the view, so the view can be reloaded after it has been released.</p>
+     * @param imageView
+     * @param loader
+     * @param source
+     * @param maxScale
+     * @param maxScaleRelative
+     */
+    void register(ImageView imageView, BitmapLoader loader, BitmapLoader.Source source, float maxScale, boolean maxScaleRelative) {
+        Entry entry = entries.get(imageView);
+        if(entry == null) {
+            entry = new Entry(imageView);
+            entries.put(imageView, entry);
+        } else {
+            entry.stopWaiting(imageView);
+        }
+        entry.loader = loader;
+        entry.source = source;
+        entry.maxScale = maxScale;
+        entry.maxScaleRelative = maxScaleRelative;
+        entry.released = false;
+    }
+
+    /**
+     * <p>Tracks the bitmap a loader has bound to the view and releases other views if the budget has been exceeded.</p>
+     * @param imageView
+     * @param bitmap
+     */
+    void track(ImageView imageView, Bitmap bitmap) {
+        Entry entry = entries.get(imageView);
+        if(entry == null) {
+            return;
+        }
+        entry.bitmap = bitmap;
+        entry.bytes = BitmapUtils.getAllocationByteCount(bitmap);
+        entry.sequence = ++sequence;
+        updateUsedBytes();
+        trimToSize(maxBytes, false);
+    }
+
+    /**
+     * <p>Adjusts the decode options of an image whose bounds have been decoded into them: chooses the bitmap configuration and
+     * raises the sample size until the image fits in its share of the budget. May be called from any thread.</p>
+     * @param options
+     */
+    public void adjustOptions(BitmapFactory.Options options) {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        long pixels = (long) (options.outWidth / sampleSize) * (options.outHeight / sampleSize);
+        if(options.inPreferredConfig == Bitmap.Config.ARGB_8888 && isOpaque(options.outMimeType)
+                && usedBytes + pixels * 4 > maxBytes) {
+            // Opaque images lose next to nothing at half the bytes
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        }
+        int bytesPerPixel = options.inPreferredConfig == Bitmap.Config.RGB_565 ? 2 : 4;
+        while(pixels * bytesPerPixel > maxImageBytes && pixels > 1) {
+            sampleSize *= 2;
+            pixels = (long) (options.outWidth / sampleSize) * (options.outHeight / sampleSize);
+        }
+        options.inSampleSize = sampleSize;
+    }
+
+    /**
+     * <p>Releases the views that are out of sight, least recently loaded first, until the usage is within the given size.</p>
+     * @param size
+     * @param all whether views on screen are released as well
+     */
+    public void trimToSize(long size, boolean all) {
+        while(usedBytes > size) {
+            ImageView imageView = null;
+            Entry oldest = null;
+            for(Map.Entry<ImageView, Entry> e: entries.entrySet()) {
+                Entry entry = e.getValue();
+                if(!entry.released && entry.bytes > 0 && (oldest == null || entry.sequence < oldest.sequence)
+                        && (all || !isOnScreen(e.getKey()))) {
+                    imageView = e.getKey();
+                    oldest = entry;
+                }
+            }
+            if(oldest == null) {
+                break;
+            }
+            release(imageView, oldest);
+        }
+    }
+
+    /**
+     * <p>Replaces the bitmap of the view with a thumbnail and reloads it once the view is on screen again.</p>
+     * @param imageView
+     * @param entry
+     */
+    private void release(ImageView imageView, Entry entry) {
+        Bitmap bitmap = entry.bitmap;
+        entry.bitmap = null;
+        entry.bytes = 0;
+        if(bitmap != null && isShowing(imageView, bitmap)) {
+            entry.released = true;
+            entry.loader.cancel(imageView);
+            Bitmap thumbnail = Bitmap.createScaledBitmap(bitmap,
+                    Math.max(1, bitmap.getWidth() / THUMBNAIL_SAMPLE_SIZE),
+                    Math.max(1, bitmap.getHeight() / THUMBNAIL_SAMPLE_SIZE), true);
+            ImageViewUtils.updateImageViewMatrix(imageView, thumbnail);
+            imageView.setImageBitmap(thumbnail);
+            entry.waitForScreen(imageView);
+            releaseCount++;
+        }
+        updateUsedBytes();
+    }
+
+    /**
+     * <p>Reloads a released view.</p>
+     * @param imageView
+     * @param entry
+     */
+    private void restore(ImageView imageView, Entry entry) {
+        restoreCount++;
+        entry.released = false;
+        entry.loader.reload(imageView, entry.source, entry.maxScale, entry.maxScaleRelative);
+    }
+
+    /**
+     * <p>Sums the bytes of the tracked bitmaps the views still show, dropping those they don't.</p>
+     */
+    private void updateUsedBytes() {
+        long bytes = 0;
+        for(Iterator<Map.Entry<ImageView, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ImageView, Entry> e = it.next();
+            Entry entry = e.getValue();
+            if(entry.bitmap != null && !isShowing(e.getKey(), entry.bitmap)) {
+                // The view's image has been replaced or removed
+                entry.bitmap = null;
+                entry.bytes = 0;
+            }
+            bytes += entry.bytes;
+        }
+        usedBytes = bytes;
+    }
+
+    /**
+     * <p>Indicates whether any part of the view is visible on screen.</p>
+     * @param imageView
+     * @return
+     */
+    private boolean isOnScreen(ImageView imageView) {
+        return imageView.isShown() && imageView.getGlobalVisibleRect(visibleRect);
+    }
+
+    @Override
+    public String toString() {
+        updateUsedBytes();
+        return "BitmapBudget{used=" + usedBytes + ", max=" + maxBytes + ", views=" + entries.size()
+                + ", released=" + getReleasedViewCount() + ", releases=" + releaseCount + ", restores=" + restoreCount + "}";
+    }
+
+    /*
+     * Interface implementations
+     */
+
+    @Override
+    public void onTrimMemory(int level) {
+        updateUsedBytes();
+        if(level >= TRIM_MEMORY_BACKGROUND) {
+            // The app is likely to be killed; keep nothing
+            trimToSize(0, true);
+        } else if(level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Includes TRIM_MEMORY_UI_HIDDEN
+            trimToSize(0, false);
+        } else if(level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            trimToSize(maxBytes / 2, false);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * <p>Indicates whether an image of the given MIME type never has an alpha channel.</p>
+     * @param mimeType
+     * @return
+     */
+    private static boolean isOpaque(String mimeType) {
+        return "image/jpeg".equals(mimeType);
+    }
+
+    /**
+     * <p>Indicates whether the view shows the given bitmap.</p>
+     * @param imageView
+     * @param bitmap
+     * @return
+     */
+    private static boolean isShowing(ImageView imageView, Bitmap bitmap) {
+        Drawable drawable = imageView.getDrawable();
+        return drawable instanceof BitmapDrawable && ((BitmapDrawable) drawable).getBitmap() == bitmap;
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>The tracked state of a single view. It refers to the view weakly, as it is the value of a weak map keyed by it.</p>
+     */
+    private class Entry implements ViewTreeObserver.OnPreDrawListener {
+
+        private WeakReference<ImageView> imageViewRef;
+        private BitmapLoader loader;
+        private BitmapLoader.Source source;
+        private float maxScale;
+        private boolean maxScaleRelative;
+        private Bitmap bitmap;
+        private int bytes;
+        private long sequence;
+        private boolean released;
+        private ViewTreeObserver waitingObserver;
+
+        public Entry(ImageView imageView) {
+            this.imageViewRef = new WeakReference<>(imageView);
+        }
+
+        public void waitForScreen(ImageView imageView) {
+            stopWaiting(imageView);
+            waitingObserver = imageView.getViewTreeObserver();
+            waitingObserver.addOnPreDrawListener(this);
+        }
+
+        public void stopWaiting(ImageView imageView) {
+            if(waitingObserver != null) {
+                ViewTreeObserver observer = waitingObserver.isAlive() ? waitingObserver : imageView.getViewTreeObserver();
+                observer.removeOnPreDrawListener(this);
+                waitingObserver = null;
+            }
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            ImageView imageView = imageViewRef.get();
+            if(imageView == null) {
+                if(waitingObserver.isAlive()) {
+                    waitingObserver.removeOnPreDrawListener(this);
+                }
+                waitingObserver = null;
+            } else if(isOnScreen(imageView)) {
+                stopWaiting(imageView);
+                restore(imageView, this);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package com.bogdwellers.pinchtozoom.bitmap;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.ImageViewerCorrector;
+import com.bogdwellers.pinchtozoom.util.BitmapUtils;
+import com.bogdwellers.pinchtozoom.util.ImageViewUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Decodes bitmaps on a background executor at a sample size that matches the size of the target <code>ImageView</code>.</p>
+ * <p>The bounds of the image are read first. The sample size is the largest power of two at which the image still has one
+ * bitmap pixel per screen pixel at the maximum scale. Loading into a view cancels the previous load for that view, and loads
+ * are cancelled when the view is detached from its window. The decoded bitmap is bound using
+ * {@link ImageViewUtils#updateImageViewMatrix(ImageView, Bitmap)} so the viewport doesn't jump when an image is replaced.</p>
+ * <p>All public methods must be called from the UI thread.</p>
+ */
+public class BitmapLoader {
+
+    private static final String TAG = BitmapLoader.class.getSimpleName();
+    private static final int DEFAULT_THREAD_COUNT = 2;
+
+    /**
+     * Shared by all loaders that don't specify their own executor
+     */
+    private static ExecutorService defaultExecutor;
+
+    /*
+     * Attributes
+     */
+
+    private Executor executor;
+    private Handler handler;
+    private Bitmap.Config preferredConfig;
+    private Map<ImageView, LoadTask> tasks;
+    private Set<ImageView> reloads;
+    private Set<Bitmap> bitmaps;
+    private OnBitmapLoadedListener onBitmapLoadedListener;
+    private BitmapBudget bitmapBudget;
+    private BitmapPool bitmapPool;
+    private List<Bitmap> retiredBitmaps;
+    private int drawnRetiredCount;
+    private boolean retireScheduled;
+    private Choreographer.FrameCallback retireFrameCallback;
+    private Runnable retireRunnable;
+
+    /*
+     * Constructor(s)
+     */
+
+    public BitmapLoader() {
+        this(getDefaultExecutor());
+    }
+
+    public BitmapLoader(Executor executor) {
+        this.executor = executor;
+        this.handler = new Handler(Looper.getMainLooper());
+        this.preferredConfig = Bitmap.Config.ARGB_8888;
+        this.tasks = new WeakHashMap<>();
+        this.reloads = Collections.newSetFromMap(new WeakHashMap<ImageView, Boolean>());
+        this.bitmaps = Collections.newSetFromMap(new WeakHashMap<Bitmap, Boolean>());
+        this.retiredBitmaps = new ArrayList<>();
+        this.retireFrameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                // Runs before this frame is drawn; the bitmaps retired so far are free once it has been
+                drawnRetiredCount = retiredBitmaps.size();
+                handler.post(retireRunnable);
+            }
+        };
+        this.retireRunnable = new Runnable() {
+            @Override
+            public void run() {
+                poolRetiredBitmaps();
+            }
+        };
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Returns the preferred bitmap configuration.</p>
+     * @return
+     */
+    public Bitmap.Config getPreferredConfig() {
+        return preferredConfig;
+    }
+
+    /**
+     * <p>Sets the preferred bitmap configuration.</p>
+     * @param preferredConfig
+     */
+    public void setPreferredConfig(Bitmap.Config preferredConfig) {
+        this.preferredConfig = preferredConfig;
+    }
+
+    /**
+     * <p>Sets the listener that is notified when a bitmap has been bound to its view.</p>
+     * @param onBitmapLoadedListener
+     */
+    public void setOnBitmapLoadedListener(OnBitmapLoadedListener onBitmapLoadedListener) {
+        this.onBitmapLoadedListener = onBitmapLoadedListener;
+    }
+
+    /**
+     * <p>Returns the budget that keeps track of the memory of the loaded bitmaps, or <code>null</code> if there is none.</p>
+     * @return
+     */
+    public BitmapBudget getBitmapBudget() {
+        return bitmapBudget;
+    }
+
+    /**
+     * <p>Sets the budget that keeps track of the memory of the loaded bitmaps. Decodes then use the bitmap configuration and
+     * sample size the budget allows, and the budget reloads bitmaps it has released through this loader.</p>
+     * @param bitmapBudget
+     */
+    public void setBitmapBudget(BitmapBudget bitmapBudget) {
+        this.bitmapBudget = bitmapBudget;
+    }
+
+    /**
+     * <p>Returns the pool that decodes reuse bitmaps from, or <code>null</code> if there is none.</p>
+     * @return
+     */
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * <p>Sets the pool that decodes reuse bitmaps from. Bitmaps of this loader that a view no longer shows, because they have
+     * been replaced or released through {@link #release(ImageView)}, are put into it once the next frame has been drawn, so they
+     * must not be kept elsewhere, e.g. by the listener.</p>
+     * @param bitmapPool
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * <p>Loads the source into the view using the maximum scale settings of the given corrector.</p>
+     * @param imageView
+     * @param source
+     * @param corrector
+     */
+    public void load(ImageView imageView, Source source, ImageViewerCorrector corrector) {
+        load(imageView, source, corrector.getMaxScale(), corrector.isMaxScaleRelative());
+    }
+
+    /**
+     * <p>Loads the source into the view so that it has full detail up to the given maximum scale.</p>
+     * @param imageView
+     * @param source
+     * @param maxScale
+     * @param maxScaleRelative whether the maximum scale is relative to the inner fit scale
+     */
+    public void load(ImageView imageView, Source source, float maxScale, boolean maxScaleRelative) {
+        if(bitmapBudget != null) {
+            bitmapBudget.register(imageView, this, source, maxScale, maxScaleRelative);
+        }
+        startLoad(imageView, source, maxScale, maxScaleRelative);
+    }
+
+    /**
+     * <p>Loads the source into a view again after its bitmap has been released. The view keeps its transform, so the listener
+     * is not notified.</p>
+     * @param imageView
+     * @param source
+     * @param maxScale
+     * @param maxScaleRelative
+     */
+    void reload(ImageView imageView, Source source, float maxScale, boolean maxScaleRelative) {
+        startLoad(imageView, source, maxScale, maxScaleRelative);
+        reloads.add(imageView);
+    }
+
+    /**
+     * <p>Starts decoding the source for the view, cancelling the previous load for that view.</p>
+     * @param imageView
+     * @param source
+     * @param maxScale
+     * @param maxScaleRelative
+     */
+    protected void startLoad(final ImageView imageView, Source source, float maxScale, boolean maxScaleRelative) {
+        cancel(imageView);
+        final LoadTask task = new LoadTask(imageView, source, maxScale, maxScaleRelative);
+        tasks.put(imageView, task);
+        if(imageView.getWidth() > 0 && imageView.getHeight() > 0) {
+            task.start();
+        } else {
+            // Wait for the view to be laid out
+            imageView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    if(right - left > 0 && bottom - top > 0) {
+                        v.removeOnLayoutChangeListener(this);
+                        if(tasks.get(imageView) == task) {
+                            task.start();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * <p>Cancels the pending load for the given view.</p>
+     * @param imageView
+     */
+    public void cancel(ImageView imageView) {
+        reloads.remove(imageView);
+        LoadTask task = tasks.remove(imageView);
+        if(task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * <p>Cancels the pending load for the given view and removes its image. If the image was loaded by this loader, its bitmap
+     * goes into the pool for the next decode. Use it for views that are being recycled, such as destroyed pages.</p>
+     * @param imageView
+     */
+    public void release(ImageView imageView) {
+        cancel(imageView);
+        Drawable drawable = imageView.getDrawable();
+        imageView.setImageDrawable(null);
+        recycle(drawable);
+    }
+
+    /**
+     * <p>Indicates whether a load is pending for the given view.</p>
+     * @param imageView
+     * @return
+     */
+    public boolean isLoading(ImageView imageView) {
+        return tasks.containsKey(imageView);
+    }
+
+    /**
+     * <p>Binds the bitmap to the view while keeping the visible part of the image in place.</p>
+     * @param imageView
+     * @param bitmap
+     */
+    protected void bind(ImageView imageView, Bitmap bitmap) {
+        Drawable drawable = imageView.getDrawable();
+        if(drawable != null) {
+            ImageViewUtils.updateImageViewMatrix(imageView, bitmap);
+        }
+        imageView.setImageBitmap(bitmap);
+        bitmaps.add(bitmap);
+        recycle(drawable);
+        if(bitmapBudget != null) {
+            bitmapBudget.track(imageView, bitmap);
+        }
+    }
+
+    /**
+     * <p>Puts the bitmap of a drawable that is no longer shown into the pool, if this loader has loaded it. The last frame that
+     * was drawn may still draw the bitmap, so it only goes into the pool once the next frame has been drawn.</p>
+     * @param drawable
+     */
+    private void recycle(Drawable drawable) {
+        if(drawable instanceof BitmapDrawable) {
+            Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+            if(bitmaps.remove(bitmap) && bitmapPool != null) {
+                retiredBitmaps.add(bitmap);
+                if(!retireScheduled) {
+                    retireScheduled = true;
+                    Choreographer.getInstance().postFrameCallback(retireFrameCallback);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Puts the bitmaps that were retired before the last frame into the pool.</p>
+     */
+    private void poolRetiredBitmaps() {
+        for(int i = 0; i < drawnRetiredCount; i++) {
+            Bitmap bitmap = retiredBitmaps.get(i);
+            if(bitmapPool != null) {
+                bitmapPool.put(bitmap);
+            }
+        }
+        retiredBitmaps.subList(0, drawnRetiredCount).clear();
+        drawnRetiredCount = 0;
+        retireScheduled = !retiredBitmaps.isEmpty();
+        if(retireScheduled) {
+            Choreographer.getInstance().postFrameCallback(retireFrameCallback);
+        }
+    }
+
+    /**
+     * <p>Called on the UI thread when a load has decoded its bitmap. Binds it and notifies the listener.</p>
+     * @param imageView
+     * @param bitmap
+     */
+    protected void onBitmapDecoded(ImageView imageView, Bitmap bitmap) {
+        bind(imageView, bitmap);
+        if(!reloads.remove(imageView) && onBitmapLoadedListener != null) {
+            onBitmapLoadedListener.onBitmapLoaded(imageView, bitmap);
+        }
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * <p>Returns the sample size for an image of the given dimensions so it keeps full detail in a view of the given dimensions
+     * up to the maximum scale.</p>
+     * @param width
+     * @param height
+     * @param viewWidth
+     * @param viewHeight
+     * @param maxScale
+     * @param maxScaleRelative
+     * @return
+     */
+    public static final int calculateInSampleSize(int width, int height, int viewWidth, int viewHeight, float maxScale, boolean maxScaleRelative) {
+        float fitScale = Math.min((float) viewWidth / width, (float) viewHeight / height);
+        float scale = maxScaleRelative ? fitScale * maxScale : Math.max(maxScale, fitScale);
+        return BitmapUtils.sampleSizeForScale(scale);
+    }
+
+    /**
+     * <p>Returns the shared default executor.</p>
+     * @return
+     */
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if(defaultExecutor == null) {
+            defaultExecutor = Executors.newFixedThreadPool(DEFAULT_THREAD_COUNT);
+        }
+        return defaultExecutor;
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>Provides the image data; it is opened twice, once for the bounds and once for the pixels.</p>
+     */
+    public interface Source {
+
+        /**
+         * <p>Opens a new stream on the image data. May be called from any thread.</p>
+         * @return
+         * @throws IOException
+         */
+        InputStream openInputStream() throws IOException;
+    }
+
+    /**
+     * <p>Listener that is notified when a bitmap has been bound to its view.</p>
+     */
+    public interface OnBitmapLoadedListener {
+
+        /**
+         * @param imageView
+         * @param bitmap
+         */
+        void onBitmapLoaded(ImageView imageView, Bitmap bitmap);
+    }
+
+    /**
+     * <p>Decodes a source for a single view. It holds the view weakly, so a task that is still queued or decoding doesn't keep
+     * a discarded view alive.</p>
+     */
+    private class LoadTask implements Runnable, View.OnAttachStateChangeListener {
+
+        private WeakReference<ImageView> imageViewReference;
+        private Source source;
+        private float maxScale;
+        private boolean maxScaleRelative;
+        private int viewWidth;
+        private int viewHeight;
+        private volatile boolean cancelled;
+
+        public LoadTask(ImageView imageView, Source source, float maxScale, boolean maxScaleRelative) {
+            this.imageViewReference = new WeakReference<>(imageView);
+            this.source = source;
+            this.maxScale = maxScale;
+            this.maxScaleRelative = maxScaleRelative;
+        }
+
+        public void start() {
+            ImageView imageView = imageViewReference.get();
+            if(imageView == null) {
+                return;
+            }
+            viewWidth = imageView.getWidth();
+            viewHeight = imageView.getHeight();
+            imageView.addOnAttachStateChangeListener(this);
+            executor.execute(this);
+        }
+
+        public void cancel() {
+            cancelled = true;
+            ImageView imageView = imageViewReference.get();
+            if(imageView != null) {
+                imageView.removeOnAttachStateChangeListener(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            BitmapPool pool = bitmapPool;
+            try {
+                if(!cancelled) {
+                    bitmap = load(pool);
+                }
+            } catch(IOException e) {
+                Log.e(TAG, "Unable to decode bitmap", e);
+            } catch(RuntimeException e) {
+                Log.e(TAG, "Unable to decode bitmap", e);
+            } catch(OutOfMemoryError e) {
+                Log.e(TAG, "Out of memory decoding bitmap", e);
+            } finally {
+                finish(bitmap, pool);
+            }
+        }
+
+        /**
+         * <p>Reads the bounds and decodes the bitmap.</p>
+         * @param pool
+         * @return the bitmap, or <code>null</code> if the load was cancelled or the source can't be decoded
+         * @throws IOException
+         */
+        private Bitmap load(BitmapPool pool) throws IOException {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decode(options);
+            if(cancelled || options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, viewWidth, viewHeight, maxScale, maxScaleRelative);
+            options.inJustDecodeBounds = false;
+            options.inPreferredConfig = preferredConfig;
+            BitmapBudget budget = bitmapBudget;
+            if(budget != null) {
+                budget.adjustOptions(options);
+            }
+            if(pool != null) {
+                pool.prepareOptions(options,
+                        BitmapUtils.ceilDiv(options.outWidth, options.inSampleSize),
+                        BitmapUtils.ceilDiv(options.outHeight, options.inSampleSize));
+            }
+            return decodeInto(options, pool);
+        }
+
+        /**
+         * <p>Clears the task on the UI thread, whether it succeeded or not, and binds the bitmap if the view still waits for it.</p>
+         * @param bitmap the decoded bitmap, or <code>null</code> if there is none
+         * @param pool
+         */
+        private void finish(final Bitmap bitmap, final BitmapPool pool) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ImageView imageView = imageViewReference.get();
+                    boolean current = imageView != null && tasks.get(imageView) == LoadTask.this;
+                    if(current) {
+                        tasks.remove(imageView);
+                        imageView.removeOnAttachStateChangeListener(LoadTask.this);
+                    }
+                    if(bitmap == null) {
+                        if(current) {
+                            reloads.remove(imageView);
+                        }
+                    } else if(current && !cancelled) {
+                        onBitmapDecoded(imageView, bitmap);
+                    } else {
+                        giveBack(bitmap, pool);
+                    }
+                }
+            });
+        }
+
+        /**
+         * <p>Decodes into the options' <code>inBitmap</code> if there is one, and into a new bitmap if it doesn't fit.</p>
+         * @param options
+         * @param pool
+         * @return
+         * @throws IOException
+         */
+        private Bitmap decodeInto(BitmapFactory.Options options, BitmapPool pool) throws IOException {
+            if(options.inBitmap != null) {
+                try {
+                    return decode(options);
+                } catch(IllegalArgumentException e) {
+                    // The pooled bitmap doesn't fit after all
+                    pool.put(options.inBitmap);
+                    options.inBitmap = null;
+                }
+            }
+            return decode(options);
+        }
+
+        private void giveBack(Bitmap bitmap, BitmapPool pool) {
+            if(pool != null) {
+                pool.put(bitmap);
+            }
+        }
+
+        private Bitmap decode(BitmapFactory.Options options) throws IOException {
+            InputStream is = source.openInputStream();
+            try {
+                return BitmapFactory.decodeStream(is, null, options);
+            } finally {
+                is.close();
+            }
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            // The view is being recycled
+            BitmapLoader.this.cancel((ImageView) v);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.bogdwellers.pinchtozoom.bitmap;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import com.bogdwellers.pinchtozoom.util.BitmapUtils;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>A pool of bitmaps that are no longer shown, which decodes reuse through <code>BitmapFactory.Options.inBitmap</code>
+ * instead of allocating new ones.</p>
+ * <p>Bitmaps are kept in buckets by their allocated byte count. Before API level 19 a bitmap can only be reused for an image of exactly
+ * its dimensions decoded at sample size 1, from then on for any image with as many bytes or fewer. To not waste large bitmaps on
+ * small images, a bitmap is only reused for images of at least half its byte count. The pool is bounded by a number of bytes and
+ * drops the bitmaps it received longest ago first.</p>
+ * <p>Set it on a <code>BitmapLoader</code> or a <code>TileDrawable</code>, which put the bitmaps they no longer show into it
+ * and decode into the bitmaps they take from it. Register it with <code>Context.registerComponentCallbacks()</code> to empty it
+ * when memory runs low. All methods are thread safe.</p>
+ */
+public class BitmapPool implements ComponentCallbacks2 {
+
+    private static final int DEFAULT_HEAP_FRACTION = 8;
+    private static final int MAX_SIZE_MULTIPLE = 2;
+
+    /*
+     * Attributes
+     */
+
+    private long maxSize;
+    private long size;
+    private TreeMap<Integer, ArrayDeque<Bitmap>> buckets;
+    private ArrayDeque<Bitmap> order;
+    private int hitCount;
+    private int missCount;
+    private int putCount;
+    private int evictionCount;
+
+    /*
+     * Constructor(s)
+     */
+
+    /**
+     * <p>Creates a pool of an eighth of the heap.</p>
+     */
+    public BitmapPool() {
+        this(Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION);
+    }
+
+    /**
+     *
+     * @param maxSize the maximum number of bytes of all pooled bitmaps together
+     */
+    public BitmapPool(long maxSize) {
+        this.maxSize = maxSize;
+        this.buckets = new TreeMap<>();
+        this.order = new ArrayDeque<>();
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Puts a bitmap that is no longer used into the pool. The caller must not use it anymore afterwards.</p>
+     * @param bitmap
+     * @return <code>true</code> if the bitmap was pooled; immutable, recycled and oversized bitmaps are not
+     */
+    public synchronized boolean put(Bitmap bitmap) {
+        if(bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) {
+            return false;
+        }
+        int bytes = BitmapUtils.getAllocationByteCount(bitmap);
+        if(bytes > maxSize || order.contains(bitmap)) {
+            return false;
+        }
+        ArrayDeque<Bitmap> bucket = buckets.get(bytes);
+        if(bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(bytes, bucket);
+        }
+        bucket.addLast(bitmap);
+        order.addLast(bitmap);
+        size += bytes;
+        putCount++;
+        trimToSize(maxSize);
+        return true;
+    }
+
+    /**
+     * <p>Takes a bitmap from the pool that <code>BitmapFactory</code> can decode an image of the given dimensions and
+     * configuration into, at the given sample size.</p>
+     * @param width
+     * @param height
+     * @param config
+     * @param sampleSize
+     * @return the bitmap, or <code>null</code> if there is none
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config, int sampleSize) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return take(width, height, config, false);
+        }
+        return sampleSize == 1 ? take(width, height, config, true) : miss();
+    }
+
+    /**
+     * <p>Takes a bitmap of exactly the given dimensions and configuration from the pool. A <code>BitmapRegionDecoder</code>
+     * doesn't resize the bitmap it decodes into, so region decodes need an exact match.</p>
+     * @param width
+     * @param height
+     * @param config
+     * @return the bitmap, or <code>null</code> if there is none
+     */
+    public Bitmap getExact(int width, int height, Bitmap.Config config) {
+        return take(width, height, config, true);
+    }
+
+    /**
+     * <p>Sets a pooled bitmap as the <code>inBitmap</code> of the options for a <code>BitmapFactory</code> decode of an image
+     * of the given decoded dimensions. The sample size and preferred configuration must be set already. The options decode a
+     * mutable bitmap either way, so the result can be pooled later.</p>
+     * <p>Decoding into an unsuitable bitmap throws an <code>IllegalArgumentException</code>; put the <code>inBitmap</code> back
+     * and decode again without it then.</p>
+     * @param options
+     * @param width
+     * @param height
+     * @return <code>true</code> if a pooled bitmap was set
+     */
+    public boolean prepareOptions(BitmapFactory.Options options, int width, int height) {
+        options.inMutable = true;
+        options.inBitmap = get(width, height, options.inPreferredConfig, Math.max(1, options.inSampleSize));
+        return options.inBitmap != null;
+    }
+
+    /**
+     * <p>Sets a pooled bitmap as the <code>inBitmap</code> of the options for a <code>BitmapRegionDecoder</code> decode of a
+     * region of the given decoded dimensions.</p>
+     * @param options
+     * @param width
+     * @param height
+     * @return <code>true</code> if a pooled bitmap was set
+     */
+    public boolean prepareRegionOptions(BitmapFactory.Options options, int width, int height) {
+        options.inMutable = true;
+        options.inBitmap = getExact(width, height, options.inPreferredConfig);
+        return options.inBitmap != null;
+    }
+
+    /**
+     * <p>Drops the bitmaps received longest ago until the pool is within the given number of bytes.</p>
+     * @param size
+     */
+    public synchronized void trimToSize(long size) {
+        while(this.size > size && !order.isEmpty()) {
+            Bitmap bitmap = order.removeFirst();
+            int bytes = BitmapUtils.getAllocationByteCount(bitmap);
+            ArrayDeque<Bitmap> bucket = buckets.get(bytes);
+            bucket.remove(bitmap);
+            if(bucket.isEmpty()) {
+                buckets.remove(bytes);
+            }
+            this.size -= bytes;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * <p>Drops all bitmaps.</p>
+     */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * <p>Returns the number of bytes of the pooled bitmaps.</p>
+     * @return
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * <p>Returns the maximum number of bytes of the pooled bitmaps.</p>
+     * @return
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * <p>Returns the number of pooled bitmaps.</p>
+     * @return
+     */
+    public synchronized int getCount() {
+        return order.size();
+    }
+
+    /**
+     * <p>Returns the number of times a bitmap was taken from the pool.</p>
+     * @return
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * <p>Returns the number of times no suitable bitmap was in the pool.</p>
+     * @return
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * <p>Returns the number of bitmaps that were put into the pool.</p>
+     * @return
+     */
+    public synchronized int getPutCount() {
+        return putCount;
+    }
+
+    /**
+     * <p>Returns the number of bitmaps that were dropped from the pool to stay within its size.</p>
+     * @return
+     */
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * <p>Takes the smallest bitmap that fits from the pool.</p>
+     * @param width
+     * @param height
+     * @param config
+     * @param exact whether the bitmap must have exactly the given dimensions
+     * @return
+     */
+    private synchronized Bitmap take(int width, int height, Bitmap.Config config, boolean exact) {
+        int bytes = width * height * BitmapUtils.getBytesPerPixel(config);
+        Map<Integer, ArrayDeque<Bitmap>> candidates = exact
+                ? buckets.subMap(bytes, true, bytes, true)
+                : buckets.subMap(bytes, true, bytes * MAX_SIZE_MULTIPLE, true);
+        for(Map.Entry<Integer, ArrayDeque<Bitmap>> e: candidates.entrySet()) {
+            ArrayDeque<Bitmap> bucket = e.getValue();
+            for(Iterator<Bitmap> it = bucket.iterator(); it.hasNext(); ) {
+                Bitmap bitmap = it.next();
+                if(bitmap.getConfig() == config && (!exact || (bitmap.getWidth() == width && bitmap.getHeight() == height))) {
+                    it.remove();
+                    if(bucket.isEmpty()) {
+                        buckets.remove(e.getKey());
+                    }
+                    order.remove(bitmap);
+                    size -= e.getKey();
+                    hitCount++;
+                    return bitmap;
+                }
+            }
+        }
+        return miss();
+    }
+
+    private synchronized Bitmap miss() {
+        missCount++;
+        return null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool{size=" + size + ", max=" + maxSize + ", count=" + order.size() + ", hits=" + hitCount
+                + ", misses=" + missCount + ", puts=" + putCount + ", evictions=" + evictionCount + "}";
+    }
+
+    /*
+     * Interface implementations
+     */
+
+    @Override
+    public void onTrimMemory(int level) {
+        if(level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Includes TRIM_MEMORY_UI_HIDDEN and the background levels
+            clear();
+        } else if(level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            trimToSize(maxSize / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+
+    }
+}
@@ -0,0 +1,304 @@
+package com.bogdwellers.pinchtozoom.bitmap;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.ImageMatrixCorrector;
+import com.bogdwellers.pinchtozoom.ImageMatrixTouchHandler;
+import com.bogdwellers.pinchtozoom.util.ImageViewUtils;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>A <code>BitmapLoader</code> that shows a small preview first and swaps in the full resolution bitmap afterwards.</p>
+ * <p>The preview is decoded at a fraction of the scale at which the image fits the view, so it is on screen after a fraction
+ * of the decode time. The full resolution bitmap is decoded next and replaces the preview through
+ * {@link ImageViewUtils#updateImageViewMatrix(ImageView, Bitmap)}, which keeps the visible transform exactly as it is.</p>
+ * <p>With a touch handler set through {@link #setTouchHandler(ImageMatrixTouchHandler)}, the loader stays out of the way of
+ * gestures on the handler's view. The full resolution decode doesn't start during a pinch, and the swap, which uploads a large
+ * texture, waits until the gesture has settled, unless the image is dragged while zoomed in beyond the preview's resolution.</p>
+ * <p>The listener is notified when the preview has been bound. The swap keeps the transform, so it doesn't notify it again.</p>
+ * <p>All public methods must be called from the UI thread.</p>
+ */
+public class ProgressiveBitmapLoader extends BitmapLoader {
+
+    public static final float DEFAULT_PREVIEW_SCALE = 0.5f;
+
+    /*
+     * Attributes
+     */
+
+    private float previewScale;
+    private Map<ImageView, Progress> progresses;
+    private ImageMatrixTouchHandler touchHandler;
+    private ImageMatrixTouchHandler.OnGestureStateListener onGestureStateListener;
+    private ImageMatrixTouchHandler.OnGestureStateListener chainedListener;
+    private boolean loadingFull;
+
+    /*
+     * Constructor(s)
+     */
+
+    public ProgressiveBitmapLoader() {
+        super();
+        init();
+    }
+
+    public ProgressiveBitmapLoader(Executor executor) {
+        super(executor);
+        init();
+    }
+
+    private void init() {
+        this.previewScale = DEFAULT_PREVIEW_SCALE;
+        this.progresses = new WeakHashMap<>();
+        this.onGestureStateListener = new GestureStateListener();
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Returns the scale of the preview relative to the scale at which the image fits the view.</p>
+     * @return
+     */
+    public float getPreviewScale() {
+        return previewScale;
+    }
+
+    /**
+     * <p>Sets the scale of the preview relative to the scale at which the image fits the view. The preview is decoded at the
+     * largest power of two sample size that still has this much detail.</p>
+     * @param previewScale
+     */
+    public void setPreviewScale(float previewScale) {
+        this.previewScale = previewScale;
+    }
+
+    /**
+     * <p>Sets the touch handler whose gestures the loader waits for, or <code>null</code> to swap as soon as possible.</p>
+     * <p>The loader becomes the handler's <code>OnGestureStateListener</code> and passes every call on to the listener the
+     * handler had before, which gets the handler back when the loader lets go of it. Set any other listener on the handler
+     * before setting the handler here.</p>
+     * @param touchHandler
+     */
+    public void setTouchHandler(ImageMatrixTouchHandler touchHandler) {
+        if(this.touchHandler != null && this.touchHandler.getOnGestureStateListener() == onGestureStateListener) {
+            this.touchHandler.setOnGestureStateListener(chainedListener);
+        }
+        chainedListener = null;
+        this.touchHandler = touchHandler;
+        if(touchHandler != null) {
+            chainedListener = touchHandler.getOnGestureStateListener();
+            touchHandler.setOnGestureStateListener(onGestureStateListener);
+        }
+    }
+
+    /**
+     * <p>Indicates whether the view is still waiting for its full resolution bitmap.</p>
+     * @param imageView
+     * @return
+     */
+    public boolean isPreview(ImageView imageView) {
+        return progresses.containsKey(imageView);
+    }
+
+    /**
+     * <p>Resumes the deferred work of the view: starts the full resolution decode or swaps in the decoded bitmap, as far as the
+     * gesture in progress allows.</p>
+     * @param imageView
+     * @param progress
+     */
+    private void resume(ImageView imageView, Progress progress) {
+        if(progress.deferred && !isPinching(imageView)) {
+            loadFull(imageView, progress);
+        } else if(progress.bitmap != null && canSwap(imageView)) {
+            swap(imageView, progress);
+        }
+    }
+
+    private void loadFull(ImageView imageView, Progress progress) {
+        progress.deferred = false;
+        progress.full = true;
+        loadingFull = true;
+        try {
+            super.startLoad(imageView, progress.source, progress.maxScale, progress.maxScaleRelative);
+        } finally {
+            loadingFull = false;
+        }
+    }
+
+    private void swap(ImageView imageView, Progress progress) {
+        progresses.remove(imageView);
+        bind(imageView, progress.bitmap);
+        if(isBound(imageView) && touchHandler.getMode() != ImageMatrixTouchHandler.NONE) {
+            // The pointers now map onto another drawable
+            touchHandler.updateTouchState();
+        }
+    }
+
+    /**
+     * <p>Puts a full resolution bitmap that has never been shown into the pool.</p>
+     * @param bitmap
+     */
+    private void recycle(Bitmap bitmap) {
+        BitmapPool pool = getBitmapPool();
+        if(bitmap != null && pool != null) {
+            pool.put(bitmap);
+        }
+    }
+
+    /**
+     * <p>Indicates whether the touch handler is bound to the view.</p>
+     * @param imageView
+     * @return
+     */
+    private boolean isBound(ImageView imageView) {
+        return touchHandler != null && touchHandler.getImageMatrixCorrector().getImageView() == imageView;
+    }
+
+    private boolean isPinching(ImageView imageView) {
+        if(!isBound(imageView)) {
+            return false;
+        }
+        int mode = touchHandler.getMode();
+        return mode == ImageMatrixTouchHandler.PINCH || mode == ImageMatrixTouchHandler.MORPH;
+    }
+
+    /**
+     * <p>Indicates whether the bitmap of the view can be swapped without disturbing a gesture. The solver of a pinch and a
+     * running animation hold state in drawable coordinates, and a layer transform draws the old bitmap, so they are waited for.
+     * A drag only is when the preview is not magnified.</p>
+     * @param imageView
+     * @return
+     */
+    private boolean canSwap(ImageView imageView) {
+        if(!isBound(imageView)) {
+            return true;
+        }
+        ImageMatrixCorrector corrector = touchHandler.getImageMatrixCorrector();
+        int mode = touchHandler.getMode();
+        if(mode == ImageMatrixTouchHandler.PINCH || mode == ImageMatrixTouchHandler.MORPH
+                || touchHandler.isAnimating() || corrector.isLayerTransformActive()) {
+            return false;
+        }
+        if(mode == ImageMatrixTouchHandler.NONE) {
+            return true;
+        }
+        corrector.readMatrix();
+        return corrector.getTransform().getScale() > 1f;
+    }
+
+    /*
+     * Overrides
+     */
+
+    /**
+     * <p>Loads a preview first and the full resolution bitmap next.</p>
+     * @param imageView
+     * @param source
+     * @param maxScale
+     * @param maxScaleRelative whether the maximum scale is relative to the inner fit scale
+     */
+    @Override
+    protected void startLoad(ImageView imageView, Source source, float maxScale, boolean maxScaleRelative) {
+        super.startLoad(imageView, source, previewScale, true);
+        progresses.put(imageView, new Progress(source, maxScale, maxScaleRelative));
+    }
+
+    /**
+     * <p>Also drops the full resolution bitmap of the view if it is still waiting to be swapped in.</p>
+     * @param imageView
+     */
+    @Override
+    public void cancel(ImageView imageView) {
+        if(!loadingFull) {
+            Progress progress = progresses.remove(imageView);
+            if(progress != null) {
+                recycle(progress.bitmap);
+            }
+        }
+        super.cancel(imageView);
+    }
+
+    @Override
+    protected void onBitmapDecoded(ImageView imageView, Bitmap bitmap) {
+        Progress progress = progresses.get(imageView);
+        if(progress == null) {
+            super.onBitmapDecoded(imageView, bitmap);
+        } else if(!progress.full) {
+            // The preview
+            super.onBitmapDecoded(imageView, bitmap);
+            progress.deferred = true;
+            resume(imageView, progress);
+        } else {
+            Drawable drawable = imageView.getDrawable();
+            if(drawable != null && drawable.getIntrinsicWidth() == bitmap.getWidth() && drawable.getIntrinsicHeight() == bitmap.getHeight()) {
+                // The preview already has full detail
+                progresses.remove(imageView);
+                recycle(bitmap);
+                return;
+            }
+            progress.bitmap = bitmap;
+            resume(imageView, progress);
+        }
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>The progress of a view towards its full resolution bitmap.</p>
+     */
+    private static class Progress {
+
+        private Source source;
+        private float maxScale;
+        private boolean maxScaleRelative;
+        private boolean deferred;
+        private boolean full;
+        private Bitmap bitmap;
+
+        public Progress(Source source, float maxScale, boolean maxScaleRelative) {
+            this.source = source;
+            this.maxScale = maxScale;
+            this.maxScaleRelative = maxScaleRelative;
+        }
+    }
+
+    /**
+     * <p>Resumes the deferred work of the handler's view when its gesture allows, and passes the calls on to the listener the
+     * handler had before.</p>
+     */
+    private class GestureStateListener implements ImageMatrixTouchHandler.OnGestureStateListener {
+
+        @Override
+        public void onModeChanged(ImageMatrixTouchHandler handler, int mode) {
+            resume(handler);
+            if(chainedListener != null) {
+                chainedListener.onModeChanged(handler, mode);
+            }
+        }
+
+        @Override
+        public void onGestureSettled(ImageMatrixTouchHandler handler) {
+            resume(handler);
+            if(chainedListener != null) {
+                chainedListener.onGestureSettled(handler);
+            }
+        }
+
+        private void resume(ImageMatrixTouchHandler handler) {
+            ImageView imageView = handler.getImageMatrixCorrector().getImageView();
+            Progress progress = imageView != null ? progresses.get(imageView) : null;
+            if(progress != null) {
+                ProgressiveBitmapLoader.this.resume(imageView, progress);
+            }
+        }
+    }
+}
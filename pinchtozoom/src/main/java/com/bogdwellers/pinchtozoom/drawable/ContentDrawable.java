@@ -0,0 +1,125 @@
+package com.bogdwellers.pinchtozoom.drawable;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+/**
+ * <p>A <code>Drawable</code> that draws a {@link ZoomableContent}, so that any custom drawn content can be zoomed by an
+ * <code>ImageMatrixTouchHandler</code> just like an image.</p>
+ * <p>The content's dimensions serve as the intrinsic dimensions, which is all the correctors need to know about it. The
+ * <code>ImageView</code> concatenates the image matrix to the canvas before drawing, so the content is drawn at the zoomed
+ * scale without an intermediate bitmap. Every draw the clip bounds of the canvas are mapped into content coordinates and passed
+ * on, so the content can skip what is out of view.</p>
+ * <p>Call {@link #invalidateContent()} when the content has changed, and {@link #notifyContentSizeChanged()} when its size has.</p>
+ */
+public class ContentDrawable extends Drawable {
+
+    /*
+     * Attributes
+     */
+
+    private ZoomableContent content;
+    private Rect clipBounds;
+    private RectF visibleRect;
+    private int alpha;
+    private int width;
+    private int height;
+
+    /*
+     * Constructor(s)
+     */
+
+    public ContentDrawable(ZoomableContent content) {
+        this.content = content;
+        this.clipBounds = new Rect();
+        this.visibleRect = new RectF();
+        this.alpha = 255;
+        this.width = content.getContentWidth();
+        this.height = content.getContentHeight();
+    }
+
+    /*
+     * Class methods
+     */
+
+    public ZoomableContent getContent() {
+        return content;
+    }
+
+    /**
+     * <p>Redraws the content.</p>
+     */
+    public void invalidateContent() {
+        invalidateSelf();
+    }
+
+    /**
+     * <p>Reads the content's dimensions again and redraws it.</p>
+     * <p>The view only lays out a drawable when it is set, so after a size change also set the <code>ImageView</code>'s drawable
+     * to <code>null</code> and back to this drawable. This invalidates the corrector's geometry as well.</p>
+     */
+    public void notifyContentSizeChanged() {
+        this.width = content.getContentWidth();
+        this.height = content.getContentHeight();
+        invalidateSelf();
+    }
+
+    /*
+     * Overrides
+     */
+
+    @Override
+    public void draw(Canvas canvas) {
+        if(width <= 0 || height <= 0) {
+            return;
+        }
+        Rect bounds = getBounds();
+        int saveCount = alpha < 255
+                ? canvas.saveLayerAlpha(bounds.left, bounds.top, bounds.right, bounds.bottom, alpha, Canvas.ALL_SAVE_FLAG)
+                : canvas.save();
+
+        // Map the bounds onto the content; with the MATRIX scale type these are the content's own dimensions
+        canvas.translate(bounds.left, bounds.top);
+        if(bounds.width() != width || bounds.height() != height) {
+            canvas.scale((float) bounds.width() / width, (float) bounds.height() / height);
+        }
+        canvas.clipRect(0, 0, width, height);
+
+        // The clip bounds are in the current coordinate space, so they are the visible part of the content
+        if(canvas.getClipBounds(clipBounds)) {
+            visibleRect.set(clipBounds);
+            content.draw(canvas, visibleRect);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return width;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return height;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        this.alpha = alpha;
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        // Not supported; the content uses its own paints
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,276 @@
+package com.bogdwellers.pinchtozoom.drawable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import com.bogdwellers.pinchtozoom.ImageMatrixCorrector;
+import com.bogdwellers.pinchtozoom.util.BitmapUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>A <code>Drawable</code> that draws the cheapest level of a power of two mip pyramid that still meets the current scale.</p>
+ * <p>Level <code>0</code> is the source bitmap. Every next level is half the size of the previous one. Levels are built lazily
+ * on a background thread and kept in an LRU cache bounded by a number of bytes. Until a level is available the nearest
+ * finer level is drawn instead.</p>
+ * <p>Register it with {@link ImageMatrixCorrector#setOnScaleChangedListener(ImageMatrixCorrector.OnScaleChangedListener)}
+ * so level selection follows the corrector's scale.</p>
+ */
+public class PyramidDrawable extends Drawable implements ImageMatrixCorrector.OnScaleChangedListener {
+
+    private static final String TAG = PyramidDrawable.class.getSimpleName();
+    private static final int MIN_LEVEL_DIMENSION = 64;
+
+    /**
+     * Shared by all instances so a pager full of pyramids does not start a thread per page
+     */
+    private static ExecutorService executor;
+
+    /*
+     * Attributes
+     */
+
+    private Bitmap source;
+    private int maxLevel;
+    private int level;
+    private int drawnLevel;
+    private boolean[] pendingLevels;
+    private LruCache<Integer, Bitmap> levelCache;
+    private Handler handler;
+    private Paint paint;
+
+    /*
+     * Constructor(s)
+     */
+
+    public PyramidDrawable(Bitmap source) {
+        this(source, BitmapUtils.getByteCount(source) / 2);
+    }
+
+    public PyramidDrawable(Bitmap source, int cacheSize) {
+        this.source = source;
+        this.maxLevel = maxLevel(source.getWidth(), source.getHeight());
+        this.pendingLevels = new boolean[maxLevel + 1];
+        this.levelCache = new LruCache<Integer, Bitmap>(cacheSize) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return BitmapUtils.getByteCount(value);
+            }
+        };
+        this.handler = new Handler(Looper.getMainLooper());
+        this.paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Returns the source bitmap.</p>
+     * @return
+     */
+    public Bitmap getSource() {
+        return source;
+    }
+
+    /**
+     * <p>Returns the level that should be drawn at the current scale.</p>
+     * @return
+     */
+    public int getPyramidLevel() {
+        return level;
+    }
+
+    /**
+     * <p>Returns the level that is actually drawn; this is finer than {@link #getPyramidLevel()} while a level is being built.</p>
+     * @return
+     */
+    public int getDrawnLevel() {
+        return drawnLevel;
+    }
+
+    /**
+     * <p>Returns the coarsest level available.</p>
+     * @return
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * <p>Selects the level that matches the given scale.</p>
+     * @param scale
+     */
+    public void setScale(float scale) {
+        int sampleSize = BitmapUtils.sampleSizeForScale(scale);
+        int level = Math.min(Integer.numberOfTrailingZeros(sampleSize), maxLevel);
+        if(level != this.level) {
+            this.level = level;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * <p>Returns the bitmap of the given level or the nearest finer level that is available, scheduling a build if needed.</p>
+     * @param level
+     * @return
+     */
+    private Bitmap obtainLevel(int level) {
+        for(int l = level; l > 0; l--) {
+            Bitmap bitmap = levelCache.get(l);
+            if(bitmap != null) {
+                drawnLevel = l;
+                return bitmap;
+            }
+            if(l == level && !pendingLevels[l]) {
+                pendingLevels[l] = true;
+                getExecutor().execute(new LevelBuildTask(l));
+            }
+        }
+        drawnLevel = 0;
+        return source;
+    }
+
+    /**
+     * <p>Releases all levels except the source bitmap.</p>
+     */
+    public void trim() {
+        levelCache.evictAll();
+    }
+
+    /*
+     * Interface implementations
+     */
+
+    @Override
+    public void onScaleChanged(ImageMatrixCorrector corrector, float scale) {
+        setScale(scale);
+    }
+
+    /*
+     * Overrides
+     */
+
+    @Override
+    public void draw(Canvas canvas) {
+        canvas.drawBitmap(obtainLevel(level), null, getBounds(), paint);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return source.getWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return source.getHeight();
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return source.hasAlpha() || paint.getAlpha() < 255 ? PixelFormat.TRANSLUCENT : PixelFormat.OPAQUE;
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * <p>Returns the coarsest level at which the shortest side is still at least {@link #MIN_LEVEL_DIMENSION} pixels.</p>
+     * @param width
+     * @param height
+     * @return
+     */
+    public static final int maxLevel(int width, int height) {
+        int level = 0;
+        int dimension = Math.min(width, height);
+        while((dimension >> (level + 1)) >= MIN_LEVEL_DIMENSION) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * <p>Returns the shared background executor.</p>
+     * @return
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if(executor == null) {
+            executor = Executors.newSingleThreadExecutor();
+        }
+        return executor;
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>Builds a level by halving the nearest finer level that is available until the level is reached. A bilinear filter
+     * only samples the four nearest pixels, so shrinking by more than half in a single step would skip pixels and alias.</p>
+     */
+    private class LevelBuildTask implements Runnable {
+
+        private int level;
+        private Bitmap finer;
+        private int finerLevel;
+
+        public LevelBuildTask(int level) {
+            this.level = level;
+            // Cache access happens on the UI thread only
+            for(finerLevel = level - 1; finerLevel > 0; finerLevel--) {
+                finer = levelCache.get(finerLevel);
+                if(finer != null) {
+                    break;
+                }
+            }
+            if(finer == null) {
+                finer = source;
+                finerLevel = 0;
+            }
+        }
+
+        @Override
+        public void run() {
+            Bitmap scaled = finer;
+            for(int l = finerLevel; l < level; l++) {
+                Bitmap half = Bitmap.createScaledBitmap(scaled, Math.max(1, scaled.getWidth() / 2),
+                        Math.max(1, scaled.getHeight() / 2), true);
+                if(scaled != finer) {
+                    // Intermediate steps are not kept
+                    scaled.recycle();
+                }
+                scaled = half;
+            }
+            final Bitmap bitmap = scaled;
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    pendingLevels[level] = false;
+                    levelCache.put(level, bitmap);
+                    invalidateSelf();
+                }
+            });
+        }
+    }
+}
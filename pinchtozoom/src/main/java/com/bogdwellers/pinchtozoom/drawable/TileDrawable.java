@@ -0,0 +1,506 @@
+package com.bogdwellers.pinchtozoom.drawable;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.ImageMatrixCorrector;
+import com.bogdwellers.pinchtozoom.bitmap.BitmapPool;
+import com.bogdwellers.pinchtozoom.util.BitmapUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>A <code>Drawable</code> that displays very large images by decoding only the tiles that are visible at the current
+ * transformation of an <code>ImageMatrixCorrector</code>.</p>
+ * <p>A low resolution base image that fits the screen is drawn first. Whenever the corrector's matrix zooms in beyond the
+ * base image's resolution the visible source tiles are decoded on a background thread using a <code>BitmapRegionDecoder</code>
+ * at the sample size matching the current scale. Decoded tiles are kept in an LRU cache bounded by a number of bytes, so
+ * memory usage depends on the screen size and not on the size of the image. With a {@link BitmapPool} set, tiles are decoded
+ * into the bitmaps of evicted tiles, and all bitmaps go into the pool when the drawable is recycled. An evicted tile may still be
+ * drawn by the frame in progress, so it only goes into the pool once the next frame has been drawn without it.</p>
+ * <p><b>Note:</b> This drawable is meant to be used with an <code>ImageView</code> whose scale type is <code>MATRIX</code>,
+ * which is what <code>ImageMatrixTouchHandler</code> sets.</p>
+ */
+public class TileDrawable extends Drawable {
+
+    private static final String TAG = TileDrawable.class.getSimpleName();
+    public static final int DEFAULT_TILE_SIZE = 256;
+    private static final int DEFAULT_CACHE_SCREENS = 6;
+
+    /**
+     * Shared by all instances so drawables that are dropped without being recycled don't leave a thread behind
+     */
+    private static ExecutorService executor;
+
+    /*
+     * Attributes
+     */
+
+    private BitmapRegionDecoder decoder;
+    private ImageMatrixCorrector corrector;
+    private int width;
+    private int height;
+    private int tileSize;
+    private int baseSampleSize;
+    private Bitmap.Config preferredConfig;
+    private volatile BitmapPool bitmapPool;
+    private LruCache<Long, Bitmap> tileCache;
+    private List<Bitmap> retiredTiles;
+    private Set<Long> pendingTiles;
+    private Handler handler;
+    private Paint paint;
+    private Matrix inverse;
+    private float[] values;
+    private RectF visibleRect;
+    private Rect tileRect;
+    private Bitmap baseBitmap;
+    private volatile int visibleSampleSize;
+    private volatile int visibleLeft;
+    private volatile int visibleTop;
+    private volatile int visibleRight;
+    private volatile int visibleBottom;
+    private volatile boolean recycled;
+
+    /*
+     * Constructor(s)
+     */
+
+    public TileDrawable(BitmapRegionDecoder decoder, ImageMatrixCorrector corrector) {
+        this(decoder, corrector, DEFAULT_TILE_SIZE, defaultCacheSize());
+    }
+
+    public TileDrawable(BitmapRegionDecoder decoder, ImageMatrixCorrector corrector, int tileSize, int cacheSize) {
+        this.decoder = decoder;
+        this.corrector = corrector;
+        this.width = decoder.getWidth();
+        this.height = decoder.getHeight();
+        this.tileSize = tileSize;
+        this.preferredConfig = Bitmap.Config.ARGB_8888;
+        this.tileCache = new LruCache<Long, Bitmap>(cacheSize) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return BitmapUtils.getAllocationByteCount(value);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+                if(oldValue != newValue) {
+                    retiredTiles.add(oldValue);
+                }
+            }
+        };
+        this.retiredTiles = new ArrayList<>();
+        this.pendingTiles = new HashSet<>();
+        this.handler = new Handler(Looper.getMainLooper());
+        this.paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        this.inverse = new Matrix();
+        this.values = new float[9];
+        this.visibleRect = new RectF();
+        this.tileRect = new Rect();
+        DisplayMetrics displayMetrics = Resources.getSystem().getDisplayMetrics();
+        this.baseSampleSize = BitmapUtils.sampleSizeToFit(width, height, displayMetrics.widthPixels, displayMetrics.heightPixels);
+        getExecutor().execute(new BaseDecodeTask());
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Returns the preferred bitmap configuration used for decoding.</p>
+     * @return
+     */
+    public Bitmap.Config getPreferredConfig() {
+        return preferredConfig;
+    }
+
+    /**
+     * <p>Sets the preferred bitmap configuration used for decoding tiles.</p>
+     * @param preferredConfig
+     */
+    public void setPreferredConfig(Bitmap.Config preferredConfig) {
+        this.preferredConfig = preferredConfig;
+    }
+
+    /**
+     * <p>Returns the pool that tiles are decoded into, or <code>null</code> if there is none.</p>
+     * @return
+     */
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * <p>Sets the pool that tiles are decoded into and that evicted tiles go into.</p>
+     * @param bitmapPool
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * <p>Returns the tile size in pixels.</p>
+     * @return
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * <p>Returns the sample size of the base image that is drawn underneath the tiles.</p>
+     * @return
+     */
+    public int getBaseSampleSize() {
+        return baseSampleSize;
+    }
+
+    /**
+     * <p>Stops decoding, releases all tiles and recycles the region decoder.</p>
+     * <p>The drawable can not be used anymore afterwards.</p>
+     */
+    public void recycle() {
+        recycled = true;
+        tileCache.evictAll();
+        recycleRetiredTiles(retiredTiles.size());
+        pendingTiles.clear();
+        recycle(baseBitmap);
+        baseBitmap = null;
+
+        // Queued behind the decode tasks of this drawable, so the decoder isn't recycled while one of them uses it
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                decoder.recycle();
+            }
+        });
+    }
+
+    /**
+     * <p>Puts a bitmap that is no longer drawn into the pool. May be called from any thread.</p>
+     * @param bitmap
+     */
+    private void recycle(Bitmap bitmap) {
+        BitmapPool pool = bitmapPool;
+        if(bitmap != null && pool != null) {
+            pool.put(bitmap);
+        }
+    }
+
+    /**
+     * <p>Puts the given number of tiles that were evicted longest ago into the pool.</p>
+     * @param count
+     */
+    private void recycleRetiredTiles(int count) {
+        for(int i = 0; i < count; i++) {
+            recycle(retiredTiles.get(i));
+        }
+        retiredTiles.subList(0, count).clear();
+    }
+
+    /**
+     * <p>Decodes a region into a pooled bitmap if there is one that fits. May be called from any thread.</p>
+     * @param region
+     * @param options
+     * @return
+     */
+    private Bitmap decodeRegion(Rect region, BitmapFactory.Options options) {
+        BitmapPool pool = bitmapPool;
+        if(pool != null && pool.prepareRegionOptions(options,
+                BitmapUtils.ceilDiv(region.width(), options.inSampleSize),
+                BitmapUtils.ceilDiv(region.height(), options.inSampleSize))) {
+            try {
+                return decoder.decodeRegion(region, options);
+            } catch(IllegalArgumentException e) {
+                // The pooled bitmap doesn't fit after all
+                pool.put(options.inBitmap);
+                options.inBitmap = null;
+            }
+        }
+        return decoder.decodeRegion(region, options);
+    }
+
+    /**
+     * <p>Updates the range of visible tiles using the corrector's matrix.</p>
+     * @return <code>true</code> if tiles must be drawn on top of the base image
+     */
+    private boolean updateVisibleTiles() {
+        ImageView imageView = corrector.getImageView();
+        Matrix matrix = corrector.getMatrix();
+        if(imageView == null || matrix == null || !matrix.invert(inverse)) {
+            visibleSampleSize = 0;
+            return false;
+        }
+        matrix.getValues(values);
+        float scale = (float) Math.hypot(values[Matrix.MSCALE_X], values[Matrix.MSKEW_Y]);
+        int sampleSize = BitmapUtils.sampleSizeForScale(scale);
+        if(sampleSize >= baseSampleSize) {
+            // The base image provides enough detail
+            visibleSampleSize = 0;
+            return false;
+        }
+
+        // Map the view's content area back onto the image
+        visibleRect.set(0, 0,
+                imageView.getWidth() - imageView.getPaddingLeft() - imageView.getPaddingRight(),
+                imageView.getHeight() - imageView.getPaddingTop() - imageView.getPaddingBottom());
+        inverse.mapRect(visibleRect);
+        if(!visibleRect.intersect(0, 0, width, height)) {
+            visibleSampleSize = 0;
+            return false;
+        }
+        int span = tileSize * sampleSize;
+        visibleLeft = (int) (visibleRect.left / span);
+        visibleTop = (int) (visibleRect.top / span);
+        visibleRight = (int) Math.ceil(visibleRect.right / span);
+        visibleBottom = (int) Math.ceil(visibleRect.bottom / span);
+        visibleSampleSize = sampleSize;
+        return true;
+    }
+
+    /**
+     * <p>Indicates whether the given tile is still visible. May be called from any thread.</p>
+     * @param sampleSize
+     * @param col
+     * @param row
+     * @return
+     */
+    private boolean isTileVisible(int sampleSize, int col, int row) {
+        return sampleSize == visibleSampleSize
+                && col >= visibleLeft && col < visibleRight
+                && row >= visibleTop && row < visibleBottom;
+    }
+
+    /**
+     * <p>Sets the source region of the given tile.</p>
+     * @param rect
+     * @param sampleSize
+     * @param col
+     * @param row
+     */
+    private void tileRegion(Rect rect, int sampleSize, int col, int row) {
+        int span = tileSize * sampleSize;
+        rect.left = col * span;
+        rect.top = row * span;
+        rect.right = Math.min(rect.left + span, width);
+        rect.bottom = Math.min(rect.top + span, height);
+    }
+
+    /*
+     * Overrides
+     */
+
+    @Override
+    public void draw(Canvas canvas) {
+        // Tiles evicted before this frame are not drawn by it, so they can be reused once it has been drawn
+        int retiredCount = retiredTiles.size();
+        drawTiles(canvas);
+        if(retiredCount > 0) {
+            recycleRetiredTiles(retiredCount);
+        }
+    }
+
+    private void drawTiles(Canvas canvas) {
+        Bitmap base = baseBitmap;
+        if(base != null) {
+            tileRect.set(0, 0, width, height);
+            canvas.drawBitmap(base, null, tileRect, paint);
+        }
+        if(recycled || !updateVisibleTiles()) {
+            return;
+        }
+        int sampleSize = visibleSampleSize;
+        for(int row = visibleTop; row < visibleBottom; row++) {
+            for(int col = visibleLeft; col < visibleRight; col++) {
+                long key = tileKey(sampleSize, col, row);
+                Bitmap tile = tileCache.get(key);
+                if(tile != null) {
+                    tileRegion(tileRect, sampleSize, col, row);
+                    canvas.drawBitmap(tile, null, tileRect, paint);
+                } else if(pendingTiles.add(key)) {
+                    getExecutor().execute(new TileDecodeTask(key, sampleSize, col, row));
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return width;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return height;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * <p>Creates a <code>TileDrawable</code> for the image in the given input stream.</p>
+     * @param is
+     * @param corrector
+     * @return
+     * @throws IOException
+     */
+    public static final TileDrawable newInstance(InputStream is, ImageMatrixCorrector corrector) throws IOException {
+        return new TileDrawable(BitmapRegionDecoder.newInstance(is, false), corrector);
+    }
+
+    /**
+     * <p>Returns the default tile cache size in bytes, which is a number of ARGB screens.</p>
+     * @return
+     */
+    private static final int defaultCacheSize() {
+        DisplayMetrics displayMetrics = Resources.getSystem().getDisplayMetrics();
+        return displayMetrics.widthPixels * displayMetrics.heightPixels * 4 * DEFAULT_CACHE_SCREENS;
+    }
+
+    /**
+     * <p>Returns the shared background executor.</p>
+     * @return
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if(executor == null) {
+            executor = Executors.newSingleThreadExecutor();
+        }
+        return executor;
+    }
+
+    /**
+     * <p>Packs the sample size, column and row of a tile into a single key.</p>
+     * @param sampleSize
+     * @param col
+     * @param row
+     * @return
+     */
+    private static final long tileKey(int sampleSize, int col, int row) {
+        return ((long) sampleSize << 48) | ((long) row << 24) | col;
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>Decodes the low resolution base image and hands it over to the UI thread.</p>
+     */
+    private class BaseDecodeTask implements Runnable {
+
+        @Override
+        public void run() {
+            if(recycled) {
+                return;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = baseSampleSize;
+            options.inPreferredConfig = preferredConfig;
+            final Bitmap decoded;
+            try {
+                decoded = decodeRegion(new Rect(0, 0, width, height), options);
+            } catch(IllegalStateException e) {
+                // Decoder has been recycled
+                return;
+            }
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(recycled) {
+                        recycle(decoded);
+                    } else {
+                        baseBitmap = decoded;
+                        invalidateSelf();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * <p>Decodes a single tile and hands it over to the UI thread.</p>
+     */
+    private class TileDecodeTask implements Runnable {
+
+        private long key;
+        private int sampleSize;
+        private int col;
+        private int row;
+
+        public TileDecodeTask(long key, int sampleSize, int col, int row) {
+            this.key = key;
+            this.sampleSize = sampleSize;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        public void run() {
+            Bitmap tile = null;
+            if(!recycled && isTileVisible(sampleSize, col, row)) {
+                Rect region = new Rect();
+                tileRegion(region, sampleSize, col, row);
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sampleSize;
+                options.inPreferredConfig = preferredConfig;
+                try {
+                    tile = decodeRegion(region, options);
+                } catch(IllegalStateException e) {
+                    // Decoder has been recycled
+                }
+            }
+            final Bitmap decoded = tile;
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    pendingTiles.remove(key);
+                    if(decoded != null && !recycled) {
+                        tileCache.put(key, decoded);
+                        invalidateSelf();
+                    } else {
+                        recycle(decoded);
+                    }
+                }
+            });
+        }
+    }
+}
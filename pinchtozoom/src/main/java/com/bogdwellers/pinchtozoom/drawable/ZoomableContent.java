@@ -0,0 +1,33 @@
+package com.bogdwellers.pinchtozoom.drawable;
+
+import android.graphics.Canvas;
+import android.graphics.RectF;
+
+/**
+ * <p>Content that draws itself directly onto a zoomed <code>Canvas</code>, such as a chart, a floor plan or a text layout.</p>
+ * <p>Wrap it in a {@link ContentDrawable} and set that on the <code>ImageView</code> to zoom it with an
+ * <code>ImageMatrixTouchHandler</code>. The content is drawn in its own coordinate space from <code>(0, 0)</code> to its width
+ * and height; the zoom is applied to the canvas, so the content stays sharp at any scale without being rasterized first.</p>
+ */
+public interface ZoomableContent {
+
+    /**
+     * <p>Returns the width of the content in content coordinates.</p>
+     * @return
+     */
+    int getContentWidth();
+
+    /**
+     * <p>Returns the height of the content in content coordinates.</p>
+     * @return
+     */
+    int getContentHeight();
+
+    /**
+     * <p>Draws the content. The canvas is already transformed into content coordinates and clipped to the content bounds.</p>
+     * <p>Only the part within <code>visibleRect</code> ends up on the screen, so anything outside of it may be skipped.</p>
+     * @param canvas
+     * @param visibleRect the visible part of the content in content coordinates; must not be modified
+     */
+    void draw(Canvas canvas, RectF visibleRect);
+}
@@ -0,0 +1,207 @@
+package com.bogdwellers.pinchtozoom.record;
+
+import android.graphics.drawable.Drawable;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.ImageView;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>Records the touch events that reach a touch listener, such as an <code>ImageMatrixTouchHandler</code>, in the compact
+ * binary format of a {@link GestureRecording}.</p>
+ * <p>Set the recorder as the view's touch listener in place of the handler; it records every event and passes it on. The
+ * recording can be written to a file with {@link #writeTo(OutputStream)}, to reproduce a gesture from the field with a
+ * {@link GestureReplayer}. An event takes about ten bytes plus eight bytes per pointer per sample.</p>
+ * <p>A recording holds a single size of the view and its drawable, taken at the first event. Events that reach the recorder
+ * while the view or its drawable has another size are passed on but not recorded, as they couldn't be replayed.</p>
+ */
+public class GestureRecorder implements View.OnTouchListener {
+
+    /*
+     * Attributes
+     */
+
+    private View.OnTouchListener delegate;
+    private ByteArrayOutputStream buffer;
+    private DataOutputStream out;
+    private int viewWidth;
+    private int viewHeight;
+    private int drawableWidth;
+    private int drawableHeight;
+    private int eventCount;
+    private int pointerTotal;
+    private int sampleTotal;
+    private int coordTotal;
+    private long startTime;
+    private long lastTime;
+
+    /*
+     * Constructor(s)
+     */
+
+    /**
+     *
+     * @param delegate the listener that handles the recorded events, or <code>null</code> to only record them
+     */
+    public GestureRecorder(View.OnTouchListener delegate) {
+        this.delegate = delegate;
+        this.buffer = new ByteArrayOutputStream();
+        this.out = new DataOutputStream(buffer);
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Records the event. The first event also records the dimensions of the view and its drawable; later events are only
+     * recorded if the dimensions are still the same.</p>
+     * @param view
+     * @param event
+     * @return <code>true</code> if the event was recorded, <code>false</code> if the view or its drawable changed size
+     */
+    public boolean record(View view, MotionEvent event) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        int intrinsicWidth = 0;
+        int intrinsicHeight = 0;
+        if(view instanceof ImageView) {
+            Drawable drawable = ((ImageView) view).getDrawable();
+            intrinsicWidth = drawable != null ? drawable.getIntrinsicWidth() : 0;
+            intrinsicHeight = drawable != null ? drawable.getIntrinsicHeight() : 0;
+        }
+        if(eventCount == 0) {
+            viewWidth = width;
+            viewHeight = height;
+            drawableWidth = intrinsicWidth;
+            drawableHeight = intrinsicHeight;
+        } else if(width != viewWidth || height != viewHeight || intrinsicWidth != drawableWidth || intrinsicHeight != drawableHeight) {
+            return false;
+        }
+        long eventTime = event.getEventTime();
+        if(eventCount == 0) {
+            startTime = lastTime = eventTime;
+        }
+        int pointerCount = event.getPointerCount();
+        int historySize = event.getHistorySize();
+        try {
+            GestureRecording.writeVarLong(out, Math.max(0L, eventTime - lastTime));
+            GestureRecording.writeVarLong(out, Math.max(0L, eventTime - event.getDownTime()));
+            GestureRecording.writeVarLong(out, event.getAction());
+            out.writeByte(pointerCount);
+            GestureRecording.writeVarLong(out, historySize);
+            for(int i = 0; i < pointerCount; i++) {
+                out.writeByte(event.getPointerId(i));
+            }
+            for(int h = 0; h < historySize; h++) {
+                GestureRecording.writeVarLong(out, Math.max(0L, eventTime - event.getHistoricalEventTime(h)));
+                for(int i = 0; i < pointerCount; i++) {
+                    out.writeFloat(event.getHistoricalX(i, h));
+                    out.writeFloat(event.getHistoricalY(i, h));
+                }
+            }
+            GestureRecording.writeVarLong(out, 0L);
+            for(int i = 0; i < pointerCount; i++) {
+                out.writeFloat(event.getX(i));
+                out.writeFloat(event.getY(i));
+            }
+        } catch(IOException e) {
+            // Can't happen, the buffer is in memory
+            throw new IllegalStateException(e);
+        }
+        lastTime = eventTime;
+        eventCount++;
+        pointerTotal += pointerCount;
+        sampleTotal += historySize + 1;
+        coordTotal += (historySize + 1) * pointerCount * 2;
+        return true;
+    }
+
+    /**
+     * <p>Returns the number of recorded events.</p>
+     * @return
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * <p>Returns the number of bytes of the recorded events.</p>
+     * @return
+     */
+    public int size() {
+        return buffer.size();
+    }
+
+    /**
+     * <p>Discards all recorded events and the recorded dimensions.</p>
+     */
+    public void clear() {
+        buffer.reset();
+        eventCount = pointerTotal = sampleTotal = coordTotal = 0;
+        viewWidth = viewHeight = drawableWidth = drawableHeight = 0;
+    }
+
+    /**
+     * <p>Writes the recording to the given stream.</p>
+     * @param os
+     * @throws IOException
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        DataOutputStream header = new DataOutputStream(os);
+        header.writeInt(GestureRecording.MAGIC);
+        header.writeByte(GestureRecording.VERSION);
+        header.writeInt(viewWidth);
+        header.writeInt(viewHeight);
+        header.writeInt(drawableWidth);
+        header.writeInt(drawableHeight);
+        header.writeInt(eventCount);
+        header.writeInt(pointerTotal);
+        header.writeInt(sampleTotal);
+        header.writeInt(coordTotal);
+        header.writeLong(startTime);
+        header.flush();
+        buffer.writeTo(os);
+    }
+
+    /**
+     * <p>Returns the recording as a byte array.</p>
+     * @return
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream os = new ByteArrayOutputStream(buffer.size() + 64);
+        try {
+            writeTo(os);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * <p>Returns the recording, ready to be replayed.</p>
+     * @return
+     */
+    public GestureRecording toRecording() {
+        try {
+            return GestureRecording.read(new ByteArrayInputStream(toByteArray()));
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * Interface implementations
+     */
+
+    @Override
+    public boolean onTouch(View view, MotionEvent event) {
+        record(view, event);
+        return delegate == null || delegate.onTouch(view, event);
+    }
+}
@@ -0,0 +1,274 @@
+package com.bogdwellers.pinchtozoom.record;
+
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>A recorded stream of touch events, as written by a {@link GestureRecorder} and replayed by a {@link GestureReplayer}.</p>
+ * <p>The binary format starts with a header that holds the dimensions of the view and its drawable, the sizes of the event
+ * data and the time of the first event, followed by the events. Times are stored as variable length deltas and coordinates as
+ * raw floats, so a replay is exact. Every event stores:</p>
+ * <ul>
+ *     <li>the delta of its event time to the previous event, and of its down time to its event time;</li>
+ *     <li>its action, including the pointer index;</li>
+ *     <li>its pointer count, history size and pointer ids;</li>
+ *     <li>every historical sample and the current sample: the delta of its time to the event time and the coordinates of every
+ *     pointer.</li>
+ * </ul>
+ */
+public final class GestureRecording {
+
+    static final int MAGIC = 0x50545A47; // PTZG
+    static final int VERSION = 1;
+
+    /*
+     * Attributes
+     */
+
+    private int viewWidth;
+    private int viewHeight;
+    private int drawableWidth;
+    private int drawableHeight;
+    private int eventCount;
+    private long[] downTimes;
+    private int[] actions;
+    private int[] pointerCounts;
+    private int[] pointerOffsets;
+    private int[] pointerIds;
+    private int[] sampleOffsets;
+    private long[] sampleTimes;
+    private int[] coordOffsets;
+    private float[] coords;
+    private MotionEvent.PointerProperties[] pointerProperties;
+    private MotionEvent.PointerCoords[] pointerCoords;
+
+    /*
+     * Constructor(s)
+     */
+
+    private GestureRecording() {
+
+    }
+
+    /*
+     * Class methods
+     */
+
+    public int getViewWidth() {
+        return viewWidth;
+    }
+
+    public int getViewHeight() {
+        return viewHeight;
+    }
+
+    public int getDrawableWidth() {
+        return drawableWidth;
+    }
+
+    public int getDrawableHeight() {
+        return drawableHeight;
+    }
+
+    /**
+     * <p>Returns the number of recorded events.</p>
+     * @return
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * <p>Returns the action of the given event, including the pointer index.</p>
+     * @param event
+     * @return
+     */
+    public int getAction(int event) {
+        return actions[event];
+    }
+
+    /**
+     * <p>Returns the recorded event time of the given event.</p>
+     * @param event
+     * @return
+     */
+    public long getEventTime(int event) {
+        return sampleTimes[sampleOffsets[event + 1] - 1];
+    }
+
+    /**
+     * <p>Returns the number of pointers of the given event.</p>
+     * @param event
+     * @return
+     */
+    public int getPointerCount(int event) {
+        return pointerCounts[event];
+    }
+
+    /**
+     * <p>Returns the number of historical samples of the given event.</p>
+     * @param event
+     * @return
+     */
+    public int getHistorySize(int event) {
+        return sampleOffsets[event + 1] - sampleOffsets[event] - 1;
+    }
+
+    /**
+     * <p>Obtains a copy of the given event, shifted in time. Recycle it after use.</p>
+     * @param event
+     * @param timeOffset the number of milliseconds to add to the recorded times
+     * @return
+     */
+    public MotionEvent obtainEvent(int event, long timeOffset) {
+        int pointerCount = pointerCounts[event];
+        ensurePointerCapacity(pointerCount);
+        for(int i = 0; i < pointerCount; i++) {
+            MotionEvent.PointerProperties properties = pointerProperties[i];
+            properties.clear();
+            properties.id = pointerIds[pointerOffsets[event] + i];
+            properties.toolType = MotionEvent.TOOL_TYPE_FINGER;
+        }
+        MotionEvent motionEvent = null;
+        for(int sample = sampleOffsets[event]; sample < sampleOffsets[event + 1]; sample++) {
+            int offset = coordOffsets[event] + (sample - sampleOffsets[event]) * pointerCount * 2;
+            for(int i = 0; i < pointerCount; i++) {
+                MotionEvent.PointerCoords pointer = pointerCoords[i];
+                pointer.clear();
+                pointer.x = coords[offset + i * 2];
+                pointer.y = coords[offset + i * 2 + 1];
+                pointer.pressure = 1f;
+                pointer.size = 1f;
+            }
+            long time = sampleTimes[sample] + timeOffset;
+            if(motionEvent == null) {
+                motionEvent = MotionEvent.obtain(downTimes[event] + timeOffset, time, actions[event], pointerCount,
+                        pointerProperties, pointerCoords, 0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+            } else {
+                motionEvent.addBatch(time, pointerCoords, 0);
+            }
+        }
+        return motionEvent;
+    }
+
+    private void ensurePointerCapacity(int pointerCount) {
+        if(pointerProperties == null || pointerProperties.length < pointerCount) {
+            pointerProperties = new MotionEvent.PointerProperties[pointerCount];
+            pointerCoords = new MotionEvent.PointerCoords[pointerCount];
+            for(int i = 0; i < pointerCount; i++) {
+                pointerProperties[i] = new MotionEvent.PointerProperties();
+                pointerCoords[i] = new MotionEvent.PointerCoords();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GestureRecording{events=" + eventCount + ", view=" + viewWidth + "x" + viewHeight
+                + ", drawable=" + drawableWidth + "x" + drawableHeight + "}";
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * <p>Reads a recording from the given stream.</p>
+     * @param is
+     * @return
+     * @throws IOException if the stream doesn't hold a recording of a known version
+     */
+    public static GestureRecording read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        if(in.readInt() != MAGIC) {
+            throw new IOException("Not a gesture recording");
+        }
+        int version = in.readUnsignedByte();
+        if(version != VERSION) {
+            throw new IOException("Unsupported gesture recording version " + version);
+        }
+        GestureRecording recording = new GestureRecording();
+        recording.viewWidth = in.readInt();
+        recording.viewHeight = in.readInt();
+        recording.drawableWidth = in.readInt();
+        recording.drawableHeight = in.readInt();
+        int eventCount = in.readInt();
+        int pointerTotal = in.readInt();
+        int sampleTotal = in.readInt();
+        int coordTotal = in.readInt();
+        long time = in.readLong();
+
+        recording.eventCount = eventCount;
+        recording.downTimes = new long[eventCount];
+        recording.actions = new int[eventCount];
+        recording.pointerCounts = new int[eventCount];
+        recording.pointerOffsets = new int[eventCount + 1];
+        recording.pointerIds = new int[pointerTotal];
+        recording.sampleOffsets = new int[eventCount + 1];
+        recording.sampleTimes = new long[sampleTotal];
+        recording.coordOffsets = new int[eventCount + 1];
+        recording.coords = new float[coordTotal];
+        int pointerOffset = 0;
+        int sampleOffset = 0;
+        int coordOffset = 0;
+        for(int event = 0; event < eventCount; event++) {
+            time += readVarLong(in);
+            recording.downTimes[event] = time - readVarLong(in);
+            recording.actions[event] = (int) readVarLong(in);
+            int pointerCount = in.readUnsignedByte();
+            int historySize = (int) readVarLong(in);
+            if(pointerOffset + pointerCount > pointerTotal || sampleOffset + historySize + 1 > sampleTotal
+                    || coordOffset + (historySize + 1) * pointerCount * 2 > coordTotal) {
+                throw new IOException("Corrupt gesture recording");
+            }
+            recording.pointerCounts[event] = pointerCount;
+            recording.pointerOffsets[event] = pointerOffset;
+            recording.sampleOffsets[event] = sampleOffset;
+            recording.coordOffsets[event] = coordOffset;
+            for(int i = 0; i < pointerCount; i++) {
+                recording.pointerIds[pointerOffset++] = in.readUnsignedByte();
+            }
+            for(int h = 0; h <= historySize; h++) {
+                recording.sampleTimes[sampleOffset++] = time - readVarLong(in);
+                for(int i = 0; i < pointerCount * 2; i++) {
+                    recording.coords[coordOffset++] = in.readFloat();
+                }
+            }
+        }
+        recording.pointerOffsets[eventCount] = pointerOffset;
+        recording.sampleOffsets[eventCount] = sampleOffset;
+        recording.coordOffsets[eventCount] = coordOffset;
+        return recording;
+    }
+
+    /**
+     * <p>Writes a non-negative value in as many bytes as it needs, seven bits at a time.</p>
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while((value & ~0x7FL) != 0L) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0L;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt gesture recording");
+    }
+}
@@ -0,0 +1,253 @@
+package com.bogdwellers.pinchtozoom.record;
+
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.ImageMatrixCorrector;
+import com.bogdwellers.pinchtozoom.ImageMatrixTouchHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>Feeds a {@link GestureRecording} into an <code>ImageMatrixTouchHandler</code>, and reports the transform after every
+ * event, the time the handler took for it and the transform the image ends up at.</p>
+ * <p>The replay is driven by a {@link Clock}. On the JVM, a clock that advances the virtual time of the test environment, such
+ * as Robolectric's main looper, runs the animations frame by frame between the events exactly as they were timed. The replay
+ * is then deterministic, so its transforms can be compared to those of a known good run, and its timings tracked, in CI. The
+ * default clock follows the real time without waiting, so on a device the events are handled back to back and animations are
+ * not waited for.</p>
+ * <p>The view must be laid out at the recorded dimensions and have a drawable of the recorded dimensions.</p>
+ */
+public class GestureReplayer {
+
+    public static final long DEFAULT_SETTLE_TIMEOUT = 5000L;
+    private static final long FRAME_INTERVAL = 16L;
+
+    /*
+     * Attributes
+     */
+
+    private Clock clock;
+    private long settleTimeout;
+
+    /*
+     * Constructor(s)
+     */
+
+    public GestureReplayer() {
+        this(new UptimeClock());
+    }
+
+    public GestureReplayer(Clock clock) {
+        this.clock = clock;
+        this.settleTimeout = DEFAULT_SETTLE_TIMEOUT;
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Sets the maximum time to let animations run after the last event before the final transform is read.</p>
+     * @param settleTimeout
+     */
+    public void setSettleTimeout(long settleTimeout) {
+        this.settleTimeout = settleTimeout;
+    }
+
+    /**
+     * <p>Replays the recording on the view through the handler.</p>
+     * @param recording
+     * @param handler
+     * @param imageView
+     * @return
+     * @throws IllegalArgumentException if the view or its drawable doesn't have the recorded dimensions
+     */
+    public Result replay(GestureRecording recording, ImageMatrixTouchHandler handler, ImageView imageView) {
+        Drawable drawable = imageView.getDrawable();
+        int drawableWidth = drawable != null ? drawable.getIntrinsicWidth() : 0;
+        int drawableHeight = drawable != null ? drawable.getIntrinsicHeight() : 0;
+        if(imageView.getWidth() != recording.getViewWidth() || imageView.getHeight() != recording.getViewHeight()
+                || drawableWidth != recording.getDrawableWidth() || drawableHeight != recording.getDrawableHeight()) {
+            throw new IllegalArgumentException("View " + imageView.getWidth() + "x" + imageView.getHeight()
+                    + " with drawable " + drawableWidth + "x" + drawableHeight + " does not match " + recording);
+        }
+        int eventCount = recording.getEventCount();
+        Result result = new Result(eventCount);
+        if(eventCount == 0) {
+            return result;
+        }
+
+        // Shift the recorded times onto the clock
+        long timeOffset = clock.uptimeMillis() - recording.getEventTime(0);
+        ImageMatrixCorrector corrector = handler.getImageMatrixCorrector();
+        for(int i = 0; i < eventCount; i++) {
+            long eventTime = recording.getEventTime(i) + timeOffset;
+            if(eventTime > clock.uptimeMillis()) {
+                clock.advanceTo(eventTime);
+            }
+            MotionEvent event = recording.obtainEvent(i, timeOffset);
+            long start = System.nanoTime();
+            handler.onTouch(imageView, event);
+            result.handlingTimes[i] = System.nanoTime() - start;
+            event.recycle();
+            result.actions[i] = recording.getAction(i);
+            corrector.getTransform().getValues(result.values);
+            System.arraycopy(result.values, 0, result.matrices, i * 9, 9);
+        }
+
+        // Let animations run their course
+        long timeout = clock.uptimeMillis() + settleTimeout;
+        while(handler.isAnimating() && clock.uptimeMillis() < timeout) {
+            clock.advanceTo(clock.uptimeMillis() + FRAME_INTERVAL);
+        }
+        imageView.getImageMatrix().getValues(result.finalMatrix);
+        return result;
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>The time source of a replay.</p>
+     */
+    public interface Clock {
+
+        /**
+         * <p>Returns the current time in milliseconds, on the same time base as <code>SystemClock.uptimeMillis()</code>.</p>
+         * @return
+         */
+        long uptimeMillis();
+
+        /**
+         * <p>Advances the time to the given time, running the frames and other callbacks that are due.</p>
+         * @param uptimeMillis
+         */
+        void advanceTo(long uptimeMillis);
+    }
+
+    /**
+     * <p>Follows the real time without waiting.</p>
+     */
+    private static class UptimeClock implements Clock {
+
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void advanceTo(long uptimeMillis) {
+            // Real time can't be advanced
+        }
+    }
+
+    /**
+     * <p>The outcome of a replay.</p>
+     */
+    public static class Result {
+
+        private int eventCount;
+        private int[] actions;
+        private float[] matrices;
+        private long[] handlingTimes;
+        private float[] finalMatrix;
+        private float[] values;
+
+        Result(int eventCount) {
+            this.eventCount = eventCount;
+            this.actions = new int[eventCount];
+            this.matrices = new float[eventCount * 9];
+            this.handlingTimes = new long[eventCount];
+            this.finalMatrix = new float[9];
+            this.values = new float[9];
+        }
+
+        /**
+         * <p>Returns the number of replayed events.</p>
+         * @return
+         */
+        public int getEventCount() {
+            return eventCount;
+        }
+
+        /**
+         * <p>Copies the nine matrix values of the corrector's transform right after the given event into the array.</p>
+         * @param event
+         * @param values
+         */
+        public void getMatrix(int event, float[] values) {
+            System.arraycopy(matrices, event * 9, values, 0, 9);
+        }
+
+        /**
+         * <p>Copies the nine values of the image matrix after the replay and its animations into the array.</p>
+         * @param values
+         */
+        public void getFinalMatrix(float[] values) {
+            System.arraycopy(finalMatrix, 0, values, 0, 9);
+        }
+
+        /**
+         * <p>Returns the time in nanoseconds the handler took for the given event.</p>
+         * @param event
+         * @return
+         */
+        public long getHandlingTime(int event) {
+            return handlingTimes[event];
+        }
+
+        /**
+         * <p>Returns the total time in nanoseconds the handler took for all events.</p>
+         * @return
+         */
+        public long getTotalHandlingTime() {
+            long total = 0L;
+            for(long time: handlingTimes) {
+                total += time;
+            }
+            return total;
+        }
+
+        /**
+         * <p>Returns the longest time in nanoseconds the handler took for a single event.</p>
+         * @return
+         */
+        public long getMaxHandlingTime() {
+            long max = 0L;
+            for(long time: handlingTimes) {
+                max = Math.max(max, time);
+            }
+            return max;
+        }
+
+        /**
+         * <p>Writes the result as comma separated values: a line per event with its index, masked action, handling time and
+         * matrix values, and a last line with the final matrix values.</p>
+         * @param writer
+         * @throws IOException
+         */
+        public void writeTo(Writer writer) throws IOException {
+            writer.write("event,action,nanos,scaleX,skewX,transX,skewY,scaleY,transY\n");
+            for(int i = 0; i < eventCount; i++) {
+                writer.write(i + "," + (actions[i] & MotionEvent.ACTION_MASK) + "," + handlingTimes[i]);
+                writeAffine(writer, matrices, i * 9);
+            }
+            writer.write("final,,");
+            writeAffine(writer, finalMatrix, 0);
+            writer.flush();
+        }
+
+        private static void writeAffine(Writer writer, float[] values, int offset) throws IOException {
+            for(int i = 0; i < 6; i++) {
+                writer.write(',');
+                writer.write(Float.toString(values[offset + i]));
+            }
+            writer.write('\n');
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.bogdwellers.pinchtozoom.util;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/**
+ * <p>Static helpers for decoding and measuring bitmaps.</p>
+ */
+public class BitmapUtils {
+
+    /**
+     * <p>Returns the largest power of two sample size at which an image drawn with the given scale still has at least one
+     * bitmap pixel per screen pixel.</p>
+     * @param scale
+     * @return
+     */
+    public static final int sampleSizeForScale(float scale) {
+        int sampleSize = 1;
+        if(scale > 0f) {
+            while(sampleSize * 2 * scale <= 1f) {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    /**
+     * <p>Returns the smallest power of two sample size at which an image of the given dimensions fits within the given
+     * maximum dimensions.</p>
+     * @param width
+     * @param height
+     * @param maxWidth
+     * @param maxHeight
+     * @return
+     */
+    public static final int sampleSizeToFit(int width, int height, int maxWidth, int maxHeight) {
+        int sampleSize = 1;
+        if(maxWidth > 0 && maxHeight > 0) {
+            while(width / sampleSize > maxWidth || height / sampleSize > maxHeight) {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    /**
+     * <p>Returns the dimension of an image decoded at the given sample size, rounded up.</p>
+     * @param dimension
+     * @param sampleSize
+     * @return
+     */
+    public static final int ceilDiv(int dimension, int sampleSize) {
+        return (dimension + sampleSize - 1) / sampleSize;
+    }
+
+    /**
+     * <p>Returns the number of bytes per pixel of the given configuration.</p>
+     * @param config
+     * @return
+     */
+    public static final int getBytesPerPixel(Bitmap.Config config) {
+        if(config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if(config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+
+    /**
+     * <p>Returns the number of bytes used to store the bitmap's pixels.</p>
+     * @param bitmap
+     * @return
+     */
+    public static final int getByteCount(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * <p>Returns the number of bytes allocated for the bitmap's pixels. From API level 19 a bitmap that an image was decoded
+     * into through <code>inBitmap</code> keeps its allocation, which may be larger than the image.</p>
+     * @param bitmap
+     * @return
+     */
+    public static final int getAllocationByteCount(Bitmap bitmap) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return getByteCount(bitmap);
+    }
+}
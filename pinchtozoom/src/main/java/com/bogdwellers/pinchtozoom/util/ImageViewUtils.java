@@ -2,7 +2,6 @@ package com.bogdwellers.pinchtozoom.util;
 
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
-import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.widget.ImageView;
@@ -32,10 +31,14 @@ public class ImageViewUtils {
     }
 
     /**
-     *
+     * <p>Prepares the image matrix of the view for a new image of the given dimensions, so that the new image covers exactly
+     * the area of the current one. Call it right before setting the new image; an image of another resolution, such as the
+     * full resolution version of a preview, then replaces the current one without the visible transform changing.</p>
+     * <p>The matrix is scaled in place, so a rotated image stays in place as well.</p>
      * @param imageView
      * @param width
      * @param height
+     * @see #rescaleMatrix(Matrix, float, float, float, float)
      */
     public static final void updateImageViewMatrix(ImageView imageView, float width, float height) {
         Drawable drawable = imageView.getDrawable();
@@ -44,22 +47,26 @@ public class ImageViewUtils {
         }
         Matrix matrix = imageView.getImageMatrix();
         if(!matrix.isIdentity()) {
-            float[] values = new float[9];
-            matrix.getValues(values);
-
-            RectF src = new RectF();
-            src.left = 0;
-            src.top = 0;
-            src.right = width;
-            src.bottom = height;
-
-            RectF dst = new RectF();
-            dst.left = values[Matrix.MTRANS_X];
-            dst.top = values[Matrix.MTRANS_Y];
-            dst.right = dst.left + (drawable.getIntrinsicWidth() * values[Matrix.MSCALE_X]);
-            dst.bottom = dst.top + (drawable.getIntrinsicHeight() * values[Matrix.MSCALE_Y]);
+            rescaleMatrix(matrix, drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(), width, height);
+        }
+    }
 
-            matrix.setRectToRect(src, dst, Matrix.ScaleToFit.CENTER);
+    /**
+     * <p>Adapts a matrix that maps an image of the old dimensions to an image of the new dimensions, in place and by a single
+     * uniform factor, so the new image keeps its aspect ratio. When the sample size of a decode rounds the two dimensions
+     * differently, the new image is fitted within the area of the old one and centered.</p>
+     * @param matrix
+     * @param oldWidth
+     * @param oldHeight
+     * @param newWidth
+     * @param newHeight
+     */
+    public static final void rescaleMatrix(Matrix matrix, float oldWidth, float oldHeight, float newWidth, float newHeight) {
+        if(oldWidth <= 0 || oldHeight <= 0 || newWidth <= 0 || newHeight <= 0) {
+            return;
         }
+        float scale = Math.min(oldWidth / newWidth, oldHeight / newHeight);
+        matrix.preTranslate((oldWidth - newWidth * scale) / 2f, (oldHeight - newHeight * scale) / 2f);
+        matrix.preScale(scale, scale);
     }
 }
@@ -9,8 +9,14 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.ImageView;
 
+import com.bogdwellers.pinchtozoom.EdgeState;
+import com.bogdwellers.pinchtozoom.ImageMatrixTouchHandler;
+import com.bogdwellers.pinchtozoom.core.CorrectorUtils;
+
 /**
  * <p><code>ViewPager</code> implementation that allows sideways scrolling only when current image is not zoomed in.</p>
+ * <p>Images with an <code>ImageMatrixTouchHandler</code> publish their {@link EdgeState}, which answers whether they can scroll
+ * with a few field reads. Other images fall back to reading their matrix.</p>
  * Created by Martin on 16-10-2016.
  */
 public class ImageViewPager extends ViewPager {
@@ -24,6 +30,7 @@ public class ImageViewPager extends ViewPager {
 
     private float scaleThreshold;
     private int pointerCount;
+    private boolean disallowIntercept;
 
 	/*
 	 * Constructor(s)
@@ -52,8 +59,16 @@ public class ImageViewPager extends ViewPager {
 
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
+        if(ev.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            // A new gesture clears the flag
+            disallowIntercept = false;
+        }
         pointerCount = ev.getPointerCount();
-        requestDisallowInterceptTouchEvent(pointerCount > 1);
+        boolean disallow = pointerCount > 1;
+        if(disallow != disallowIntercept) {
+            disallowIntercept = disallow;
+            requestDisallowInterceptTouchEvent(disallow);
+        }
         return super.onInterceptTouchEvent(ev);
     }
 
@@ -62,20 +77,28 @@ public class ImageViewPager extends ViewPager {
         if(v instanceof ImageView) {
             ImageView iv = (ImageView) v;
             Drawable drawable = iv.getDrawable();
+            EdgeState edgeState = EdgeState.getEdgeState(iv);
+            if(edgeState != null && drawable != null && edgeState.getDrawable() == drawable) {
+                // The image's handler owns multi-touch gestures
+                int mode = edgeState.getMode();
+                if(mode == ImageMatrixTouchHandler.PINCH || mode == ImageMatrixTouchHandler.MORPH) {
+                    return true;
+                }
+                boolean atEdge = dx > 0 ? edgeState.isAtLeftEdge() : edgeState.isAtRightEdge();
+                return edgeState.getZoom() > scaleThreshold && !atEdge && pointerCount == 1;
+            }
             if(drawable != null) {
                 float vw = iv.getWidth();
-                float vh = iv.getHeight();
-                float dw = drawable.getIntrinsicWidth();
-                float dh = drawable.getIntrinsicHeight();
-
                 Matrix matrix = iv.getImageMatrix();
                 matrix.getValues(VALUES);
+                float scale = VALUES[Matrix.MSCALE_X];
                 float tx = VALUES[Matrix.MTRANS_X] + dx;
-                float sdw = dw * VALUES[Matrix.MSCALE_X];
+                float innerFitScale = centerInsideScale(vw, iv.getHeight(), drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
+                float sdw = drawable.getIntrinsicWidth() * scale;
 
                 //Log.d(TAG, "sdw: " + sdw + " vw: " + vw);
 
-                return VALUES[Matrix.MSCALE_X] / centerInsideScale(vw, vh, dw, dh) > scaleThreshold && !translationExceedsBoundary(tx, vw, sdw) && sdw > vw && pointerCount == 1; // Assumes x-y scales are equal
+                return scale / innerFitScale > scaleThreshold && !translationExceedsBoundary(tx, vw, sdw) && sdw > vw && pointerCount == 1; // Assumes x-y scales are equal
             }
         }
         return super.canScroll(v, checkV, dx, x, y);
@@ -99,7 +122,7 @@ public class ImageViewPager extends ViewPager {
      * @return
      */
     public static final float centerInsideScale(float vw, float vh, float dw, float dh) {
-        return vw / vh <= dw / dh ? vw / dw : vh / dh;
+        return CorrectorUtils.innerFitScale(vw, vh, dw, dh);
     }
 
     /**
@@ -110,6 +133,6 @@ public class ImageViewPager extends ViewPager {
      * @return
      */
     public static final boolean translationExceedsBoundary(float tx, float vw, float dw) {
-        return dw >= vw && (tx > 0 || tx < vw - dw);
+        return CorrectorUtils.translationExceedsBoundary(tx, vw, dw);
     }
 }
\ No newline at end of file
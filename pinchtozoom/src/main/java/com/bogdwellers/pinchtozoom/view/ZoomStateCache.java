@@ -0,0 +1,217 @@
+package com.bogdwellers.pinchtozoom.view;
+
+import android.graphics.Matrix;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.ImageMatrixCorrector;
+import com.bogdwellers.pinchtozoom.R;
+import com.bogdwellers.pinchtozoom.util.ImageViewUtils;
+
+/**
+ * <p>Remembers the zoom and position of the images of a pager or a grid by item id, so that a page that is destroyed and
+ * recreated shows the image exactly as the user left it.</p>
+ * <p>Bind every view to its item with {@link #bind(ImageView, long)}. The transform is saved when the view is detached from its
+ * window, and applied with a single matrix write by {@link #restore(ImageView)} once the view has its drawable, which also marks
+ * the matrix of a corrector bound to the view as dirty. Only the most recently saved items are kept; every entry is a handful of
+ * floats.</p>
+ * <p>The transform is stored together with the dimensions of the drawable and the view. A drawable of another resolution, such
+ * as a preview, is scaled accordingly, and the transform is not restored into a view of another size.</p>
+ */
+public class ZoomStateCache {
+
+    public static final int DEFAULT_MAX_SIZE = 64;
+    private static final int DRAWABLE_WIDTH = 6;
+    private static final int DRAWABLE_HEIGHT = 7;
+    private static final int VIEW_WIDTH = 8;
+    private static final int VIEW_HEIGHT = 9;
+    private static final int ENTRY_SIZE = 10;
+
+    /*
+     * Attributes
+     */
+
+    private LruCache<Long, float[]> entries;
+    private float[] spareEntry;
+    private float[] values;
+    private Matrix matrix;
+    private View.OnAttachStateChangeListener onAttachStateChangeListener;
+
+    /*
+     * Constructor(s)
+     */
+
+    public ZoomStateCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     *
+     * @param maxSize the maximum number of items to remember
+     */
+    public ZoomStateCache(int maxSize) {
+        this.entries = new LruCache<Long, float[]>(maxSize) {
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, float[] oldValue, float[] newValue) {
+                // Reuse the entry for the next item, unless it was put again
+                if(oldValue != newValue) {
+                    spareEntry = oldValue;
+                }
+            }
+        };
+        this.values = new float[9];
+        this.matrix = new Matrix();
+        this.onAttachStateChangeListener = new StateSaver();
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * <p>Binds the view to the given item. When the view was bound to another item before, that item's state is saved first.</p>
+     * @param imageView
+     * @param itemId
+     */
+    public void bind(ImageView imageView, long itemId) {
+        Object boundId = imageView.getTag(R.id.pinchtozoom_item_id);
+        if(boundId != null) {
+            if((Long) boundId == itemId) {
+                return;
+            }
+            save(imageView);
+        } else {
+            imageView.addOnAttachStateChangeListener(onAttachStateChangeListener);
+        }
+        imageView.setTag(R.id.pinchtozoom_item_id, itemId);
+    }
+
+    /**
+     * <p>Unbinds the view, so its state is no longer saved.</p>
+     * @param imageView
+     */
+    public void unbind(ImageView imageView) {
+        imageView.removeOnAttachStateChangeListener(onAttachStateChangeListener);
+        imageView.setTag(R.id.pinchtozoom_item_id, null);
+    }
+
+    /**
+     * <p>Saves the transform of the view under the item it is bound to. Views that are not zoomable yet, because they have no
+     * drawable or are not using the <code>MATRIX</code> scale type, are skipped.</p>
+     * @param imageView
+     */
+    public void save(ImageView imageView) {
+        Object itemId = imageView.getTag(R.id.pinchtozoom_item_id);
+        Drawable drawable = imageView.getDrawable();
+        if(itemId == null || drawable == null || imageView.getScaleType() != ImageView.ScaleType.MATRIX) {
+            return;
+        }
+
+        // A corrector bound to the view has the current transform, even while its matrix lags behind
+        ImageMatrixCorrector corrector = ImageMatrixCorrector.getCorrector(imageView);
+        if(corrector != null && corrector.getImageView() == imageView) {
+            corrector.readMatrix();
+            corrector.getTransform().getValues(values);
+        } else {
+            imageView.getImageMatrix().getValues(values);
+        }
+
+        float[] entry = entries.get((Long) itemId);
+        if(entry == null) {
+            entry = spareEntry != null ? spareEntry : new float[ENTRY_SIZE];
+            spareEntry = null;
+        }
+        System.arraycopy(values, 0, entry, 0, 6);
+        entry[DRAWABLE_WIDTH] = drawable.getIntrinsicWidth();
+        entry[DRAWABLE_HEIGHT] = drawable.getIntrinsicHeight();
+        entry[VIEW_WIDTH] = imageView.getWidth();
+        entry[VIEW_HEIGHT] = imageView.getHeight();
+        entries.put((Long) itemId, entry);
+    }
+
+    /**
+     * <p>Applies the saved transform of the item the view is bound to. Call it right after setting the view's drawable.</p>
+     * @param imageView
+     * @return <code>true</code> if a transform was applied
+     */
+    public boolean restore(ImageView imageView) {
+        Object itemId = imageView.getTag(R.id.pinchtozoom_item_id);
+        Drawable drawable = imageView.getDrawable();
+        if(itemId == null || drawable == null) {
+            return false;
+        }
+        float[] entry = entries.get((Long) itemId);
+        int drawableWidth = drawable.getIntrinsicWidth();
+        int drawableHeight = drawable.getIntrinsicHeight();
+        if(entry == null || drawableWidth <= 0 || drawableHeight <= 0
+                || entry[VIEW_WIDTH] != imageView.getWidth() || entry[VIEW_HEIGHT] != imageView.getHeight()) {
+            return false;
+        }
+        System.arraycopy(entry, 0, values, 0, 6);
+        values[Matrix.MPERSP_0] = 0f;
+        values[Matrix.MPERSP_1] = 0f;
+        values[Matrix.MPERSP_2] = 1f;
+        matrix.setValues(values);
+        if(entry[DRAWABLE_WIDTH] != drawableWidth || entry[DRAWABLE_HEIGHT] != drawableHeight) {
+            // Keep the image in place at another resolution
+            ImageViewUtils.rescaleMatrix(matrix, entry[DRAWABLE_WIDTH], entry[DRAWABLE_HEIGHT], drawableWidth, drawableHeight);
+        }
+        // A corrector bound to the view must not keep showing, or later write back, the transform it cached before
+        ImageMatrixCorrector corrector = ImageMatrixCorrector.getCorrector(imageView);
+        boolean bound = corrector != null && corrector.getImageView() == imageView;
+        if(bound) {
+            corrector.endLayerTransform();
+        }
+        imageView.setScaleType(ImageView.ScaleType.MATRIX);
+        imageView.setImageMatrix(matrix);
+        if(bound) {
+            corrector.invalidateMatrix();
+        }
+        return true;
+    }
+
+    /**
+     * <p>Forgets the state of the given item.</p>
+     * @param itemId
+     */
+    public void remove(long itemId) {
+        entries.remove(itemId);
+    }
+
+    /**
+     * <p>Forgets the state of all items.</p>
+     */
+    public void clear() {
+        entries.evictAll();
+    }
+
+    /**
+     * <p>Returns the number of items with a saved state.</p>
+     * @return
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * <p>Saves the state of a view when it is detached from its window.</p>
+     */
+    private class StateSaver implements View.OnAttachStateChangeListener {
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            save((ImageView) v);
+        }
+    }
+}
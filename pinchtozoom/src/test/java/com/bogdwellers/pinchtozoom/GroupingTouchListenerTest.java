@@ -0,0 +1,147 @@
+package com.bogdwellers.pinchtozoom;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a handler per group of pointers.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class GroupingTouchListenerTest {
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+    private static final long FRAME = 16L;
+
+    private ImageView left;
+    private ImageView right;
+    private GroupingTouchListener listener;
+    private int maxGroupPointerCount;
+    private float[] values;
+
+    @Before
+    public void setUp() {
+        left = newImageView();
+        right = newImageView();
+        values = new float[9];
+        listener = new GroupingTouchListener(400f);
+        listener.setOnTouchGroupListener(new GroupingTouchListener.OnTouchGroupListener() {
+            @Override
+            public void onGroupStart(TouchGroup group, MotionEvent event) {
+                // Groups on the left half of the surface drive the left view
+                ImageView imageView = group.getCentroidX() < VIEW_WIDTH ? left : right;
+                group.setTag(imageView);
+                dispatch(group, event);
+            }
+
+            @Override
+            public void onGroupChanged(TouchGroup group, MotionEvent event) {
+                dispatch(group, event);
+            }
+
+            @Override
+            public void onGroupMove(TouchGroup group, MotionEvent event) {
+                dispatch(group, event);
+            }
+
+            @Override
+            public void onGroupEnd(TouchGroup group, MotionEvent event) {
+                dispatch(group, event);
+            }
+        });
+    }
+
+    @Test
+    public void groups_transformIndependently() {
+        View surface = new View(RuntimeEnvironment.application);
+        long downTime = SystemClock.uptimeMillis();
+        long time = downTime;
+
+        // One user pinches on the left while another holds two fingers still on the right
+        listener.onTouch(surface, event(downTime, time, MotionEvent.ACTION_DOWN, 300f, 900f));
+        float leftStart = scale(left);
+        time += FRAME;
+        listener.onTouch(surface, event(downTime, time, pointerAction(MotionEvent.ACTION_POINTER_DOWN, 1), 300f, 900f, 580f, 1000f));
+        time += FRAME;
+        listener.onTouch(surface, event(downTime, time, pointerAction(MotionEvent.ACTION_POINTER_DOWN, 2), 300f, 900f, 580f, 1000f, 1700f, 900f));
+        float rightStart = scale(right);
+        time += FRAME;
+        listener.onTouch(surface, event(downTime, time, pointerAction(MotionEvent.ACTION_POINTER_DOWN, 3), 300f, 900f, 580f, 1000f, 1700f, 900f, 1900f, 1000f));
+        assertEquals(2, listener.getGroupCount());
+        for(int i = 1; i <= 20; i++) {
+            time += FRAME;
+            listener.onTouch(surface, event(downTime, time, MotionEvent.ACTION_MOVE,
+                    300f - i * 10f, 900f - i * 6f, 580f + i * 10f, 1000f + i * 6f, 1700f, 900f, 1900f, 1000f));
+        }
+
+        assertEquals(2, maxGroupPointerCount);
+        assertTrue(scale(left) > leftStart * 1.5f);
+        assertEquals(rightStart, scale(right), 1e-6f);
+
+        time += FRAME;
+        listener.onTouch(surface, event(downTime, time, MotionEvent.ACTION_CANCEL, 100f, 780f, 780f, 1120f, 1700f, 900f, 1900f, 1000f));
+        assertEquals(0, listener.getGroupCount());
+    }
+
+    /*
+     * Helpers
+     */
+
+    private void dispatch(TouchGroup group, MotionEvent event) {
+        maxGroupPointerCount = Math.max(maxGroupPointerCount, event.getPointerCount());
+        ImageView imageView = (ImageView) group.getTag();
+        ImageMatrixTouchHandler handler = (ImageMatrixTouchHandler) imageView.getTag();
+        handler.onTouch(imageView, event);
+    }
+
+    private float scale(ImageView imageView) {
+        imageView.getImageMatrix().getValues(values);
+        return values[0];
+    }
+
+    private static ImageView newImageView() {
+        ImageView imageView = new ImageView(RuntimeEnvironment.application);
+        imageView.setImageBitmap(Bitmap.createBitmap(2000, 1500, Bitmap.Config.RGB_565));
+        imageView.measure(View.MeasureSpec.makeMeasureSpec(VIEW_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(VIEW_HEIGHT, View.MeasureSpec.EXACTLY));
+        imageView.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+        imageView.setTag(new ImageMatrixTouchHandler(RuntimeEnvironment.application));
+        return imageView;
+    }
+
+    private static int pointerAction(int action, int index) {
+        return action | (index << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+    }
+
+    private static MotionEvent event(long downTime, long eventTime, int action, float... xy) {
+        int pointerCount = xy.length / 2;
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+        for(int i = 0; i < pointerCount; i++) {
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = i;
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[i] = new MotionEvent.PointerCoords();
+            coords[i].x = xy[i * 2];
+            coords[i].y = xy[i * 2 + 1];
+            coords[i].pressure = 1f;
+            coords[i].size = 1f;
+        }
+        return MotionEvent.obtain(downTime, eventTime, action, pointerCount, properties, coords,
+                0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+    }
+}
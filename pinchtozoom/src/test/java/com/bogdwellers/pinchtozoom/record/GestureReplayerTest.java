@@ -0,0 +1,231 @@
+package com.bogdwellers.pinchtozoom.record;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.bogdwellers.pinchtozoom.ImageMatrixTouchHandler;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays recorded gestures on a virtual clock.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class GestureReplayerTest {
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+    private static final int IMAGE_WIDTH = 2000;
+    private static final int IMAGE_HEIGHT = 1500;
+    private static final long FRAME = 16L;
+
+    @Test
+    public void recording_roundTrips() throws Exception {
+        ImageView imageView = newImageView();
+        GestureRecorder recorder = new GestureRecorder(null);
+        List<MotionEvent> events = pinch(SystemClock.uptimeMillis());
+        for(MotionEvent event: events) {
+            recorder.record(imageView, event);
+        }
+
+        GestureRecording recording = GestureRecording.read(new ByteArrayInputStream(recorder.toByteArray()));
+        assertEquals(events.size(), recording.getEventCount());
+        assertEquals(VIEW_WIDTH, recording.getViewWidth());
+        assertEquals(IMAGE_HEIGHT, recording.getDrawableHeight());
+        for(int i = 0; i < events.size(); i++) {
+            MotionEvent expected = events.get(i);
+            MotionEvent actual = recording.obtainEvent(i, 0L);
+            assertEquals(expected.getAction(), actual.getAction());
+            assertEquals(expected.getDownTime(), actual.getDownTime());
+            assertEquals(expected.getEventTime(), actual.getEventTime());
+            assertEquals(expected.getPointerCount(), actual.getPointerCount());
+            assertEquals(expected.getHistorySize(), actual.getHistorySize());
+            for(int p = 0; p < expected.getPointerCount(); p++) {
+                assertEquals(expected.getPointerId(p), actual.getPointerId(p));
+                assertEquals(expected.getX(p), actual.getX(p), 0f);
+                assertEquals(expected.getY(p), actual.getY(p), 0f);
+                for(int h = 0; h < expected.getHistorySize(); h++) {
+                    assertEquals(expected.getHistoricalEventTime(h), actual.getHistoricalEventTime(h));
+                    assertEquals(expected.getHistoricalX(p, h), actual.getHistoricalX(p, h), 0f);
+                }
+            }
+            actual.recycle();
+        }
+    }
+
+    @Test
+    public void record_skipsEventsOfAnotherSize() {
+        ImageView imageView = newImageView();
+        GestureRecorder recorder = new GestureRecorder(null);
+        List<MotionEvent> events = pinch(SystemClock.uptimeMillis());
+        assertTrue(recorder.record(imageView, events.get(0)));
+        imageView.setImageBitmap(Bitmap.createBitmap(IMAGE_WIDTH / 2, IMAGE_HEIGHT / 2, Bitmap.Config.RGB_565));
+        assertFalse(recorder.record(imageView, events.get(1)));
+
+        GestureRecording recording = recorder.toRecording();
+        assertEquals(1, recording.getEventCount());
+        assertEquals(IMAGE_WIDTH, recording.getDrawableWidth());
+        assertEquals(IMAGE_HEIGHT, recording.getDrawableHeight());
+    }
+
+    @Test
+    public void replay_isDeterministic() {
+        GestureRecording recording = record();
+
+        GestureReplayer.Result first = new GestureReplayer(new LooperClock()).replay(recording, newHandler(), newImageView());
+        GestureReplayer.Result second = new GestureReplayer(new LooperClock()).replay(recording, newHandler(), newImageView());
+
+        float[] a = new float[9];
+        float[] b = new float[9];
+        assertEquals(recording.getEventCount(), first.getEventCount());
+        for(int i = 0; i < first.getEventCount(); i++) {
+            first.getMatrix(i, a);
+            second.getMatrix(i, b);
+            assertArrayEquals("event " + i, a, b, 0f);
+        }
+        first.getFinalMatrix(a);
+        second.getFinalMatrix(b);
+        assertArrayEquals(a, b, 0f);
+    }
+
+    @Test
+    public void replay_matchesLiveGesture() {
+        ImageView imageView = newImageView();
+        ImageMatrixTouchHandler handler = newHandler();
+        GestureRecorder recorder = new GestureRecorder(handler);
+        LooperClock clock = new LooperClock();
+        for(MotionEvent event: pinch(clock.uptimeMillis())) {
+            clock.advanceTo(event.getEventTime());
+            recorder.onTouch(imageView, event);
+        }
+        settle(clock, handler);
+        float[] live = new float[9];
+        imageView.getImageMatrix().getValues(live);
+
+        GestureReplayer.Result result = new GestureReplayer(clock).replay(recorder.toRecording(), newHandler(), newImageView());
+        float[] replayed = new float[9];
+        result.getFinalMatrix(replayed);
+        assertArrayEquals(live, replayed, 1e-3f);
+
+        // The pinch spreads the fingers, so the image is zoomed in beyond its fit scale
+        float fitScale = Math.min((float) VIEW_WIDTH / IMAGE_WIDTH, (float) VIEW_HEIGHT / IMAGE_HEIGHT);
+        assertTrue(replayed[0] > fitScale * 1.5f);
+        assertTrue(result.getTotalHandlingTime() > 0L);
+    }
+
+    /*
+     * Helpers
+     */
+
+    private GestureRecording record() {
+        GestureRecorder recorder = new GestureRecorder(null);
+        ImageView imageView = newImageView();
+        for(MotionEvent event: pinch(SystemClock.uptimeMillis())) {
+            recorder.record(imageView, event);
+        }
+        return recorder.toRecording();
+    }
+
+    private static ImageView newImageView() {
+        ImageView imageView = new ImageView(RuntimeEnvironment.application);
+        imageView.setImageBitmap(Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT, Bitmap.Config.RGB_565));
+        imageView.measure(View.MeasureSpec.makeMeasureSpec(VIEW_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(VIEW_HEIGHT, View.MeasureSpec.EXACTLY));
+        imageView.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+        return imageView;
+    }
+
+    private static ImageMatrixTouchHandler newHandler() {
+        return new ImageMatrixTouchHandler(RuntimeEnvironment.application);
+    }
+
+    private static void settle(LooperClock clock, ImageMatrixTouchHandler handler) {
+        long timeout = clock.uptimeMillis() + GestureReplayer.DEFAULT_SETTLE_TIMEOUT;
+        while(handler.isAnimating() && clock.uptimeMillis() < timeout) {
+            clock.advanceTo(clock.uptimeMillis() + FRAME);
+        }
+    }
+
+    /**
+     * Two fingers that spread apart over twenty frames, with a historical sample in every move.
+     */
+    private static List<MotionEvent> pinch(long downTime) {
+        List<MotionEvent> events = new ArrayList<>();
+        long time = downTime;
+        events.add(event(downTime, time, MotionEvent.ACTION_DOWN, 400f, 900f));
+        time += FRAME;
+        events.add(event(downTime, time, MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), 400f, 900f, 680f, 1000f));
+        for(int i = 1; i <= 20; i++) {
+            MotionEvent move = event(downTime, time + FRAME / 2, MotionEvent.ACTION_MOVE,
+                    400f - i * 10f + 5f, 900f - i * 6f + 3f, 680f + i * 10f - 5f, 1000f + i * 6f - 3f);
+            time += FRAME;
+            move.addBatch(time, coords(400f - i * 10f, 900f - i * 6f, 680f + i * 10f, 1000f + i * 6f), 0);
+            events.add(move);
+        }
+        time += FRAME;
+        events.add(event(downTime, time, MotionEvent.ACTION_POINTER_UP | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), 200f, 780f, 880f, 1120f));
+        time += FRAME;
+        events.add(event(downTime, time, MotionEvent.ACTION_UP, 200f, 780f));
+        return events;
+    }
+
+    private static MotionEvent event(long downTime, long eventTime, int action, float... xy) {
+        int pointerCount = xy.length / 2;
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+        for(int i = 0; i < pointerCount; i++) {
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = i;
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+        }
+        return MotionEvent.obtain(downTime, eventTime, action, pointerCount, properties, coords(xy),
+                0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+    }
+
+    private static MotionEvent.PointerCoords[] coords(float... xy) {
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[xy.length / 2];
+        for(int i = 0; i < coords.length; i++) {
+            coords[i] = new MotionEvent.PointerCoords();
+            coords[i].x = xy[i * 2];
+            coords[i].y = xy[i * 2 + 1];
+            coords[i].pressure = 1f;
+            coords[i].size = 1f;
+        }
+        return coords;
+    }
+
+    /**
+     * Advances Robolectric's main looper, which runs the <code>Choreographer</code> frames of the animations.
+     */
+    private static class LooperClock implements GestureReplayer.Clock {
+
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void advanceTo(long uptimeMillis) {
+            long delta = uptimeMillis - SystemClock.uptimeMillis();
+            if(delta > 0L) {
+                ShadowLooper.idleMainLooper(delta, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}